@@ -4,6 +4,8 @@ package org.openstreetmap.josm.plugins.lexxpluss;
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
 import org.openstreetmap.josm.plugins.Plugin;
 import org.openstreetmap.josm.plugins.PluginInformation;
+import org.openstreetmap.josm.plugins.lexxpluss.io.LexxPlussBinaryExporter;
+import org.openstreetmap.josm.plugins.lexxpluss.io.LexxPlussChangeExporter;
 import org.openstreetmap.josm.plugins.lexxpluss.io.LexxPlussExporter;
 
 /**
@@ -17,5 +19,7 @@ public class LexxPlussPlugin extends Plugin {
     public LexxPlussPlugin(PluginInformation info) {
         super(info);
         ExtensionFileFilter.addExporterFirst(new LexxPlussExporter());
+        ExtensionFileFilter.addExporter(new LexxPlussBinaryExporter());
+        ExtensionFileFilter.addExporter(new LexxPlussChangeExporter());
     }
 }
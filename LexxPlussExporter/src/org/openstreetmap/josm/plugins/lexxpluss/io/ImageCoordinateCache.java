@@ -0,0 +1,297 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * X_image, Y_image of the nodes of a data set written by the last export, in micro pixels.
+ * Nodes moved, added or removed since then are computed again on the next export,
+ * all nodes are computed again when the conversion to image coordinates changed.
+ * Large numbers of nodes are computed in parallel before writing, the file is still written in order by one thread.
+ * @author LexxPluss
+ *
+ */
+public final class ImageCoordinateCache implements DataSetListener {
+    /**
+     * number of nodes computed by one task
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 4096;
+
+    /**
+     * thread pool computing the coordinates
+     */
+    private static ForkJoinPool pool = null;
+
+    /**
+     * caches by data set
+     */
+    private static final Map<DataSet, ImageCoordinateCache> caches = new WeakHashMap<>();
+
+    /**
+     * the conversion the cached coordinates were computed with
+     */
+    private ImageTransform imageTransform = null;
+
+    /**
+     * X_image, Y_image in micro pixels by node
+     */
+    private final Map<Node, double[]> coordinates = new HashMap<>();
+
+    /**
+     * the transform matrix way written when the data set has none, or null
+     */
+    private Way transformWay = null;
+
+    /**
+     * Constructor
+     */
+    private ImageCoordinateCache() {
+    }
+
+    /**
+     * Get the cache of a data set, listening to the data set
+     * @param ds the data set
+     * @return the cache
+     */
+    public static synchronized ImageCoordinateCache get(DataSet ds) {
+        ImageCoordinateCache cache = caches.get(ds);
+        if (cache == null) {
+            cache = new ImageCoordinateCache();
+            ds.addDataSetListener(cache);
+            caches.put(ds, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Get the transform matrix way written when the data set has none.
+     * It is created once per data set, so every export writes it with the same id.
+     * @return a copy of the way, not in the data set and without tags
+     */
+    public synchronized Way newTransformWay() {
+        if (transformWay == null) {
+            transformWay = new Way();
+        }
+        return new Way(transformWay);
+    }
+
+    /**
+     * Get X_image, Y_image of a node, computing them if the node changed since the last export
+     * @param node the node, with coordinates
+     * @param transform conversion to image coordinates
+     * @return X_image and Y_image in micro pixels, not to be modified
+     */
+    public synchronized double[] getImageMicros(Node node, ImageTransform transform) {
+        setTransform(transform);
+        double[] result = coordinates.get(node);
+        if (result == null) {
+            EastNorth pos = node.getEastNorth();
+            result = new double[2];
+            imageTransform.toImageMicros(pos, result);
+            coordinates.put(node, result);
+        }
+        return result;
+    }
+
+    /**
+     * Compute X_image, Y_image of the nodes changed since the last export, in parallel if there are many
+     * @param nodes the nodes to be written
+     * @param transform conversion to image coordinates
+     */
+    public synchronized void prepare(Collection<Node> nodes, ImageTransform transform) {
+        setTransform(transform);
+        List<Node> missing = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node.isLatLonKnown() && !coordinates.containsKey(node)) {
+                missing.add(node);
+            }
+        }
+        if (missing.size() <= PARALLEL_CHUNK_SIZE) {
+            // 少ない場合は書き込み時に計算する
+            return;
+        }
+        double[][] result = new double[missing.size()][];
+        getPool().invoke(new ConvertTask(imageTransform, missing, result, 0, missing.size()));
+        for (int i = 0; i < result.length; i++) {
+            coordinates.put(missing.get(i), result[i]);
+        }
+    }
+
+    /**
+     * Set the conversion to image coordinates, forgetting all coordinates if it changed
+     * @param transform conversion to image coordinates
+     */
+    private void setTransform(ImageTransform transform) {
+        if (transform != imageTransform && !transform.equals(imageTransform)) {
+            // 校正情報または表示位置が変わったので全ノードを再計算
+            coordinates.clear();
+        }
+        imageTransform = transform;
+    }
+
+    /**
+     * Forget all coordinates
+     */
+    synchronized void clear() {
+        coordinates.clear();
+    }
+
+    /**
+     * Get the thread pool computing the coordinates
+     * @return the thread pool
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = Utils.newForkJoinPool("lexxpluss.exporter.threads", "lexxpluss-exporter-%d", Thread.NORM_PRIORITY);
+        }
+        return pool;
+    }
+
+    /**
+     * Task computing X_image, Y_image of a range of nodes.
+     * Every node has its own slot in the result, so the order does not depend on the threads.
+     */
+    private static final class ConvertTask extends RecursiveAction {
+        /**
+         * conversion to image coordinates
+         */
+        private final ImageTransform transform;
+
+        /**
+         * the nodes
+         */
+        private final List<Node> nodes;
+
+        /**
+         * X_image, Y_image in micro pixels by index of the node
+         */
+        private final double[][] result;
+
+        /**
+         * first index of the range (inclusive)
+         */
+        private final int from;
+
+        /**
+         * last index of the range (exclusive)
+         */
+        private final int to;
+
+        /**
+         * Constructor
+         * @param transform conversion to image coordinates
+         * @param nodes the nodes
+         * @param result X_image, Y_image in micro pixels by index of the node
+         * @param from first index of the range (inclusive)
+         * @param to last index of the range (exclusive)
+         */
+        ConvertTask(ImageTransform transform, List<Node> nodes, double[][] result, int from, int to) {
+            this.transform = transform;
+            this.nodes = nodes;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    result[i] = new double[2];
+                    transform.toImageMicros(nodes.get(i).getEastNorth(), result[i]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ConvertTask(transform, nodes, result, from, mid),
+                    new ConvertTask(transform, nodes, result, mid, to));
+        }
+    }
+
+    /**
+     * Forget the coordinates of changed nodes
+     * @param primitives the changed primitives
+     */
+    private synchronized void invalidate(Iterable<? extends OsmPrimitive> primitives) {
+        for (OsmPrimitive p : primitives) {
+            if (p instanceof Node) {
+                coordinates.remove(p);
+            }
+        }
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        synchronized (this) {
+            coordinates.remove(event.getNode());
+        }
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        List<AbstractDatasetChangedEvent> events = event.getEvents();
+        if (events == null) {
+            synchronized (this) {
+                coordinates.clear();
+            }
+            return;
+        }
+        // まとめられたイベントを再生し、変更されたノードだけを破棄する
+        for (AbstractDatasetChangedEvent e : events) {
+            e.fire(this);
+        }
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        // X_image, Y_imageタグは書き込み時に置き換えられる
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        // ノード座標は変わらない
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        // ノード座標は変わらない
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        // ノード座標は変わらない
+    }
+}
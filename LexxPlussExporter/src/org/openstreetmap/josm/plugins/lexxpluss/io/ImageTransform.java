@@ -0,0 +1,252 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.util.Arrays;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.TagMap;
+
+/**
+ * Conversion of node positions to image coordinates (X_image, Y_image).
+ * Holds the view and PicLayer parameters read when saving and does not change afterwards.
+ * @author LexxPluss
+ *
+ */
+public final class ImageTransform {
+    /**
+     * pixels per east/north of the view independent conversion
+     */
+    public static final double VIEW_INDEPENDENT_PIXEL_PER_EN = 1.0;
+
+    /**
+     * view center
+     */
+    private final EastNorth center;
+
+    /**
+     * pixels per east
+     */
+    private final double pixelPerEnX;
+
+    /**
+     * pixels per north
+     */
+    private final double pixelPerEnY;
+
+    /**
+     * picture offset x in view pixels
+     */
+    private final double picOffsetX;
+
+    /**
+     * picture offset y in view pixels
+     */
+    private final double picOffsetY;
+
+    /**
+     * picture transform matrix without translation
+     */
+    private final double[] matrix;
+
+    /**
+     * picture transform without translation
+     */
+    private final AffineTransform transform;
+
+    /**
+     * picture offset x divided by the transform scale x
+     */
+    private final double offsetX;
+
+    /**
+     * picture offset y divided by the transform scale y
+     */
+    private final double offsetY;
+
+    /**
+     * half image width
+     */
+    private final double hw;
+
+    /**
+     * half image height
+     */
+    private final double hh;
+
+    /**
+     * scale x
+     */
+    private final double scaleX;
+
+    /**
+     * scale y
+     */
+    private final double scaleY;
+
+    /**
+     * Constructor
+     * @param center view center
+     * @param pixelPerEnX pixels per east
+     * @param pixelPerEnY pixels per north
+     * @param picOffsetX picture offset x in view pixels
+     * @param picOffsetY picture offset y in view pixels
+     * @param matrix picture transform matrix, the translation is ignored
+     * @param hw half image width
+     * @param hh half image height
+     * @param scaleX scale x
+     * @param scaleY scale y
+     * @throws NoninvertibleTransformException if the picture transform is not invertible
+     */
+    public ImageTransform(EastNorth center, double pixelPerEnX, double pixelPerEnY,
+            double picOffsetX, double picOffsetY, double[] matrix,
+            double hw, double hh, double scaleX, double scaleY) throws NoninvertibleTransformException {
+        this.center = center;
+        this.pixelPerEnX = pixelPerEnX;
+        this.pixelPerEnY = pixelPerEnY;
+        this.picOffsetX = picOffsetX;
+        this.picOffsetY = picOffsetY;
+        this.matrix = matrix.clone();
+        // アフィン行列内の平行移動要素を消去
+        this.matrix[4] = 0.0;
+        this.matrix[5] = 0.0;
+        this.transform = new AffineTransform(this.matrix);
+        this.transform.createInverse();
+        this.offsetX = picOffsetX / transform.getScaleX();
+        this.offsetY = picOffsetY / transform.getScaleY();
+        this.hw = hw;
+        this.hh = hh;
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+    }
+
+    /**
+     * Create the conversion of a PicLayer calibration independent of the view.
+     * The view is assumed to be centered on the image at {@link #VIEW_INDEPENDENT_PIXEL_PER_EN} pixels per east/north,
+     * so only the PicLayer transform, image size and scale are used.
+     * @param calibration the PicLayer calibration
+     * @return the conversion
+     * @throws NoninvertibleTransformException if the picture transform is not invertible
+     */
+    public static ImageTransform fromCalibration(PicLayerCalibration.Snapshot calibration) throws NoninvertibleTransformException {
+        return fromCalibration(calibration, calibration.getImagePosition(),
+                VIEW_INDEPENDENT_PIXEL_PER_EN, VIEW_INDEPENDENT_PIXEL_PER_EN);
+    }
+
+    /**
+     * Create the conversion of a PicLayer calibration shown in a view
+     * @param calibration the PicLayer calibration
+     * @param center view center
+     * @param pixelPerEnX pixels per east of the view
+     * @param pixelPerEnY pixels per north of the view
+     * @return the conversion
+     * @throws NoninvertibleTransformException if the picture transform is not invertible
+     */
+    public static ImageTransform fromCalibration(PicLayerCalibration.Snapshot calibration, EastNorth center,
+            double pixelPerEnX, double pixelPerEnY) throws NoninvertibleTransformException {
+        // ピクセル単位の画像中央位置
+        EastNorth imagePosition = calibration.getImagePosition();
+        double picOffsetX = (imagePosition.east() - center.east()) * pixelPerEnX;
+        double picOffsetY = (center.north() - imagePosition.north()) * pixelPerEnY;
+        double[] matrix = new double[6];
+        calibration.getTransform().getMatrix(matrix);
+        // 画像半縦幅、半横幅
+        double hw = calibration.getImageWidth() / 2.0;
+        double hh = calibration.getImageHeight() / 2.0;
+        // スケール補正値
+        double initialImageScale = calibration.getInitialImageScale();
+        double scaleX = (100.0 * calibration.getMetersPerEasting()) / (initialImageScale * pixelPerEnX);
+        double scaleY = (100.0 * calibration.getMetersPerNorthing()) / (initialImageScale * pixelPerEnY);
+        return new ImageTransform(center, pixelPerEnX, pixelPerEnY, picOffsetX, picOffsetY, matrix, hw, hh, scaleX, scaleY);
+    }
+
+    /**
+     * Convert a node position to image coordinates
+     * @param pos node position
+     * @param xy receives X_image, Y_image
+     */
+    public void toImageXY(EastNorth pos, double[] xy) {
+        toImageMicros(pos, xy);
+        xy[0] /= ImageCoordinateCodec.SCALE;
+        xy[1] /= ImageCoordinateCodec.SCALE;
+    }
+
+    /**
+     * Convert a node position to image coordinates in micro pixels
+     * @param pos node position
+     * @param micros receives X_image, Y_image in micro pixels, see {@link ImageCoordinateCodec#toMicros}
+     */
+    public void toImageMicros(EastNorth pos, double[] micros) {
+        double[] xy = micros;
+        xy[0] = (pos.east() - center.east()) * pixelPerEnX;
+        // 画像座標系と地図座標系ではY軸の方向が逆
+        xy[1] = (center.north() - pos.north()) * pixelPerEnY;
+        try {
+            transform.inverseTransform(xy, 0, xy, 0, 1);
+        } catch (NoninvertibleTransformException e) {
+            // checked in the constructor
+            throw new IllegalStateException(e);
+        }
+        double x = xy[0];
+        double y = xy[1];
+        x -= offsetX;
+        y -= offsetY;
+        x *= scaleX;
+        y *= scaleY;
+        x = hw + x;
+        y = hh + y;
+        xy[0] = ImageCoordinateCodec.toMicros(x);
+        xy[1] = ImageCoordinateCodec.toMicros(y);
+    }
+
+    /**
+     * Get the tags of the transform matrix way, recorded for re-transform
+     * @return the tags
+     */
+    public TagMap toTags() {
+        TagMap tags = new TagMap();
+        tags.put("transform matrix", "");
+        tags.put("view_center_lon", String.valueOf(center.east()));
+        tags.put("view_center_lat", String.valueOf(center.north()));
+        tags.put("pixel_per_en_x", String.valueOf(pixelPerEnX));
+        tags.put("pixel_per_en_y", String.valueOf(pixelPerEnY));
+        tags.put("pic_offset_x", String.valueOf(picOffsetX));
+        tags.put("pic_offset_y", String.valueOf(picOffsetY));
+        for (int i = 0; i < 6; i++) {
+            tags.put("m" + i, String.valueOf(matrix[i]));
+        }
+        tags.put("hw", String.valueOf(hw));
+        tags.put("hh", String.valueOf(hh));
+        tags.put("scaleX", String.valueOf(scaleX));
+        tags.put("scaleY", String.valueOf(scaleY));
+        return tags;
+    }
+
+    /**
+     * Get all parameters in the order of the transform matrix way tags
+     * @return view_center_lon, view_center_lat, pixel_per_en_x, pixel_per_en_y, pic_offset_x, pic_offset_y,
+     *         m0-m5, hw, hh, scaleX, scaleY
+     */
+    public double[] getParameters() {
+        return new double[] {center.east(), center.north(), pixelPerEnX, pixelPerEnY, picOffsetX, picOffsetY,
+                matrix[0], matrix[1], matrix[2], matrix[3], matrix[4], matrix[5], hw, hh, scaleX, scaleY};
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ImageTransform)) {
+            return false;
+        }
+        // 同じパラメータなら全ノードの変換結果も同じ
+        return Arrays.equals(getParameters(), ((ImageTransform) obj).getParameters());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(getParameters());
+    }
+}
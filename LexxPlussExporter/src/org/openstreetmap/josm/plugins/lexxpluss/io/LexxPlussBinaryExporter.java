@@ -0,0 +1,47 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.openstreetmap.josm.actions.ExtensionFileFilter;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+
+/**
+ * Exporter for the LexxPluss binary map format (*.lxb), see {@link LexxPlussBinaryWriter}.
+ * @author LexxPluss
+ *
+ */
+public class LexxPlussBinaryExporter extends LexxPlussExporter {
+    /**
+     * File extension.
+     */
+    public static final String EXTENSION = "lxb";
+
+    public LexxPlussBinaryExporter() {
+        super(new ExtensionFileFilter(EXTENSION, EXTENSION, tr("LexxPluss binary map") + " (*." + EXTENSION + ")"));
+    }
+
+    @Override
+    protected void doSave(File file, OsmDataLayer layer) throws IOException {
+        // PicLayerがない場合は座標変換せずに書き込む
+        ImageTransform imageTransform = getImageTransform();
+        DataSet dataSet = layer.getDataSet();
+        ImageCoordinateCache cache = imageTransform != null ? ImageCoordinateCache.get(dataSet) : null;
+        try (OutputStream out = getOutputStream(file)) {
+            dataSet.getReadLock().lock();
+            try {
+                if (cache != null) {
+                    cache.prepare(dataSet.getNodes(), imageTransform);
+                }
+                new LexxPlussBinaryWriter(imageTransform, cache).write(dataSet, out);
+            } finally {
+                dataSet.getReadLock().unlock();
+            }
+        }
+    }
+}
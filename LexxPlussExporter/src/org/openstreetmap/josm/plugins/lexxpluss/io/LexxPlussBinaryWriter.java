@@ -0,0 +1,750 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Writer of the LexxPluss binary map format (*.lxb), a compact form of the LexxPluss OSM file for robots.
+ * <p>
+ * All numbers are little endian. The file starts with a header of {@link #HEADER_SIZE} bytes:
+ * <pre>
+ *   0  "LXPB"
+ *   4  u16 format version ({@link #VERSION})
+ *   6  u16 flags: 1 = transform present, 2 = data set locked
+ *   8  u32 number of sections
+ *  12  u32 string index of the data set version
+ *  16  u32 string index of the upload policy
+ *  20  u32 string index of the download policy
+ *  24  8 bytes reserved
+ *  32  f64[16] transform: view_center_lon, view_center_lat, pixel_per_en_x, pixel_per_en_y,
+ *      pic_offset_x, pic_offset_y, m0-m5, hw, hh, scaleX, scaleY
+ * </pre>
+ * followed by the section table, one entry of 24 bytes per section: u32 type, u32 record count,
+ * u64 offset and u64 length in bytes. Every section starts at a multiple of 8 bytes, so the file can be
+ * memory-mapped and each section read on its own.
+ * <ul>
+ * <li>STRINGS: u32 offsets of the count + 1 strings, then the UTF-8 bytes. String 0 is "".</li>
+ * <li>BOUNDS: per data source f64 minlat, minlon, maxlat, maxlon, u32 origin string, u32 padding.</li>
+ * <li>NODES, AGV_LINES, GOALS, AREAS, WAYS, RELATIONS: records of varints.</li>
+ * </ul>
+ * A record is the id as zigzag delta to the previous record of the section, the flags
+ * ({@link #FLAG_INCOMPLETE} ...) and, unless incomplete, the version, the timestamp, user and changeset
+ * if flagged, then the type specific part and the tags as count and pairs of string indexes.
+ * Nodes: lat/lon in units of 1e-11 degrees and X_image/Y_image in micro pixels, both as zigzag deltas to the
+ * previous node having them. Ways: node count and node indexes as zigzag deltas. Relations: member count,
+ * then (index &lt;&lt; 2 | type) and the role string per member, type 0 = node, 1 = way, 2 = relation.
+ * Way indexes count the ways of AGV_LINES, GOALS, AREAS and WAYS in this order.
+ * <p>
+ * The data set read back equals the one read from the LexxPluss OSM file of the same export:
+ * lat/lon are stored as written to the OSM file and X_image/Y_image are formatted by {@link ImageCoordinateCodec}.
+ * @author LexxPluss
+ *
+ */
+public class LexxPlussBinaryWriter {
+    /**
+     * magic number
+     */
+    public static final byte[] MAGIC = {'L', 'X', 'P', 'B'};
+
+    /**
+     * format version
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * header size without the section table
+     */
+    public static final int HEADER_SIZE = 160;
+
+    /**
+     * size of a section table entry
+     */
+    public static final int SECTION_ENTRY_SIZE = 24;
+
+    /**
+     * lat/lon units per degree
+     */
+    public static final double LATLON_SCALE = 1e11;
+
+    /** section type: string table */
+    public static final int SECTION_STRINGS = 1;
+    /** section type: data sources */
+    public static final int SECTION_BOUNDS = 2;
+    /** section type: nodes */
+    public static final int SECTION_NODES = 3;
+    /** section type: ways with line_info=agv_pose */
+    public static final int SECTION_AGV_LINES = 4;
+    /** section type: ways with line_info=goal_pose */
+    public static final int SECTION_GOALS = 5;
+    /** section type: ways with area_base */
+    public static final int SECTION_AREAS = 6;
+    /** section type: other ways */
+    public static final int SECTION_WAYS = 7;
+    /** section type: relations */
+    public static final int SECTION_RELATIONS = 8;
+
+    /** header flag: the transform is present */
+    public static final int HEADER_TRANSFORM = 1;
+    /** header flag: the data set is locked */
+    public static final int HEADER_LOCKED = 2;
+
+    /** record flag: incomplete, only the id follows */
+    public static final int FLAG_INCOMPLETE = 0x01;
+    /** record flag: modified */
+    public static final int FLAG_MODIFIED = 0x02;
+    /** record flag: deleted */
+    public static final int FLAG_DELETED = 0x04;
+    /** record flag: not visible */
+    public static final int FLAG_INVISIBLE = 0x08;
+    /** record flag: timestamp present */
+    public static final int FLAG_TIMESTAMP = 0x10;
+    /** record flag: user present */
+    public static final int FLAG_USER = 0x20;
+    /** record flag: changeset present */
+    public static final int FLAG_CHANGESET = 0x40;
+    /** node flag: lat/lon present */
+    public static final int FLAG_LATLON = 0x80;
+    /** node flag: X_image/Y_image present */
+    public static final int FLAG_IMAGE = 0x100;
+
+    /**
+     * the way sections, in the order of the way indexes
+     */
+    private static final int[] WAY_SECTIONS = {SECTION_AGV_LINES, SECTION_GOALS, SECTION_AREAS, SECTION_WAYS};
+
+    /**
+     * largest integer exactly representable as double
+     */
+    private static final double MAX_EXACT = 9007199254740992.0;
+
+    /**
+     * Growable little endian byte buffer
+     */
+    private static final class Buffer {
+        /**
+         * the bytes
+         */
+        private byte[] data = new byte[1024];
+
+        /**
+         * the number of bytes
+         */
+        private int size = 0;
+
+        /**
+         * Make room for bytes
+         * @param n the number of bytes to add
+         */
+        private void ensure(int n) {
+            if (size + n > data.length) {
+                data = Arrays.copyOf(data, Math.max(size + n, data.length * 2));
+            }
+        }
+
+        /**
+         * Write a byte
+         * @param b the byte
+         */
+        void put(int b) {
+            ensure(1);
+            data[size++] = (byte) b;
+        }
+
+        /**
+         * Write bytes
+         * @param b the bytes
+         */
+        void put(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, data, size, b.length);
+            size += b.length;
+        }
+
+        /**
+         * Write an unsigned varint
+         * @param v the value
+         */
+        void putVarint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                data[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            data[size++] = (byte) v;
+        }
+
+        /**
+         * Write a signed varint in zigzag encoding
+         * @param v the value
+         */
+        void putSigned(long v) {
+            putVarint((v << 1) ^ (v >> 63));
+        }
+
+        /**
+         * Write an u16
+         * @param v the value
+         */
+        void putShort(int v) {
+            put(v);
+            put(v >>> 8);
+        }
+
+        /**
+         * Write an u32
+         * @param v the value
+         */
+        void putInt(int v) {
+            putShort(v);
+            putShort(v >>> 16);
+        }
+
+        /**
+         * Write an u64
+         * @param v the value
+         */
+        void putLong(long v) {
+            putInt((int) v);
+            putInt((int) (v >>> 32));
+        }
+
+        /**
+         * Write a f64
+         * @param v the value
+         */
+        void putDouble(double v) {
+            putLong(Double.doubleToRawLongBits(v));
+        }
+
+        /**
+         * Pad with zeros to a multiple of 8 bytes
+         */
+        void align() {
+            while ((size & 7) != 0) {
+                put(0);
+            }
+        }
+    }
+
+    /**
+     * Encoded section
+     */
+    private static final class Section {
+        /**
+         * the section type
+         */
+        final int type;
+
+        /**
+         * the number of records
+         */
+        int count = 0;
+
+        /**
+         * the records
+         */
+        final Buffer buffer = new Buffer();
+
+        /**
+         * the id of the last record
+         */
+        long lastId = 0;
+
+        /**
+         * Constructor
+         * @param type the section type
+         */
+        Section(int type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * conversion to image coordinates, or null to write the nodes unchanged
+     */
+    private final ImageTransform imageTransform;
+
+    /**
+     * image coordinates of the last export, or null
+     */
+    private final ImageCoordinateCache cache;
+
+    /**
+     * lat/lon format of the OSM file, cloned as DecimalFormat is not thread safe
+     */
+    private final DecimalFormat latLonFormat = (DecimalFormat) LatLon.cDdHighPrecisionFormatter.clone();
+
+    /**
+     * string indexes
+     */
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+
+    /**
+     * strings in index order
+     */
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * key value pairs of the current primitive
+     */
+    private final List<String> tags = new ArrayList<>();
+
+    /**
+     * buffer of the image coordinates of the current node in micro pixels
+     */
+    private final double[] micros = new double[2];
+
+    /**
+     * last lat, lon, X_image, Y_image written
+     */
+    private final long[] last = new long[4];
+
+    /**
+     * Constructor
+     * @param imageTransform conversion to image coordinates, null to write the nodes unchanged
+     * @param cache image coordinates of the last export, null to convert all nodes
+     */
+    public LexxPlussBinaryWriter(ImageTransform imageTransform, ImageCoordinateCache cache) {
+        this.imageTransform = imageTransform;
+        this.cache = cache;
+    }
+
+    /**
+     * Write a data set.
+     * The caller holds the read lock of the data set.
+     * @param ds the data set
+     * @param out the output stream, not closed
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(DataSet ds, OutputStream out) throws IOException {
+        stringIndexes.clear();
+        strings.clear();
+        Arrays.fill(last, 0);
+        index("");
+
+        List<Node> nodes = sorted(ds.getNodes());
+        List<Relation> relations = sorted(ds.getRelations());
+        // Wayは種別ごとのセクションに分け、全セクションを通した番号で参照する
+        List<List<Way>> ways = new ArrayList<>();
+        for (int i = 0; i < WAY_SECTIONS.length; i++) {
+            ways.add(new ArrayList<>());
+        }
+        // OSM形式と同じ変換行列Wayを使う
+        Way transformWay = imageTransform != null ? LexxPlussWriter.findTransformWay(ds.getWays()) : null;
+        for (Way w : sorted(ds.getWays())) {
+            ways.get(wayCategory(w)).add(w);
+        }
+        if (imageTransform != null && transformWay == null) {
+            // OSM形式と同じく変換行列Wayを追加する
+            transformWay = cache != null ? cache.newTransformWay() : new Way();
+            ways.get(WAY_SECTIONS.length - 1).add(transformWay);
+        }
+
+        Map<OsmPrimitive, Integer> nodeIndexes = new IdentityHashMap<>(nodes.size());
+        Map<OsmPrimitive, Integer> wayIndexes = new IdentityHashMap<>();
+        Map<OsmPrimitive, Integer> relationIndexes = new IdentityHashMap<>(relations.size());
+        for (Node n : nodes) {
+            nodeIndexes.put(n, nodeIndexes.size());
+        }
+        for (List<Way> list : ways) {
+            for (Way w : list) {
+                wayIndexes.put(w, wayIndexes.size());
+            }
+        }
+        for (Relation r : relations) {
+            relationIndexes.put(r, relationIndexes.size());
+        }
+
+        List<Section> sections = new ArrayList<>();
+        Section bounds = new Section(SECTION_BOUNDS);
+        for (DataSource source : ds.getDataSources()) {
+            bounds.buffer.putDouble(source.bounds.getMinLat());
+            bounds.buffer.putDouble(source.bounds.getMinLon());
+            bounds.buffer.putDouble(source.bounds.getMaxLat());
+            bounds.buffer.putDouble(source.bounds.getMaxLon());
+            bounds.buffer.putInt(index(source.origin));
+            bounds.buffer.putInt(0);
+            bounds.count++;
+        }
+        sections.add(bounds);
+
+        Section nodeSection = new Section(SECTION_NODES);
+        for (Node n : nodes) {
+            writeNode(nodeSection, n);
+        }
+        sections.add(nodeSection);
+
+        for (int i = 0; i < WAY_SECTIONS.length; i++) {
+            Section section = new Section(WAY_SECTIONS[i]);
+            for (Way w : ways.get(i)) {
+                writeWay(section, w, nodeIndexes, w == transformWay);
+            }
+            sections.add(section);
+        }
+
+        Section relationSection = new Section(SECTION_RELATIONS);
+        for (Relation r : relations) {
+            writeRelation(relationSection, r, nodeIndexes, wayIndexes, relationIndexes);
+        }
+        sections.add(relationSection);
+
+        int versionIndex = index(ds.getVersion());
+        int uploadIndex = index(ds.getUploadPolicy() != null ? ds.getUploadPolicy().getXmlFlag() : null);
+        int downloadIndex = index(ds.getDownloadPolicy() != null ? ds.getDownloadPolicy().getXmlFlag() : null);
+        // 文字列表は他のセクションの書き込み後に確定する
+        sections.add(0, writeStrings());
+
+        Buffer header = new Buffer();
+        header.put(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((imageTransform != null ? HEADER_TRANSFORM : 0) | (ds.isLocked() ? HEADER_LOCKED : 0));
+        header.putInt(sections.size());
+        header.putInt(versionIndex);
+        header.putInt(uploadIndex);
+        header.putInt(downloadIndex);
+        header.putLong(0);
+        double[] transform = imageTransform != null ? imageTransform.getParameters() : new double[16];
+        for (double v : transform) {
+            header.putDouble(v);
+        }
+        long offset = align(HEADER_SIZE + (long) SECTION_ENTRY_SIZE * sections.size());
+        for (Section section : sections) {
+            header.putInt(section.type);
+            header.putInt(section.count);
+            header.putLong(offset);
+            header.putLong(section.buffer.size);
+            offset = align(offset + section.buffer.size);
+        }
+        header.align();
+        out.write(header.data, 0, header.size);
+        for (Section section : sections) {
+            section.buffer.align();
+            out.write(section.buffer.data, 0, section.buffer.size);
+        }
+        out.flush();
+    }
+
+    /**
+     * Write a node
+     * @param section the node section
+     * @param n the node
+     */
+    private void writeNode(Section section, Node n) {
+        tags.clear();
+        int flags = 0;
+        long lat = 0;
+        long lon = 0;
+        long x = 0;
+        long y = 0;
+        if (!n.isIncomplete()) {
+            if (n.isLatLonKnown()) {
+                flags |= FLAG_LATLON;
+                lat = toUnits(n.lat());
+                lon = toUnits(n.lon());
+            }
+            EastNorth pos = n.getEastNorth();
+            if (imageTransform != null && pos != null) {
+                double[] imageMicros = micros;
+                if (cache != null) {
+                    imageMicros = cache.getImageMicros(n, imageTransform);
+                } else {
+                    imageTransform.toImageMicros(pos, micros);
+                }
+                n.visitKeys((p, k, v) -> {
+                    if (!k.equals("X_image") && !k.equals("Y_image")) {
+                        tags.add(k);
+                        tags.add(v);
+                    }
+                });
+                if (isExact(imageMicros[0]) && isExact(imageMicros[1])) {
+                    flags |= FLAG_IMAGE;
+                    x = (long) imageMicros[0];
+                    y = (long) imageMicros[1];
+                } else {
+                    // NaNなどは文字列のタグとして残す
+                    tags.add("X_image");
+                    tags.add(ImageCoordinateCodec.toString(imageMicros[0]));
+                    tags.add("Y_image");
+                    tags.add(ImageCoordinateCodec.toString(imageMicros[1]));
+                }
+            } else {
+                collectTags(n);
+            }
+        }
+        Buffer b = section.buffer;
+        if (!writeCommon(section, n, flags)) {
+            return;
+        }
+        if ((flags & FLAG_LATLON) != 0) {
+            b.putSigned(lat - last[0]);
+            b.putSigned(lon - last[1]);
+            last[0] = lat;
+            last[1] = lon;
+        }
+        if ((flags & FLAG_IMAGE) != 0) {
+            b.putSigned(x - last[2]);
+            b.putSigned(y - last[3]);
+            last[2] = x;
+            last[3] = y;
+        }
+        writeTags(b);
+    }
+
+    /**
+     * Write a way
+     * @param section the way section
+     * @param w the way
+     * @param nodeIndexes the node indexes
+     * @param transform whether the way is the transform matrix way
+     */
+    private void writeWay(Section section, Way w, Map<OsmPrimitive, Integer> nodeIndexes, boolean transform) {
+        tags.clear();
+        if (transform) {
+            imageTransform.toTags().forEach((k, v) -> {
+                tags.add(k);
+                tags.add(v);
+            });
+        } else {
+            collectTags(w);
+        }
+        if (!writeCommon(section, w, 0)) {
+            return;
+        }
+        Buffer b = section.buffer;
+        List<Node> wayNodes = w.getNodes();
+        b.putVarint(wayNodes.size());
+        long previous = 0;
+        for (Node n : wayNodes) {
+            long index = nodeIndexes.get(n);
+            b.putSigned(index - previous);
+            previous = index;
+        }
+        writeTags(b);
+    }
+
+    /**
+     * Write a relation
+     * @param section the relation section
+     * @param r the relation
+     * @param nodeIndexes the node indexes
+     * @param wayIndexes the way indexes
+     * @param relationIndexes the relation indexes
+     */
+    private void writeRelation(Section section, Relation r, Map<OsmPrimitive, Integer> nodeIndexes,
+            Map<OsmPrimitive, Integer> wayIndexes, Map<OsmPrimitive, Integer> relationIndexes) {
+        tags.clear();
+        collectTags(r);
+        if (!writeCommon(section, r, 0)) {
+            return;
+        }
+        Buffer b = section.buffer;
+        List<RelationMember> members = r.getMembers();
+        b.putVarint(members.size());
+        for (RelationMember m : members) {
+            OsmPrimitive p = m.getMember();
+            if (p instanceof Node) {
+                b.putVarint((long) nodeIndexes.get(p) << 2);
+            } else if (p instanceof Way) {
+                b.putVarint((long) wayIndexes.get(p) << 2 | 1);
+            } else {
+                b.putVarint((long) relationIndexes.get(p) << 2 | 2);
+            }
+            b.putVarint(index(m.getRole()));
+        }
+        writeTags(b);
+    }
+
+    /**
+     * Write the id, flags, version and metadata of a primitive
+     * @param section the section
+     * @param p the primitive
+     * @param flags the type specific flags
+     * @return true if the rest of the record follows, false for an incomplete primitive
+     */
+    private boolean writeCommon(Section section, OsmPrimitive p, int flags) {
+        Buffer b = section.buffer;
+        long id = p.getUniqueId();
+        b.putSigned(id - section.lastId);
+        section.lastId = id;
+        section.count++;
+        if (p.isIncomplete()) {
+            b.putVarint(FLAG_INCOMPLETE);
+            return false;
+        }
+        if (p.isModified()) {
+            flags |= FLAG_MODIFIED;
+        }
+        if (p.isDeleted()) {
+            flags |= FLAG_DELETED;
+        }
+        if (!p.isVisible()) {
+            flags |= FLAG_INVISIBLE;
+        }
+        if (!p.isTimestampEmpty()) {
+            flags |= FLAG_TIMESTAMP;
+        }
+        if (p.getUser() != null) {
+            flags |= FLAG_USER;
+        }
+        if (p.getChangesetId() > 0) {
+            flags |= FLAG_CHANGESET;
+        }
+        b.putVarint(flags);
+        b.putVarint(p.getVersion());
+        if ((flags & FLAG_TIMESTAMP) != 0) {
+            b.putSigned(p.getRawTimestamp());
+        }
+        if ((flags & FLAG_USER) != 0) {
+            b.putSigned(p.getUser().getId());
+            b.putVarint(index(p.getUser().getName()));
+        }
+        if ((flags & FLAG_CHANGESET) != 0) {
+            b.putVarint(p.getChangesetId());
+        }
+        return true;
+    }
+
+    /**
+     * Collect the tags of a primitive
+     * @param p the primitive
+     */
+    private void collectTags(OsmPrimitive p) {
+        p.visitKeys((prim, k, v) -> {
+            tags.add(k);
+            tags.add(v);
+        });
+    }
+
+    /**
+     * Write the collected tags
+     * @param b the buffer
+     */
+    private void writeTags(Buffer b) {
+        b.putVarint(tags.size() / 2);
+        for (String s : tags) {
+            b.putVarint(index(s));
+        }
+    }
+
+    /**
+     * Encode the string table
+     * @return the string section
+     */
+    private Section writeStrings() {
+        Section section = new Section(SECTION_STRINGS);
+        List<byte[]> bytes = new ArrayList<>(strings.size());
+        int offset = 0;
+        for (String s : strings) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            bytes.add(utf8);
+            section.buffer.putInt(offset);
+            offset += utf8.length;
+        }
+        section.buffer.putInt(offset);
+        for (byte[] utf8 : bytes) {
+            section.buffer.put(utf8);
+        }
+        section.count = strings.size();
+        return section;
+    }
+
+    /**
+     * Get the index of a string, adding it to the string table
+     * @param s the string, null is written as ""
+     * @return the index
+     */
+    private int index(String s) {
+        if (s == null) {
+            return 0;
+        }
+        Integer index = stringIndexes.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.add(s);
+            stringIndexes.put(s, index);
+        }
+        return index;
+    }
+
+    /**
+     * Convert lat or lon to fixed point, exactly as written to the OSM file
+     * @param degrees lat or lon
+     * @return lat or lon in 1e-11 degrees
+     */
+    private long toUnits(double degrees) {
+        return new BigDecimal(latLonFormat.format(degrees)).movePointRight(11)
+                .setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /**
+     * Get the section index of a way
+     * @param w the way
+     * @return index in {@link #WAY_SECTIONS}
+     */
+    private static int wayCategory(Way w) {
+        String lineInfo = w.get("line_info");
+        if ("agv_pose".equals(lineInfo)) {
+            return 0;
+        }
+        if ("goal_pose".equals(lineInfo)) {
+            return 1;
+        }
+        if (w.hasKey("area_base")) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * Whether micro pixels are an integer stored exactly
+     * @param v micro pixels
+     * @return true if the value fits in a long without loss
+     */
+    private static boolean isExact(double v) {
+        return Math.abs(v) < MAX_EXACT && v == Math.rint(v) && Double.doubleToRawLongBits(v) != Double.doubleToRawLongBits(-0.0);
+    }
+
+    /**
+     * Sort primitives by id
+     * @param <T> the primitive type
+     * @param primitives the primitives
+     * @return the sorted primitives
+     */
+    private static <T extends OsmPrimitive> List<T> sorted(Collection<T> primitives) {
+        List<T> result = new ArrayList<>(primitives);
+        result.sort(Comparator.comparingLong(OsmPrimitive::getUniqueId));
+        return result;
+    }
+
+    /**
+     * Round up to a multiple of 8
+     * @param v the value
+     * @return the aligned value
+     */
+    private static long align(long v) {
+        return (v + 7) & ~7L;
+    }
+}
@@ -0,0 +1,197 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.openstreetmap.josm.actions.ExtensionFileFilter;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+/**
+ * Exporter of the changes since a LexxPluss OSM file in the osmChange format (*.osc).
+ * The baseline is the file of {@link #CHANGE_BASELINE}, or else the last LexxPluss OSM file exported from the layer.
+ * Created and modified primitives are written with X_image, Y_image, deleted ones with their id only.
+ * @author LexxPluss
+ *
+ */
+public class LexxPlussChangeExporter extends LexxPlussExporter {
+    /**
+     * File extension.
+     */
+    public static final String EXTENSION = "osc";
+
+    /**
+     * Preference key of the baseline file. Empty for the last LexxPluss OSM file exported from the layer.
+     */
+    public static final String CHANGE_BASELINE = "lexxpluss.exporter.change.baseline";
+
+    /**
+     * order of the primitives in create and modify
+     */
+    private static final Comparator<OsmPrimitive> CREATE_ORDER =
+            Comparator.comparing(OsmPrimitive::getType).thenComparingLong(OsmPrimitive::getUniqueId);
+
+    public LexxPlussChangeExporter() {
+        super(new ExtensionFileFilter(EXTENSION, EXTENSION, tr("LexxPluss change file") + " (*." + EXTENSION + ")"));
+    }
+
+    @Override
+    protected void doSave(File file, OsmDataLayer layer) throws IOException {
+        ImageTransform imageTransform = getImageTransform();
+        if (imageTransform == null) {
+            throw new IOException(tr("No PicLayer to compute X_image, Y_image."));
+        }
+        DataSet dataSet = layer.getDataSet();
+        File baselineFile = getBaselineFile(dataSet);
+        if (baselineFile == null) {
+            throw new IOException(tr("No baseline. Export the map in the LexxPluss format first or set {0}.", CHANGE_BASELINE));
+        }
+        PrimitiveFingerprints before;
+        try (InputStream in = Compression.getUncompressedFileInputStream(baselineFile)) {
+            before = PrimitiveFingerprints.ofFile(in);
+        } catch (IOException e) {
+            throw new IOException(tr("Could not read the baseline {0}.", baselineFile.getName()), e);
+        }
+        try (OutputStream out = getOutputStream(file)) {
+            writeChange(out, dataSet, imageTransform, before);
+        }
+    }
+
+    /**
+     * Write the changes of a data set since a baseline
+     * @param out the output stream
+     * @param dataSet the data set
+     * @param imageTransform conversion to image coordinates
+     * @param before the fingerprints of the baseline, see {@link PrimitiveFingerprints#ofFile}
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeChange(OutputStream out, DataSet dataSet, ImageTransform imageTransform, PrimitiveFingerprints before)
+            throws IOException {
+        ImageCoordinateCache cache = ImageCoordinateCache.get(dataSet);
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+             LexxPlussWriter w = new LexxPlussWriter(pw, dataSet.getVersion(), imageTransform, cache)) {
+            dataSet.getReadLock().lock();
+            try {
+                cache.prepare(dataSet.getNodes(), imageTransform);
+                PrimitiveFingerprints after = PrimitiveFingerprints.ofExport(dataSet, imageTransform, cache);
+                writeChange(pw, w, dataSet, imageTransform, before, after);
+            } finally {
+                dataSet.getReadLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Get the baseline file
+     * @param dataSet the data set to export
+     * @return the baseline file, or null if there is none
+     */
+    private static File getBaselineFile(DataSet dataSet) {
+        String path = Config.getPref().get(CHANGE_BASELINE, "");
+        if (!path.isEmpty()) {
+            return new File(path);
+        }
+        return getLastExport(dataSet);
+    }
+
+    /**
+     * Write the changes, one hash lookup per primitive
+     * @param pw the print writer
+     * @param w the writer of the primitives
+     * @param dataSet the data set
+     * @param imageTransform conversion to image coordinates
+     * @param before the fingerprints of the baseline
+     * @param after the fingerprints of the data set
+     */
+    private static void writeChange(PrintWriter pw, LexxPlussWriter w, DataSet dataSet, ImageTransform imageTransform,
+            PrimitiveFingerprints before, PrimitiveFingerprints after) {
+        List<OsmPrimitive> created = new ArrayList<>();
+        List<OsmPrimitive> modified = new ArrayList<>();
+        for (PrimitiveId id : after.getIds()) {
+            Long old = before.get(id);
+            if (old == null) {
+                created.add(dataSet.getPrimitiveById(id));
+            } else if (!old.equals(after.get(id))) {
+                modified.add(dataSet.getPrimitiveById(id));
+            }
+        }
+        List<PrimitiveId> deleted = new ArrayList<>();
+        for (PrimitiveId id : before.getIds()) {
+            if (after.get(id) == null) {
+                deleted.add(id);
+            }
+        }
+        // 変換行列が変わった場合は基準ファイルの変換行列Wayを更新する
+        Way oldTransform = before.getTransformWay();
+        if (oldTransform == null) {
+            Way transformWay = ImageCoordinateCache.get(dataSet).newTransformWay();
+            transformWay.setKeys(imageTransform.toTags());
+            created.add(transformWay);
+        } else if (!imageTransform.toTags().equals(oldTransform.getKeys())) {
+            Way transformWay = new Way(oldTransform);
+            transformWay.setKeys(imageTransform.toTags());
+            modified.add(transformWay);
+        }
+        created.sort(CREATE_ORDER);
+        modified.sort(CREATE_ORDER);
+        // 削除はリレーション、ウェイ、ノードの順
+        deleted.sort(Comparator.comparing(PrimitiveId::getType).reversed().thenComparingLong(PrimitiveId::getUniqueId));
+
+        pw.println("<?xml version='1.0' encoding='UTF-8'?>");
+        pw.println("<osmChange version='0.6' generator='LexxPluss'>");
+        writeSection(pw, w, "create", created);
+        writeSection(pw, w, "modify", modified);
+        if (!deleted.isEmpty()) {
+            pw.println("<delete>");
+            for (PrimitiveId id : deleted) {
+                pw.println("  <" + id.getType().getAPIName() + " id='" + id.getUniqueId() + "' />");
+            }
+            pw.println("</delete>");
+        }
+        pw.println("</osmChange>");
+        pw.flush();
+    }
+
+    /**
+     * Write a section of the change
+     * @param pw the print writer
+     * @param w the writer of the primitives
+     * @param name create or modify
+     * @param primitives the primitives
+     */
+    private static void writeSection(PrintWriter pw, LexxPlussWriter w, String name, List<? extends OsmPrimitive> primitives) {
+        if (primitives.isEmpty()) {
+            return;
+        }
+        pw.println("<" + name + ">");
+        for (OsmPrimitive p : primitives) {
+            if (p.getType() == OsmPrimitiveType.NODE) {
+                w.visit((Node) p);
+            } else if (p.getType() == OsmPrimitiveType.WAY) {
+                w.visit((Way) p);
+            } else {
+                w.visit((Relation) p);
+            }
+        }
+        pw.println("</" + name + ">");
+    }
+}
@@ -3,34 +3,33 @@ package org.openstreetmap.josm.plugins.lexxpluss.io;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import java.awt.Image;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
 
-
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.osm.DataSet;
-import org.openstreetmap.josm.data.osm.Node;
-import org.openstreetmap.josm.data.osm.Way;
-import org.openstreetmap.josm.data.osm.Tag;
-import org.openstreetmap.josm.data.osm.TagMap;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.io.importexport.OsmExporter;
-import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.MapFrame;
 import org.openstreetmap.josm.gui.MapView;
-import org.openstreetmap.josm.plugins.piclayer.layer.PicLayerAbstract;
-import org.openstreetmap.josm.plugins.piclayer.transform.PictureTransform;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 
 /**
@@ -43,284 +42,140 @@ public class LexxPlussExporter extends OsmExporter {
      * File extension.
      */
     private static final String EXTENSION = "osm";
-    
-    public LexxPlussExporter() {
-        super(new ExtensionFileFilter(EXTENSION, EXTENSION, 
-                tr("OSM Server Files LexxPluss format") + " (*."+EXTENSION+")"));
-    }
 
-    @Override
-    protected void doSave(File file, OsmDataLayer layer) throws IOException {
-
-        // record info in this tag to save for re-transform
-        TagMap tags = new TagMap();
-        tags.put("transform matrix","");
-
-        Image image = null;
-        AffineTransform transform = null;   // 画像の表示位置変換アフィン行列
-        EastNorth imagePosition = null;     // en単位での画像中央位置
-        PicLayerAbstract picLayer = null;
-        // PicLayerを検索し、情報を取得
-        List<Layer> layers = MainApplication.getLayerManager().getVisibleLayersInZOrder();
-        // System.out.println("layers Count=" + layers.size());
-        final MapFrame mf = MainApplication.getMap();
-        MapView mv = mf.mapView;
-        EastNorth center = mv.getCenter();
-        EastNorth leftop = mv.getEastNorth(0, 0);
-        double pixel_per_en_x = (mv.getWidth() / 2.0) / (center.east() - leftop.east());  // 1en当たりのピクセル数
-        //System.out.println("pixel_per_en_x=" + pixel_per_en_x);
-        double pixel_per_en_y = (mv.getHeight() / 2.0) / (leftop.north() - center.north());  // 1en当たりのピクセル数
-        //System.out.println("pixel_per_en_y=" + pixel_per_en_y);
+    /**
+     * Preference key of the compression level of .osm.gz, .osm.bz2 and .osm.xz files.
+     * gz: 0-9, bz2: 1-9 (block size), xz: 0-9 (preset). -1 for the default level of each format.
+     */
+    public static final String COMPRESSION_LEVEL = "lexxpluss.exporter.compression.level";
 
-        tags.put("view_center_lon", Double.valueOf(center.east()).toString());
-        tags.put("view_center_lat", Double.valueOf(center.north()).toString());
-        tags.put("pixel_per_en_x",Double.valueOf(pixel_per_en_x).toString());
-        tags.put("pixel_per_en_y",Double.valueOf(pixel_per_en_y).toString());
+    /**
+     * Preference key of the view independent export.
+     * If true, X_image, Y_image are computed from the PicLayer calibration only, as if the view was centered
+     * on the image, so the file does not depend on the position and zoom of the map view.
+     */
+    public static final String VIEW_INDEPENDENT = "lexxpluss.exporter.view_independent";
 
-        double pic_offset_x = 0, pic_offset_y = 0;  // ピクセル単位の画像中央位置
-        // This is now the offset in screen pixels
-        for(Layer _layer : layers) {
-            // System.out.println("layers Name=" + _layer.getName());
-            // System.out.println("Class Name=" + _layer.getClass().getName());
-            if (_layer instanceof PicLayerAbstract) {
-                // System.out.println("PicLayerAbstract");
-                picLayer = (PicLayerAbstract)_layer;
-                image = picLayer.getImage();
-                PictureTransform transformer = picLayer.getTransformer();
-                transform = transformer.getTransform(); 
-                imagePosition = transformer.getImagePosition();
-                pic_offset_x = ((imagePosition.east() - center.east()) * pixel_per_en_x);
-                pic_offset_y = ((center.north() - imagePosition.north()) * pixel_per_en_y);
-                
-                tags.put("pic_offset_x",Double.valueOf(pic_offset_x).toString());
-                tags.put("pic_offset_y",Double.valueOf(pic_offset_y).toString());
+    /**
+     * the last LexxPluss OSM file exported from each data set, the baseline of {@link LexxPlussChangeExporter}
+     */
+    private static final Map<DataSet, File> lastExports = new WeakHashMap<>();
 
-                /*
-                System.out.println("pixel_per_en=" + pixel_per_en);
-                System.out.println("center North=" + center.north());
-                System.out.println("center East=" + center.east());
-                System.out.println("picture offset x=" + pic_offset_x);
-                System.out.println("picture offset y=" + pic_offset_y);
-                System.out.println("Image Width=" + image.getWidth(null));
-                System.out.println("Image Height=" + image.getHeight(null));
-                System.out.println("Image North=" + imagePosition.north());
-                System.out.println("Image East=" + imagePosition.east());
-                System.out.println("Transform ScaleX =" + transform.getScaleX());
-                System.out.println("Transform ScaleY =" + transform.getScaleY());
-                System.out.println("Transform TransX =" + transform.getTranslateX());
-                System.out.println("Transform TransY =" + transform.getTranslateY());
-                System.out.println("InitialImageScale =" + getInitialImageScale(picLayer));
-                */
-            }
-            /*
-            if (_layer instanceof OsmDataLayer) {
-                System.out.println("OsmDataLayer");
-            }
-            */
-        }
-        if (picLayer == null || image == null || transform == null) {
-            // 通常のOSM保存処理を実行させる
-            super.doSave(file, layer);
-            // PicLayerが見つからない場合はエラー
-            //JOptionPane.showMessageDialog(MainApplication.getMainFrame(), tr("PicLayer is not existed."));
-            return;
-        }
-        // 保存するレイヤーのデータセットを取得
-        DataSet dataSet = layer.getDataSet();
-        //System.out.println("dataSet Count=" + dataSet.getNodes().size());
-        //dataSet.lock();
-        dataSet.beginUpdate();
-         
-        List<Node> nodes = new ArrayList<Node>(dataSet.getNodes());
-        double[] srcPts = new double[nodes.size() * 2];
-        double[] dstPts = new double[srcPts.length];
-        // 座標変換準備
-        int ofs = 0;
-        double initialImageScale = getInitialImageScale(picLayer);
-        for (Node node : nodes) {
-            EastNorth pos = node.getEastNorth();
-            srcPts[ofs * 2] = (pos.east() - center.east()) * pixel_per_en_x;
-            // 画像座標系と地図座標系ではY軸の方向が逆
-            srcPts[ofs * 2 + 1] =  (center.north() - pos.north()) * pixel_per_en_y;
-            // srcPts[ofs * 2] = ((pos.east() - center.east()) * (mv.getWidth() / 2.0)) / (center.east() - leftop.east());
-            // srcPts[ofs * 2 + 1] =  ((center.north() - pos.north()) * (mv.getWidth() / 2.0)) / (center.east() - leftop.east());
-            //System.out.println("Src =(" + srcPts[ofs * 2] + "," + srcPts[ofs * 2 + 1] + ")");
-            ofs++;
-        }
-        // アフィン行列逆変換 
-        try {
-            double[] matrix = new double[6];
-            transform.getMatrix(matrix);
-            matrix[4] = 0.0;    // アフィン行列内の平行移動要素を消去
-            matrix[5] = 0.0;
-            transform = new AffineTransform(matrix);
-            /*
-            System.out.println("Transform ScaleX =" + transform.getScaleX());
-            System.out.println("Transform ScaleY =" + transform.getScaleY());
-            System.out.println("Transform TransX =" + transform.getTranslateX());
-            System.out.println("Transform TransY =" + transform.getTranslateY());
-            System.out.println("Transform ShearX =" + transform.getShearX());
-            System.out.println("Transform ShearY =" + transform.getShearY());
-            */
-            transform.inverseTransform(srcPts, 0, dstPts, 0, nodes.size());
-            
-           // save matrix in the tags
-            tags.put("m0",Double.valueOf(matrix[0]).toString());
-            tags.put("m1",Double.valueOf(matrix[1]).toString());
-            tags.put("m2",Double.valueOf(matrix[2]).toString());
-            tags.put("m3",Double.valueOf(matrix[3]).toString());
-            tags.put("m4",Double.valueOf(matrix[4]).toString());
-            tags.put("m5",Double.valueOf(matrix[5]).toString());
-            
-        } catch (NoninvertibleTransformException e) {
-            Logging.log(Level.WARNING, "Could not inverseTransform.", e);
-            // 通常のOSM保存処理を実行させる
-            super.doSave(file, layer);
-            return;
-        }
-        // スケール調整
-        ofs = 0;
-        try {
-            // System.out.println("getMetersPerEasting=" + getMetersPerEasting(picLayer, imagePosition));
-            // System.out.println("getMetersPerNorthing=" + getMetersPerNorthing(picLayer, imagePosition));
-            // 画像半縦幅、半横幅
-            double hw = image.getWidth(null) / 2.0;
-            double hh = image.getHeight(null) / 2.0;
-            // スケール補正値
-            double scaleX = (100.0 * getMetersPerEasting(picLayer, imagePosition)) / (initialImageScale * pixel_per_en_x);
-            double scaleY = (100.0 * getMetersPerNorthing(picLayer, imagePosition)) / (initialImageScale * pixel_per_en_y);
-            // System.out.println("scaleX=" + scaleX);
-            // System.out.println("scaleY=" + scaleY);
+    public LexxPlussExporter() {
+        super(ExtensionFileFilter.newFilterWithArchiveExtensions(EXTENSION, EXTENSION,
+                tr("OSM Server Files LexxPluss format"),
+                ExtensionFileFilter.AddArchiveExtension.ALL, Arrays.asList("gz", "bz2", "xz")));
+    }
 
-            tags.put("hw", Double.valueOf(hw).toString());
-            tags.put("hh", Double.valueOf(hh).toString());
-            tags.put("scaleX", Double.valueOf(scaleX).toString());
-            tags.put("scaleY", Double.valueOf(scaleY).toString());
-            
-            for (Node node : nodes) {
-                double x = dstPts[ofs * 2];
-                double y = dstPts[ofs * 2 + 1];
-                // System.out.println("Dst1 =(" + x + "," + y + ")");
-                // node.setEastNorth(new EastNorth(x, y));
-                x -= pic_offset_x / transform.getScaleX();
-                y -= pic_offset_y / transform.getScaleY();
-                // System.out.println("Dst2 =(" + x + "," + y + ")");
-                x *= scaleX;
-                y *= scaleY;
-                // System.out.println("Dst3 =(" + x + "," + y + ")");
-                x = hw + x;
-                y = hh + y;
-                // 浮動小数点による誤差への対処
-                x = Math.floor(x * 1000000) / 1000000;
-                y = Math.floor(y * 1000000) / 1000000;
-                //System.out.println("Dst4 =(" + x + "," + y + ")");
-                // 変換した座標をタグにセット
-                // System.out.println("Update Keys=" + node.getNumKeys());
-                node.put("X_image", String.valueOf(x));
-                node.put("Y_image", String.valueOf(y));
-                // System.out.println("Node Keys=" + node.getNumKeys());
-                ofs++;
-            }
-        } catch (Exception e) {
-            Logging.log(Level.WARNING, "Could not rescaling.", e);
-            // 通常のOSM保存処理を実行させる
-            super.doSave(file, layer);
-            return;
-        }
-        try {
-			List<Way> ways = new ArrayList<Way>(dataSet.getWays());
-			boolean exist = false;
-			for (Way way: ways) {
-				TagMap ts = way.getKeys();
-				for (Tag tag: ts.getTags()) {
-					if (tag.getKey() == "transform matrix") {
-						exist = true;
-						way.removeAll();
-						way.setKeys(tags);
-						break;
-					}
-				}
-				if (exist) {
-					break;
-				}
-			}
-			if (!exist) {
-				// create new Way
-				Way w = new Way();
-				w.setKeys(tags);
-				dataSet.addPrimitive(w);
-			}
-        }
-        catch (Exception e) {
-        	// do nothing
-        }
-        dataSet.endUpdate();
-        //dataSet.unlock();
-        // 基底クラスのファイル保存メソッドを実行する
-        super.doSave(file, layer);
+    /**
+     * Constructor for exporters of other LexxPluss formats
+     * @param filter the file filter
+     */
+    protected LexxPlussExporter(ExtensionFileFilter filter) {
+        super(filter);
     }
 
     /**
-     * get PicLayerAbstract.initialImageScale
-     * @param picLayer PicLayerAbstract instance
-     * @return PicLayerAbstract.initialImageScale
+     * Get the last LexxPluss OSM file exported from a data set
+     * @param ds the data set
+     * @return the file, or null if the data set was not exported yet
      */
-    private double getInitialImageScale(PicLayerAbstract picLayer) {
-        double r = Double.NaN;
-        try {
-            // PicLayerAbstractは抽象クラスなのでpicLayerの実態は必ず継承クラスになる。
-            // リファクタリングには継承クラスから親クラスのPicLayerAbstractを参照する
-            Field f = picLayer.getClass().getSuperclass().getDeclaredField("initialImageScale");
-            f.setAccessible(true);
-            r = (double)f.get(picLayer);
-        }
-        catch (NoSuchFieldException | IllegalAccessException e) {
-            Logging.log(Level.WARNING, "Could not get PicLayerAbstract.initialImageScale.", e);
-        }
-        return r;
+    public static synchronized File getLastExport(DataSet ds) {
+        return lastExports.get(ds);
     }
 
     /**
-     * get MetersPerEasting
-     * @param picLayer PicLayerAbstract instance
-     * @param en imagePosition
-     * @return MetersPerEasting
+     * Remember the LexxPluss OSM file exported from a data set
+     * @param ds the data set
+     * @param file the file
      */
-    private double getMetersPerEasting(PicLayerAbstract picLayer, EastNorth en) {
-        double r = Double.NaN;
-        try {
-            // PicLayerAbstractは抽象クラスなのでpicLayerの実態は必ず継承クラスになる。
-            // リファクタリングには継承クラスから親クラスのPicLayerAbstractを参照する
-            // 引数の型は必ず指定する
-            Method m = picLayer.getClass().getSuperclass().getDeclaredMethod("getMetersPerEasting", EastNorth.class);
-            m.setAccessible(true);
-            r = (double)m.invoke(picLayer, en); 
+    private static synchronized void setLastExport(DataSet ds, File file) {
+        lastExports.put(ds, file);
+    }
+
+    @Override
+    protected OutputStream getOutputStream(File file) throws IOException {
+        final int level = Config.getPref().getInt(COMPRESSION_LEVEL, -1);
+        Compression compression = Compression.byExtension(file.getName());
+        if (level < 0 || (compression != Compression.GZIP && compression != Compression.BZIP2 && compression != Compression.XZ)) {
+            return super.getOutputStream(file);
         }
-        catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-            Logging.log(Level.WARNING, "Could not invoke PicLayerAbstract.getMetersPerEasting.", e);
+        // 圧縮レベルを指定してストリームで圧縮する
+        OutputStream out = Files.newOutputStream(file.toPath());
+        try {
+            switch (compression) {
+            case GZIP:
+                return new GZIPOutputStream(out, 65536) {
+                    {
+                        def.setLevel(Math.min(level, 9));
+                    }
+                };
+            case BZIP2:
+                return new BZip2CompressorOutputStream(out, Math.max(1, Math.min(level, 9)));
+            default:
+                return new XZCompressorOutputStream(out, Math.min(level, 9));
+            }
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
         }
-        return r;
     }
 
     /**
-     * get MetersPerNorthing
-     * @param picLayer PicLayerAbstract instance
-     * @param en imagePosition
-     * @return MetersPerNorthing
+     * Get the conversion to image coordinates from the active PicLayer.
+     * Without a map view, e.g. headless, or with {@link #VIEW_INDEPENDENT} the view is not used.
+     * @return the conversion, or null if there is no PicLayer or its transform is not invertible
      */
-    private double getMetersPerNorthing(PicLayerAbstract picLayer, EastNorth en) {
-        double r = Double.NaN;
+    protected ImageTransform getImageTransform() {
+        // PicLayerの情報はキャッシュされた校正情報から取得
+        PicLayerCalibration.Snapshot calibration = PicLayerCalibration.getInstance().getSnapshot();
+        if (calibration == null) {
+            // PicLayerが見つからない場合はエラー
+            //JOptionPane.showMessageDialog(MainApplication.getMainFrame(), tr("PicLayer is not existed."));
+            return null;
+        }
+        final MapFrame mf = MainApplication.getMap();
         try {
-            // PicLayerAbstractは抽象クラスなのでpicLayerの実態は必ず継承クラスになる。
-            // リファクタリングには継承クラスから親クラスのPicLayerAbstractを参照する
-            // 引数の型は必ず指定する
-            Method m = picLayer.getClass().getSuperclass().getDeclaredMethod("getMetersPerNorthing", EastNorth.class);
-            m.setAccessible(true);
-            r = (double)m.invoke(picLayer, en); 
+            if (mf == null || mf.mapView == null || Config.getPref().getBoolean(VIEW_INDEPENDENT, false)) {
+                // 表示位置・ズームに依存しない変換
+                return ImageTransform.fromCalibration(calibration);
+            }
+            MapView mv = mf.mapView;
+            EastNorth center = mv.getCenter();
+            EastNorth leftop = mv.getEastNorth(0, 0);
+            double pixel_per_en_x = (mv.getWidth() / 2.0) / (center.east() - leftop.east());  // 1en当たりのピクセル数
+            double pixel_per_en_y = (mv.getHeight() / 2.0) / (leftop.north() - center.north());  // 1en当たりのピクセル数
+            return ImageTransform.fromCalibration(calibration, center, pixel_per_en_x, pixel_per_en_y);
+        } catch (NoninvertibleTransformException e) {
+            Logging.log(Level.WARNING, "Could not inverseTransform.", e);
+            return null;
         }
-        catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-            Logging.log(Level.WARNING, "Could not invoke PicLayerAbstract.getMetersPerNorthing.", e);
+    }
+
+    @Override
+    protected void doSave(File file, OsmDataLayer layer) throws IOException {
+        ImageTransform imageTransform = getImageTransform();
+        if (imageTransform == null) {
+            // 通常のOSM保存処理を実行させる
+            super.doSave(file, layer);
+            return;
+        }
+        // X_image, Y_imageと変換行列Wayは書き込み時に計算し、データセットは変更しない
+        // 前回の保存から移動・追加されたノードのみ計算する
+        DataSet dataSet = layer.getDataSet();
+        ImageCoordinateCache cache = ImageCoordinateCache.get(dataSet);
+        try (OutputStream out = getOutputStream(file);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+             LexxPlussWriter w = new LexxPlussWriter(new PrintWriter(writer), dataSet.getVersion(), imageTransform, cache)) {
+            dataSet.getReadLock().lock();
+            try {
+                // 変換は並列に行い、文字列化と書き込みはID順に1スレッドで行う
+                cache.prepare(dataSet.getNodes(), imageTransform);
+                w.write(dataSet);
+            } finally {
+                dataSet.getReadLock().unlock();
+            }
         }
-        return r;
+        setLastExport(dataSet, file);
     }
 }
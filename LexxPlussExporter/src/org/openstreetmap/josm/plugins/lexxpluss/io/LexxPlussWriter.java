@@ -0,0 +1,183 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.io.PrintWriter;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.INode;
+import org.openstreetmap.josm.data.osm.IWay;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Tagged;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.io.OsmWriter;
+import org.openstreetmap.josm.io.XmlWriter;
+
+/**
+ * OSM writer for the LexxPluss format.
+ * Writes X_image, Y_image of every node and the transform matrix way computed while writing,
+ * without changing the data set.
+ * @author LexxPluss
+ *
+ */
+public class LexxPlussWriter extends OsmWriter {
+    /**
+     * key of the transform matrix way
+     */
+    static final String TRANSFORM_MATRIX = "transform matrix";
+
+    /**
+     * keys of the image coordinates, sorted
+     */
+    private static final String[] IMAGE_KEYS = {"X_image", "Y_image"};
+
+    /**
+     * conversion to image coordinates
+     */
+    private final ImageTransform imageTransform;
+
+    /**
+     * image coordinates of the last export, or null
+     */
+    private final ImageCoordinateCache cache;
+
+    /**
+     * buffer of the image coordinates of the current node in micro pixels
+     */
+    private final double[] micros = new double[2];
+
+    /**
+     * buffer of the formatted image coordinate
+     */
+    private final char[] chars = new char[ImageCoordinateCodec.MAX_LENGTH];
+
+    /**
+     * the transform matrix way of the data set, whose tags are replaced, or null
+     */
+    private Way transformWay = null;
+
+    /**
+     * Constructor
+     * @param out the print writer
+     * @param version the OSM API version
+     * @param imageTransform conversion to image coordinates
+     */
+    public LexxPlussWriter(PrintWriter out, String version, ImageTransform imageTransform) {
+        this(out, version, imageTransform, null);
+    }
+
+    /**
+     * Constructor
+     * @param out the print writer
+     * @param version the OSM API version
+     * @param imageTransform conversion to image coordinates
+     * @param cache image coordinates of the last export, only nodes changed since then are converted.
+     *        null to convert all nodes
+     */
+    public LexxPlussWriter(PrintWriter out, String version, ImageTransform imageTransform, ImageCoordinateCache cache) {
+        super(out, false, version);
+        this.imageTransform = imageTransform;
+        this.cache = cache;
+    }
+
+    /**
+     * Find the transform matrix way of a data set, the first one written to the file.
+     * The importer also takes the first one in the file.
+     * @param ways the ways of the data set
+     * @return the first way with the transform matrix which is not deleted, or null
+     */
+    static Way findTransformWay(Collection<Way> ways) {
+        Way result = null;
+        for (Way w : ways) {
+            if (!w.isDeleted() && w.hasKey(TRANSFORM_MATRIX)
+                    && (result == null || byIdComparator.compare(w, result) < 0)) {
+                result = w;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void writeWays(Collection<Way> ways) {
+        transformWay = findTransformWay(ways);
+        super.writeWays(ways);
+        if (transformWay == null) {
+            // 出力のたびに同じIDになるよう、データセットごとに一つのWayを使う
+            Way w = cache != null ? cache.newTransformWay() : new Way();
+            w.setKeys(imageTransform.toTags());
+            visit(w);
+        }
+    }
+
+    @Override
+    protected void addTags(Tagged osm, String tagname, boolean tagOpen) {
+        if (osm instanceof INode) {
+            EastNorth pos = ((INode) osm).getEastNorth();
+            if (pos != null) {
+                double[] imageMicros = micros;
+                if (cache != null && osm instanceof Node) {
+                    imageMicros = cache.getImageMicros((Node) osm, imageTransform);
+                } else {
+                    imageTransform.toImageMicros(pos, micros);
+                }
+                List<Map.Entry<String, String>> entries = new ArrayList<>(osm.getNumKeys());
+                osm.visitKeys((p, k, v) -> {
+                    if (!k.equals("X_image") && !k.equals("Y_image")) {
+                        entries.add(new AbstractMap.SimpleImmutableEntry<>(k, v));
+                    }
+                });
+                writeTags(entries, imageMicros, tagname, tagOpen);
+                return;
+            }
+        } else if (osm instanceof IWay && osm == transformWay) {
+            // 既存の変換行列Wayのタグを置き換える
+            writeTags(new ArrayList<>(imageTransform.toTags().entrySet()), null, tagname, tagOpen);
+            return;
+        }
+        super.addTags(osm, tagname, tagOpen);
+    }
+
+    /**
+     * Write tags sorted by key, in the same format as {@link OsmWriter}
+     * @param entries the tags
+     * @param imageMicros X_image, Y_image in micro pixels written between the tags, or null
+     * @param tagname the element name
+     * @param tagOpen whether the start tag of the element is still open
+     */
+    private void writeTags(List<Map.Entry<String, String>> entries, double[] imageMicros, String tagname, boolean tagOpen) {
+        if (tagOpen) {
+            out.println(">");
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        // X_image, Y_imageは文字列を作らずにキー順の位置へ書き込む
+        int image = imageMicros != null ? 0 : 2;
+        for (Map.Entry<String, String> e : entries) {
+            while (image < 2 && IMAGE_KEYS[image].compareTo(e.getKey()) < 0) {
+                writeImageTag(image, imageMicros[image]);
+                image++;
+            }
+            out.println("    <tag k='" + XmlWriter.encode(e.getKey()) + "' v='" + XmlWriter.encode(e.getValue()) + "' />");
+        }
+        for (; image < 2; image++) {
+            writeImageTag(image, imageMicros[image]);
+        }
+        out.println("  </" + tagname + '>');
+    }
+
+    /**
+     * Write X_image or Y_image
+     * @param index 0 for X_image, 1 for Y_image
+     * @param micros the image coordinate in micro pixels
+     */
+    private void writeImageTag(int index, double micros) {
+        out.print("    <tag k='");
+        out.print(IMAGE_KEYS[index]);
+        out.print("' v='");
+        out.write(chars, 0, ImageCoordinateCodec.format(micros, chars, 0));
+        out.println("' />");
+    }
+}
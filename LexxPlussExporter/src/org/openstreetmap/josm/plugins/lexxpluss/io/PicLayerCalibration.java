@@ -0,0 +1,402 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.awt.Image;
+import java.awt.geom.AffineTransform;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.Layer;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerAddEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerChangeListener;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerOrderChangeEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
+import org.openstreetmap.josm.plugins.piclayer.layer.PicLayerAbstract;
+import org.openstreetmap.josm.plugins.piclayer.transform.PictureTransform;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Calibration of the active PicLayer.
+ * The PicLayer is looked up again only when layers are added, removed, reordered or shown/hidden,
+ * and the private members of PicLayerAbstract are accessed through method handles resolved once.
+ * @author LexxPluss
+ *
+ */
+public final class PicLayerCalibration implements LayerChangeListener, PropertyChangeListener {
+    /**
+     * Immutable calibration of a PicLayer.
+     */
+    public static final class Snapshot {
+        /**
+         * the PicLayer
+         */
+        private final PicLayerAbstract layer;
+
+        /**
+         * the image
+         */
+        private final Image image;
+
+        /**
+         * 画像の表示位置変換アフィン行列 (copy)
+         */
+        private final AffineTransform transform;
+
+        /**
+         * en単位での画像中央位置
+         */
+        private final EastNorth imagePosition;
+
+        /**
+         * the projection the calibration was read with
+         */
+        private final Projection projection;
+
+        /**
+         * image width
+         */
+        private final double imageWidth;
+
+        /**
+         * image height
+         */
+        private final double imageHeight;
+
+        /**
+         * PicLayerAbstract.initialImageScale
+         */
+        private final double initialImageScale;
+
+        /**
+         * PicLayerAbstract.getMetersPerEasting at the image position
+         */
+        private final double metersPerEasting;
+
+        /**
+         * PicLayerAbstract.getMetersPerNorthing at the image position
+         */
+        private final double metersPerNorthing;
+
+        /**
+         * Constructor
+         * @param layer the PicLayer
+         * @param image the image
+         * @param transform the transform of the picture
+         * @param imagePosition the image position
+         */
+        private Snapshot(PicLayerAbstract layer, Image image, AffineTransform transform, EastNorth imagePosition) {
+            this.layer = layer;
+            this.image = image;
+            this.transform = new AffineTransform(transform);
+            this.imagePosition = imagePosition;
+            this.projection = ProjectionRegistry.getProjection();
+            this.imageWidth = image.getWidth(null);
+            this.imageHeight = image.getHeight(null);
+            this.initialImageScale = getInitialImageScale(layer);
+            this.metersPerEasting = getMetersPerEasting(layer, imagePosition);
+            this.metersPerNorthing = getMetersPerNorthing(layer, imagePosition);
+        }
+
+        /**
+         * Whether the snapshot still describes a PicLayer
+         * @param picLayer the PicLayer
+         * @param image the current image
+         * @param transform the current transform
+         * @param imagePosition the current image position
+         * @return true if nothing changed
+         */
+        private boolean matches(PicLayerAbstract picLayer, Image image, AffineTransform transform, EastNorth imagePosition) {
+            return layer == picLayer && this.image == image && this.transform.equals(transform)
+                    && this.imagePosition.equals(imagePosition) && projection == ProjectionRegistry.getProjection();
+        }
+
+        /**
+         * Get the PicLayer
+         * @return the PicLayer
+         */
+        public PicLayerAbstract getLayer() {
+            return layer;
+        }
+
+        /**
+         * Get the transform of the picture
+         * @return a copy of the transform
+         */
+        public AffineTransform getTransform() {
+            return new AffineTransform(transform);
+        }
+
+        /**
+         * Get the image position
+         * @return the image center in east/north
+         */
+        public EastNorth getImagePosition() {
+            return imagePosition;
+        }
+
+        /**
+         * Get the image width
+         * @return the width in pixels
+         */
+        public double getImageWidth() {
+            return imageWidth;
+        }
+
+        /**
+         * Get the image height
+         * @return the height in pixels
+         */
+        public double getImageHeight() {
+            return imageHeight;
+        }
+
+        /**
+         * Get PicLayerAbstract.initialImageScale
+         * @return initialImageScale, NaN if it cannot be read
+         */
+        public double getInitialImageScale() {
+            return initialImageScale;
+        }
+
+        /**
+         * Get MetersPerEasting at the image position
+         * @return MetersPerEasting, NaN if it cannot be read
+         */
+        public double getMetersPerEasting() {
+            return metersPerEasting;
+        }
+
+        /**
+         * Get MetersPerNorthing at the image position
+         * @return MetersPerNorthing, NaN if it cannot be read
+         */
+        public double getMetersPerNorthing() {
+            return metersPerNorthing;
+        }
+    }
+
+    /**
+     * PicLayerAbstract.initialImageScale getter
+     */
+    private static final MethodHandle INITIAL_IMAGE_SCALE;
+
+    /**
+     * PicLayerAbstract.getMetersPerEasting
+     */
+    private static final MethodHandle GET_METERS_PER_EASTING;
+
+    /**
+     * PicLayerAbstract.getMetersPerNorthing
+     */
+    private static final MethodHandle GET_METERS_PER_NORTHING;
+
+    static {
+        // PicLayerAbstractのprivateメンバーはリフレクションで一度だけ解決する
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle h = null;
+        try {
+            Field f = PicLayerAbstract.class.getDeclaredField("initialImageScale");
+            f.setAccessible(true);
+            h = lookup.unreflectGetter(f);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Logging.log(Level.WARNING, "Could not get PicLayerAbstract.initialImageScale.", e);
+        }
+        INITIAL_IMAGE_SCALE = h;
+        GET_METERS_PER_EASTING = findMethod(lookup, "getMetersPerEasting");
+        GET_METERS_PER_NORTHING = findMethod(lookup, "getMetersPerNorthing");
+    }
+
+    /**
+     * the instance
+     */
+    private static PicLayerCalibration instance = null;
+
+    /**
+     * whether the PicLayer has to be looked up again
+     */
+    private boolean layerValid = false;
+
+    /**
+     * the active PicLayer, or null
+     */
+    private PicLayerAbstract picLayer = null;
+
+    /**
+     * the calibration of the active PicLayer, or null
+     */
+    private Snapshot snapshot = null;
+
+    /**
+     * Constructor
+     */
+    private PicLayerCalibration() {
+    }
+
+    /**
+     * Get the instance, listening to the layers of the main layer manager
+     * @return the instance
+     */
+    public static synchronized PicLayerCalibration getInstance() {
+        if (instance == null) {
+            instance = new PicLayerCalibration();
+            MainApplication.getLayerManager().addAndFireLayerChangeListener(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Get the calibration of the active PicLayer.
+     * The active PicLayer is the top visible one.
+     * @return the calibration, or null if there is no PicLayer with an image
+     */
+    public synchronized Snapshot getSnapshot() {
+        if (!layerValid) {
+            picLayer = findPicLayer();
+            layerValid = true;
+        }
+        if (picLayer == null) {
+            snapshot = null;
+            return null;
+        }
+        Image image = picLayer.getImage();
+        PictureTransform transformer = picLayer.getTransformer();
+        if (image == null || transformer == null || transformer.getTransform() == null) {
+            snapshot = null;
+            return null;
+        }
+        AffineTransform transform = transformer.getTransform();
+        EastNorth imagePosition = transformer.getImagePosition();
+        if (snapshot == null || !snapshot.matches(picLayer, image, transform, imagePosition)) {
+            snapshot = new Snapshot(picLayer, image, transform, imagePosition);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Find the top visible PicLayer
+     * @return the PicLayer, or null
+     */
+    private static PicLayerAbstract findPicLayer() {
+        PicLayerAbstract result = null;
+        List<Layer> layers = MainApplication.getLayerManager().getVisibleLayersInZOrder();
+        for (Layer layer : layers) {
+            if (layer instanceof PicLayerAbstract) {
+                result = (PicLayerAbstract) layer;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invalidate the active PicLayer
+     */
+    private synchronized void invalidate() {
+        layerValid = false;
+        snapshot = null;
+    }
+
+    @Override
+    public void layerAdded(LayerAddEvent e) {
+        e.getAddedLayer().addPropertyChangeListener(this);
+        invalidate();
+    }
+
+    @Override
+    public void layerRemoving(LayerRemoveEvent e) {
+        e.getRemovedLayer().removePropertyChangeListener(this);
+        invalidate();
+    }
+
+    @Override
+    public void layerOrderChanged(LayerOrderChangeEvent e) {
+        invalidate();
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (Layer.VISIBLE_PROP.equals(evt.getPropertyName())) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Find a method of PicLayerAbstract taking an EastNorth
+     * @param lookup the lookup
+     * @param name the method name
+     * @return the method handle, or null
+     */
+    private static MethodHandle findMethod(MethodHandles.Lookup lookup, String name) {
+        try {
+            // 引数の型は必ず指定する
+            Method m = PicLayerAbstract.class.getDeclaredMethod(name, EastNorth.class);
+            m.setAccessible(true);
+            return lookup.unreflect(m);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Logging.log(Level.WARNING, "Could not get PicLayerAbstract." + name + ".", e);
+            return null;
+        }
+    }
+
+    /**
+     * get PicLayerAbstract.initialImageScale
+     * @param picLayer PicLayerAbstract instance
+     * @return PicLayerAbstract.initialImageScale
+     */
+    private static double getInitialImageScale(PicLayerAbstract picLayer) {
+        if (INITIAL_IMAGE_SCALE == null) {
+            return Double.NaN;
+        }
+        try {
+            return (double) INITIAL_IMAGE_SCALE.invokeExact(picLayer);
+        } catch (Throwable e) {
+            Logging.log(Level.WARNING, "Could not get PicLayerAbstract.initialImageScale.", e);
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * get MetersPerEasting
+     * @param picLayer PicLayerAbstract instance
+     * @param en imagePosition
+     * @return MetersPerEasting
+     */
+    private static double getMetersPerEasting(PicLayerAbstract picLayer, EastNorth en) {
+        if (GET_METERS_PER_EASTING == null) {
+            return Double.NaN;
+        }
+        try {
+            return (double) GET_METERS_PER_EASTING.invokeExact(picLayer, en);
+        } catch (Throwable e) {
+            Logging.log(Level.WARNING, "Could not invoke PicLayerAbstract.getMetersPerEasting.", e);
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * get MetersPerNorthing
+     * @param picLayer PicLayerAbstract instance
+     * @param en imagePosition
+     * @return MetersPerNorthing
+     */
+    private static double getMetersPerNorthing(PicLayerAbstract picLayer, EastNorth en) {
+        if (GET_METERS_PER_NORTHING == null) {
+            return Double.NaN;
+        }
+        try {
+            return (double) GET_METERS_PER_NORTHING.invokeExact(picLayer, en);
+        } catch (Throwable e) {
+            Logging.log(Level.WARNING, "Could not invoke PicLayerAbstract.getMetersPerNorthing.", e);
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.data.osm.TagMap;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.tools.XmlUtils;
+
+/**
+ * 64 bit fingerprints of the primitives of a LexxPluss map as exported, used to find the changes between two maps
+ * with one hash lookup per primitive.
+ * A fingerprint covers the tags, X_image/Y_image in micro pixels, the way nodes and the relation members.
+ * The transform matrix way is not included, see {@link #getTransformWay()}.
+ * @author LexxPluss
+ *
+ */
+public final class PrimitiveFingerprints {
+    /**
+     * FNV-1a offset basis
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a prime
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * fingerprints by primitive id, deleted and incomplete primitives are left out
+     */
+    private final Map<PrimitiveId, Long> fingerprints = new HashMap<>();
+
+    /**
+     * the transform matrix way, or null
+     */
+    private Way transformWay = null;
+
+    /**
+     * Constructor
+     */
+    private PrimitiveFingerprints() {
+    }
+
+    /**
+     * Compute the fingerprints of a data set to be exported.
+     * The caller holds the read lock of the data set.
+     * @param ds the data set
+     * @param imageTransform conversion to image coordinates
+     * @param cache image coordinates of the last export, prepared for the data set
+     * @return the fingerprints
+     */
+    public static PrimitiveFingerprints ofExport(DataSet ds, ImageTransform imageTransform, ImageCoordinateCache cache) {
+        PrimitiveFingerprints result = new PrimitiveFingerprints();
+        for (Node n : ds.getNodes()) {
+            if (isIncluded(n)) {
+                double[] micros = n.getEastNorth() != null ? cache.getImageMicros(n, imageTransform) : null;
+                result.put(n, hashNode(n.getKeys(), micros));
+            }
+        }
+        result.addWaysAndRelations(ds);
+        return result;
+    }
+
+    /**
+     * Compute the fingerprints of an exported LexxPluss OSM file.
+     * The file is read without building a data set, so the ids are the ones written in the file,
+     * also the negative ids of new primitives.
+     * @param in the file content
+     * @return the fingerprints
+     * @throws IOException if the file cannot be read
+     */
+    public static PrimitiveFingerprints ofFile(InputStream in) throws IOException {
+        PrimitiveFingerprints result = new PrimitiveFingerprints();
+        try {
+            XMLStreamReader parser = XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(in);
+            try {
+                while (parser.hasNext()) {
+                    if (parser.next() == XMLStreamConstants.START_ELEMENT) {
+                        String name = parser.getLocalName();
+                        if ("node".equals(name) || "way".equals(name) || "relation".equals(name)) {
+                            result.readPrimitive(parser, OsmPrimitiveType.fromApiTypeName(name));
+                        }
+                    }
+                }
+            } finally {
+                parser.close();
+            }
+        } catch (XMLStreamException | IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * Read a primitive of the file up to its end tag
+     * @param parser the parser at the start tag of the primitive
+     * @param type the primitive type
+     * @throws XMLStreamException if the file cannot be parsed
+     */
+    private void readPrimitive(XMLStreamReader parser, OsmPrimitiveType type) throws XMLStreamException {
+        long id = Long.parseLong(parser.getAttributeValue(null, "id"));
+        String version = parser.getAttributeValue(null, "version");
+        boolean deleted = "delete".equals(parser.getAttributeValue(null, "action"));
+        String name = parser.getLocalName();
+        TagMap tags = new TagMap();
+        List<Long> refs = new ArrayList<>();
+        List<String> roles = new ArrayList<>();
+        while (parser.hasNext()) {
+            int event = parser.next();
+            if (event == XMLStreamConstants.END_ELEMENT && name.equals(parser.getLocalName())) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (parser.getLocalName()) {
+            case "tag":
+                tags.put(parser.getAttributeValue(null, "k"), parser.getAttributeValue(null, "v"));
+                break;
+            case "nd":
+                refs.add(Long.parseLong(parser.getAttributeValue(null, "ref")));
+                break;
+            case "member":
+                // 種別と参照を交互に格納する
+                refs.add((long) OsmPrimitiveType.fromApiTypeName(parser.getAttributeValue(null, "type")).ordinal());
+                refs.add(Long.parseLong(parser.getAttributeValue(null, "ref")));
+                String role = parser.getAttributeValue(null, "role");
+                roles.add(role != null ? role : "");
+                break;
+            default:
+                break;
+            }
+        }
+        if (deleted) {
+            return;
+        }
+        PrimitiveId primitiveId = new SimplePrimitiveId(id, type);
+        long h;
+        if (type == OsmPrimitiveType.NODE) {
+            String x = tags.get("X_image");
+            String y = tags.get("Y_image");
+            double[] micros = null;
+            if (x != null && y != null) {
+                // 文字列からマイクロピクセルへの変換は書き込み時の値に戻る
+                micros = new double[] {
+                    Math.rint(ImageCoordinateCodec.parse(x) * ImageCoordinateCodec.SCALE),
+                    Math.rint(ImageCoordinateCodec.parse(y) * ImageCoordinateCodec.SCALE)
+                };
+            }
+            h = hashNode(tags, micros);
+        } else if (type == OsmPrimitiveType.WAY) {
+            if (transformWay == null && tags.containsKey(LexxPlussWriter.TRANSFORM_MATRIX)) {
+                // 書き込み時と同じくファイル中の最初の変換行列Wayを使う
+                transformWay = (Way) OsmPrimitiveType.WAY.newInstance(id, true);
+                if (id > 0) {
+                    transformWay.setOsmId(id, version != null ? Integer.parseInt(version) : 1);
+                }
+                transformWay.setKeys(tags);
+                return;
+            }
+            h = hashTags(tags);
+            for (long ref : refs) {
+                h = mix(h, ref);
+            }
+        } else {
+            h = hashTags(tags);
+            for (int i = 0; i < roles.size(); i++) {
+                h = mix(h, refs.get(2 * i));
+                h = mix(h, refs.get(2 * i + 1));
+                h = mix(h, hash(roles.get(i)));
+            }
+        }
+        fingerprints.put(primitiveId, h);
+    }
+
+    /**
+     * Get the fingerprint of a primitive
+     * @param id the primitive id
+     * @return the fingerprint, or null if the primitive is not in the map
+     */
+    public Long get(PrimitiveId id) {
+        return fingerprints.get(id);
+    }
+
+    /**
+     * Get the ids of all fingerprinted primitives
+     * @return the ids
+     */
+    public Iterable<PrimitiveId> getIds() {
+        return fingerprints.keySet();
+    }
+
+    /**
+     * Get the transform matrix way
+     * @return the first way with the transform matrix, or null
+     */
+    public Way getTransformWay() {
+        return transformWay;
+    }
+
+    /**
+     * Add the ways and relations of a data set
+     * @param ds the data set
+     */
+    private void addWaysAndRelations(DataSet ds) {
+        // 変換行列Wayは出力のたびに書き換わるので別に比較する
+        transformWay = LexxPlussWriter.findTransformWay(ds.getWays());
+        for (Way w : ds.getWays()) {
+            if (!isIncluded(w) || w == transformWay) {
+                continue;
+            }
+            long h = hashTags(w.getKeys());
+            for (Node n : w.getNodes()) {
+                h = mix(h, n.getUniqueId());
+            }
+            put(w, h);
+        }
+        for (Relation r : ds.getRelations()) {
+            if (!isIncluded(r)) {
+                continue;
+            }
+            long h = hashTags(r.getKeys());
+            for (RelationMember m : r.getMembers()) {
+                h = mix(h, m.getType().ordinal());
+                h = mix(h, m.getUniqueId());
+                h = mix(h, hash(m.getRole()));
+            }
+            put(r, h);
+        }
+    }
+
+    /**
+     * Store a fingerprint
+     * @param p the primitive
+     * @param h the fingerprint
+     */
+    private void put(OsmPrimitive p, long h) {
+        fingerprints.put(p.getPrimitiveId(), h);
+    }
+
+    /**
+     * Whether a primitive is compared
+     * @param p the primitive
+     * @return true if the primitive is neither deleted nor incomplete
+     */
+    private static boolean isIncluded(OsmPrimitive p) {
+        return !p.isDeleted() && !p.isIncomplete();
+    }
+
+    /**
+     * Compute the fingerprint of a node
+     * @param tags the tags of the node
+     * @param micros X_image, Y_image in micro pixels, or null
+     * @return the fingerprint
+     */
+    private static long hashNode(Map<String, String> tags, double[] micros) {
+        long h = hashTags(tags);
+        if (micros != null) {
+            h = mix(h, Double.doubleToLongBits(micros[0] + 0.0));
+            h = mix(h, Double.doubleToLongBits(micros[1] + 0.0));
+        }
+        return h;
+    }
+
+    /**
+     * Compute the fingerprint of the tags, independent of their order.
+     * X_image and Y_image are left out, they are covered by the image coordinates.
+     * @param tags the tags
+     * @return the fingerprint
+     */
+    private static long hashTags(Map<String, String> tags) {
+        long sum = 0;
+        for (Map.Entry<String, String> e : tags.entrySet()) {
+            String k = e.getKey();
+            if (!k.equals("X_image") && !k.equals("Y_image")) {
+                sum += mix(mix(FNV_OFFSET, hash(k)), hash(e.getValue()));
+            }
+        }
+        return mix(FNV_OFFSET, sum);
+    }
+
+    /**
+     * 64 bit FNV-1a hash of a string
+     * @param s the string
+     * @return the hash
+     */
+    private static long hash(String s) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Mix a value into a hash
+     * @param h the hash
+     * @param v the value
+     * @return the new hash
+     */
+    private static long mix(long h, long v) {
+        // splitmix64 finalizer
+        long z = h * 31 + v + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
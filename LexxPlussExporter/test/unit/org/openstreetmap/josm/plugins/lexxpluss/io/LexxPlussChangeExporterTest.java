@@ -0,0 +1,111 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Tests of {@link LexxPlussChangeExporter}.
+ * @author LexxPluss
+ *
+ */
+@BasicPreferences
+@Projection
+class LexxPlussChangeExporterTest {
+    /**
+     * Moving one node of a map of new primitives gives one modified node, no created or deleted primitives.
+     * @throws Exception if the files cannot be written
+     */
+    @Test
+    void testOneModifiedNode() throws Exception {
+        DataSet ds = new DataSet();
+        Node a = node(ds, 35.6812, 139.7671);
+        Node b = node(ds, 35.6813, 139.7672);
+        Node c = node(ds, 35.6814, 139.7673);
+        Way w = new Way();
+        w.setNodes(List.of(a, b, c));
+        w.put("line_info", "agv_pose");
+        ds.addPrimitive(w);
+        ImageTransform transform = new ImageTransform(a.getEastNorth(), 10.0, 10.0, 0.0, 0.0,
+                new double[] {1.0, 0.0, 0.0, 1.0, 0.0, 0.0}, 500.0, 400.0, 1.0, 1.0);
+
+        byte[] baseline = export(ds, transform);
+        // 基準ファイルの負のIDがデータセットのIDと重ならないよう、別のプリミティブを作っておく
+        node(new DataSet(), 0.0, 0.0);
+        EastNorth en = b.getEastNorth();
+        b.setEastNorth(new EastNorth(en.east() + 1.0, en.north()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LexxPlussChangeExporter.writeChange(out, ds, transform,
+                PrimitiveFingerprints.ofFile(new ByteArrayInputStream(baseline)));
+        String change = out.toString(StandardCharsets.UTF_8);
+        assertEquals(1, count(change, "<modify>"));
+        assertEquals(1, count(change, "<node "));
+        assertEquals(0, count(change, "<way "));
+        assertFalse(change.contains("<create>"), change);
+        assertFalse(change.contains("<delete>"), change);
+        assertEquals(1, count(change, "id='" + b.getUniqueId() + "'"));
+    }
+
+    /**
+     * Add a node
+     * @param ds the data set
+     * @param lat the latitude
+     * @param lon the longitude
+     * @return the node
+     */
+    private static Node node(DataSet ds, double lat, double lon) {
+        Node n = new Node(new LatLon(lat, lon));
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    /**
+     * Export a data set the way {@link LexxPlussExporter} does
+     * @param ds the data set
+     * @param transform conversion to image coordinates
+     * @return the file content
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] export(DataSet ds, ImageTransform transform) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageCoordinateCache cache = ImageCoordinateCache.get(ds);
+        try (LexxPlussWriter w = new LexxPlussWriter(
+                new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), ds.getVersion(), transform, cache)) {
+            cache.prepare(ds.getNodes(), transform);
+            w.write(ds);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Count the occurrences of a string
+     * @param s the string
+     * @param part the part to count
+     * @return the number of occurrences
+     */
+    private static int count(String s, String part) {
+        int n = 0;
+        for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + part.length())) {
+            n++;
+        }
+        return n;
+    }
+}
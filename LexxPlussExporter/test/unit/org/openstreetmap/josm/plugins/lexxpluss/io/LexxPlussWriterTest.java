@@ -0,0 +1,80 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Tests of {@link LexxPlussWriter}.
+ * @author LexxPluss
+ *
+ */
+@BasicPreferences
+@Projection
+class LexxPlussWriterTest {
+    /**
+     * Exporting a map without transform matrix way twice gives the same file,
+     * the added transform matrix way keeps its id.
+     * @throws Exception if the files cannot be written
+     */
+    @Test
+    void testSameOutput() throws Exception {
+        DataSet ds = new DataSet();
+        Node a = new Node(new LatLon(35.6812, 139.7671));
+        Node b = new Node(new LatLon(35.6813, 139.7672));
+        ds.addPrimitive(a);
+        ds.addPrimitive(b);
+        Way w = new Way();
+        w.setNodes(List.of(a, b));
+        w.put("line_info", "agv_pose");
+        ds.addPrimitive(w);
+        ImageTransform transform = new ImageTransform(a.getEastNorth(), 10.0, 10.0, 0.0, 0.0,
+                new double[] {1.0, 0.0, 0.0, 1.0, 0.0, 0.0}, 500.0, 400.0, 1.0, 1.0);
+
+        byte[] first = export(ds, transform);
+        // 別のプリミティブが作られても変換行列WayのIDは変わらない
+        new Way();
+        byte[] second = export(ds, transform);
+        assertArrayEquals(first, second, new String(second, StandardCharsets.UTF_8));
+        assertEquals(2, new String(first, StandardCharsets.UTF_8).split("<way ", -1).length - 1);
+
+        ByteArrayOutputStream binary1 = new ByteArrayOutputStream();
+        new LexxPlussBinaryWriter(transform, ImageCoordinateCache.get(ds)).write(ds, binary1);
+        ByteArrayOutputStream binary2 = new ByteArrayOutputStream();
+        new LexxPlussBinaryWriter(transform, ImageCoordinateCache.get(ds)).write(ds, binary2);
+        assertArrayEquals(binary1.toByteArray(), binary2.toByteArray());
+    }
+
+    /**
+     * Export a data set the way {@link LexxPlussExporter} does
+     * @param ds the data set
+     * @param transform conversion to image coordinates
+     * @return the file content
+     * @throws IOException if an I/O error occurs
+     */
+    private static byte[] export(DataSet ds, ImageTransform transform) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageCoordinateCache cache = ImageCoordinateCache.get(ds);
+        try (LexxPlussWriter w = new LexxPlussWriter(
+                new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), ds.getVersion(), transform, cache)) {
+            cache.prepare(ds.getNodes(), transform);
+            w.write(ds);
+        }
+        return out.toByteArray();
+    }
+}
@@ -4,6 +4,7 @@ package org.openstreetmap.josm.plugins.lexxpluss;
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
 import org.openstreetmap.josm.plugins.Plugin;
 import org.openstreetmap.josm.plugins.PluginInformation;
+import org.openstreetmap.josm.plugins.lexxpluss.io.LexxPlussBinaryImporter;
 import org.openstreetmap.josm.plugins.lexxpluss.io.LexxPlussImporter;
 
 /**
@@ -17,5 +18,6 @@ public class LexxPlussImportPlugin extends Plugin {
     public LexxPlussImportPlugin(PluginInformation info) {
         super(info);
         ExtensionFileFilter.addImporter(new LexxPlussImporter());
+        ExtensionFileFilter.addImporter(new LexxPlussBinaryImporter());
     }
 }
@@ -0,0 +1,202 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+/**
+ * Fixed precision (micro pixel) codec of X_image, Y_image.
+ * The image coordinates are truncated to 6 decimal places. They are formatted into and parsed from
+ * character buffers without creating objects, with the same result as {@link String#valueOf(double)}
+ * and {@link Double#parseDouble(String)}.
+ * The exporter plugin has an identical copy of this class.
+ * @author LexxPluss
+ *
+ */
+public final class ImageCoordinateCodec {
+	/**
+	 * micro pixels per pixel
+	 */
+	public static final double SCALE = 1000000;
+
+	/**
+	 * maximum number of characters written by {@link #format}
+	 */
+	public static final int MAX_LENGTH = 32;
+
+	/**
+	 * micro pixels from which {@link Double#toString(double)} uses the computerized scientific notation (1e7 pixels)
+	 */
+	private static final double MAX_PLAIN = 1e13;
+
+	/**
+	 * micro pixels below which {@link Double#toString(double)} uses the computerized scientific notation (1e-3 pixels)
+	 */
+	private static final double MIN_PLAIN = 1e3;
+
+	/**
+	 * largest mantissa parsed exactly (2^53)
+	 */
+	private static final long MAX_MANTISSA = 1L << 53;
+
+	/**
+	 * powers of ten represented exactly as double
+	 */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Constructor
+	 */
+	private ImageCoordinateCodec() {
+	}
+
+	/**
+	 * Truncate image coordinates to micro pixels
+	 * @param value X_image or Y_image in pixels
+	 * @return the number of micro pixels, an integer
+	 */
+	public static double toMicros(double value) {
+		// 浮動小数点による誤差への対処
+		return Math.floor(value * SCALE);
+	}
+
+	/**
+	 * Truncate image coordinates to 6 decimal places
+	 * @param value X_image or Y_image in pixels
+	 * @return the truncated value
+	 */
+	public static double round(double value) {
+		return toMicros(value) / SCALE;
+	}
+
+	/**
+	 * Format micro pixels as pixels, as {@code String.valueOf(micros / SCALE)}
+	 * @param micros the number of micro pixels, see {@link #toMicros}
+	 * @param buf the buffer, with at least {@link #MAX_LENGTH} characters from offset
+	 * @param offset the first index to write
+	 * @return the index after the last character written
+	 */
+	public static int format(double micros, char[] buf, int offset) {
+		double abs = Math.abs(micros);
+		if (micros == 0) {
+			if (Double.doubleToRawLongBits(micros) != 0) {
+				buf[offset++] = '-';
+			}
+			buf[offset++] = '0';
+			buf[offset++] = '.';
+			buf[offset++] = '0';
+			return offset;
+		}
+		if (!(abs >= MIN_PLAIN && abs < MAX_PLAIN) || micros != Math.rint(micros)) {
+			// 指数表記・非整数は標準の変換に任せる
+			String s = String.valueOf(micros / SCALE);
+			s.getChars(0, s.length(), buf, offset);
+			return offset + s.length();
+		}
+		long k = (long) abs;
+		if (micros < 0) {
+			buf[offset++] = '-';
+		}
+		long integer = k / 1000000;
+		int fraction = (int) (k % 1000000);
+		offset = formatLong(integer, buf, offset);
+		buf[offset++] = '.';
+		if (fraction == 0) {
+			buf[offset++] = '0';
+			return offset;
+		}
+		int digits = 6;
+		while (fraction % 10 == 0) {
+			fraction /= 10;
+			digits--;
+		}
+		for (int i = offset + digits - 1; i >= offset; i--) {
+			buf[i] = (char) ('0' + fraction % 10);
+			fraction /= 10;
+		}
+		return offset + digits;
+	}
+
+	/**
+	 * Format micro pixels as pixels
+	 * @param micros the number of micro pixels, see {@link #toMicros}
+	 * @return {@code String.valueOf(micros / SCALE)}
+	 */
+	public static String toString(double micros) {
+		char[] buf = new char[MAX_LENGTH];
+		return new String(buf, 0, format(micros, buf, 0));
+	}
+
+	/**
+	 * Format a non-negative integer
+	 * @param value the integer
+	 * @param buf the buffer
+	 * @param offset the first index to write
+	 * @return the index after the last character written
+	 */
+	private static int formatLong(long value, char[] buf, int offset) {
+		int digits = 1;
+		for (long v = value; v >= 10; v /= 10) {
+			digits++;
+		}
+		for (int i = offset + digits - 1; i >= offset; i--) {
+			buf[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + digits;
+	}
+
+	/**
+	 * Parse X_image or Y_image
+	 * @param s the text
+	 * @return {@code Double.parseDouble(s)}
+	 * @throws NumberFormatException if the text is not a number
+	 */
+	public static double parse(CharSequence s) {
+		return parse(s, 0, s.length());
+	}
+
+	/**
+	 * Parse X_image or Y_image from a part of a text
+	 * @param s the text
+	 * @param start the first index (inclusive)
+	 * @param end the last index (exclusive)
+	 * @return {@code Double.parseDouble(s.subSequence(start, end).toString())}
+	 * @throws NumberFormatException if the text is not a number
+	 */
+	public static double parse(CharSequence s, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && s.charAt(i) == '-') {
+			negative = true;
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for (; i < end; i++) {
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+				if (mantissa >= MAX_MANTISSA) {
+					break;
+				}
+			} else if (c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			} else {
+				break;
+			}
+		}
+		if (i < end || digits == 0 || mantissa >= MAX_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+			// 指数表記・桁数の多い値などは標準の変換に任せる
+			return Double.parseDouble(s.subSequence(start, end).toString());
+		}
+		// 仮数と10のべき乗はいずれも正確に表現できるので、1回の除算で正しく丸められる
+		double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+		return negative ? -value : value;
+	}
+}
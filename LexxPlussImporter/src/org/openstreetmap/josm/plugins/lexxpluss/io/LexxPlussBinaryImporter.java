@@ -0,0 +1,39 @@
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.openstreetmap.josm.actions.ExtensionFileFilter;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.io.importexport.OsmImporter;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.io.IllegalDataException;
+
+/**
+ * Importer of the LexxPluss binary map format (*.lxb).
+ * The file is read into memory at once and parsed in place. It is not memory-mapped,
+ * as everything is copied into the data set anyway and a mapping would keep the file locked on Windows.
+ */
+public class LexxPlussBinaryImporter extends OsmImporter {
+
+	public static final ExtensionFileFilter FILE_FILTER_LEXX_BINARY = new ExtensionFileFilter(
+			"lxb", "lxb", "LexxPluss binary map (*.lxb)");
+
+	public LexxPlussBinaryImporter()
+	{
+		super(FILE_FILTER_LEXX_BINARY);
+	}
+
+	@Override
+	protected DataSet parseDataSet(InputStream in, ProgressMonitor progressMonitor) throws IllegalDataException
+	{
+		ByteBuffer buffer;
+		try {
+			buffer = ByteBuffer.wrap(in.readAllBytes());
+		} catch (IOException e) {
+			throw new IllegalDataException(e);
+		}
+		return new LexxPlussBinaryReader(buffer).parse();
+	}
+}
@@ -0,0 +1,440 @@
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.AbstractPrimitive;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DownloadPolicy;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.TagMap;
+import org.openstreetmap.josm.data.osm.UploadPolicy;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.io.IllegalDataException;
+
+/**
+ * Reader of the LexxPluss binary map format (*.lxb) written by the LexxPluss exporter.
+ * The format is described in LexxPlussBinaryWriter of the exporter; the constants are repeated here
+ * as the plugins are installed separately.
+ * The sections are read in place from the buffer, which may be a memory-mapped file of {@link #map(File)}.
+ */
+public class LexxPlussBinaryReader {
+
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 160;
+	public static final int SECTION_ENTRY_SIZE = 24;
+	public static final double LATLON_SCALE = 1e11;
+
+	public static final int SECTION_STRINGS = 1;
+	public static final int SECTION_BOUNDS = 2;
+	public static final int SECTION_NODES = 3;
+	public static final int SECTION_AGV_LINES = 4;
+	public static final int SECTION_GOALS = 5;
+	public static final int SECTION_AREAS = 6;
+	public static final int SECTION_WAYS = 7;
+	public static final int SECTION_RELATIONS = 8;
+
+	public static final int HEADER_TRANSFORM = 1;
+	public static final int HEADER_LOCKED = 2;
+
+	public static final int FLAG_INCOMPLETE = 0x01;
+	public static final int FLAG_MODIFIED = 0x02;
+	public static final int FLAG_DELETED = 0x04;
+	public static final int FLAG_INVISIBLE = 0x08;
+	public static final int FLAG_TIMESTAMP = 0x10;
+	public static final int FLAG_USER = 0x20;
+	public static final int FLAG_CHANGESET = 0x40;
+	public static final int FLAG_LATLON = 0x80;
+	public static final int FLAG_IMAGE = 0x100;
+
+	private final ByteBuffer m_buffer;
+	private String[] m_strings = new String[0];
+	private double[] m_transform;
+	private final List<Node> m_nodes = new ArrayList<>();
+	private final List<Way> m_ways = new ArrayList<>();
+	private final List<Relation> m_relations = new ArrayList<>();
+	// last lat, lon, X_image, Y_image read
+	private final long[] m_last = new long[4];
+
+	/**
+	 * Constructs a reader.
+	 * @param buffer the file content, read from position 0
+	 */
+	public LexxPlussBinaryReader(ByteBuffer buffer)
+	{
+		m_buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Maps a file into memory, for reading large files without copying them.
+	 * The mapping is only released by the garbage collector and keeps the file locked on Windows until then,
+	 * so the importer reads the file into a heap buffer instead.
+	 * @param file the file
+	 * @return the read-only buffer of the file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public static ByteBuffer map(File file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Returns the transform matrix of the header, available after {@link #parse()}.
+	 * @return view_center_lon, view_center_lat, pixel_per_en_x, pixel_per_en_y, pic_offset_x, pic_offset_y,
+	 *         m0-m5, hw, hh, scaleX, scaleY, or null if the file has no transform
+	 */
+	public double[] getTransform()
+	{
+		return m_transform != null ? m_transform.clone() : null;
+	}
+
+	/**
+	 * Reads the data set.
+	 * @return the data set
+	 * @throws IllegalDataException if the file is not a LexxPluss binary map
+	 */
+	public DataSet parse() throws IllegalDataException
+	{
+		try {
+			return doParse();
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | ArithmeticException e) {
+			throw new IllegalDataException("Broken LexxPluss binary map", e);
+		}
+	}
+
+	private DataSet doParse() throws IllegalDataException
+	{
+		ByteBuffer b = m_buffer;
+		if (b.limit() < HEADER_SIZE || b.get(0) != 'L' || b.get(1) != 'X' || b.get(2) != 'P' || b.get(3) != 'B') {
+			throw new IllegalDataException("Not a LexxPluss binary map");
+		}
+		int version = Short.toUnsignedInt(b.getShort(4));
+		if (version != VERSION) {
+			throw new IllegalDataException("Unsupported LexxPluss binary map version " + version);
+		}
+		int headerFlags = Short.toUnsignedInt(b.getShort(6));
+		int sectionCount = b.getInt(8);
+		if ((headerFlags & HEADER_TRANSFORM) != 0) {
+			m_transform = new double[16];
+			for (int i = 0; i < 16; i++) {
+				m_transform[i] = b.getDouble(32 + 8 * i);
+			}
+		}
+
+		// the string table is needed by all other sections
+		for (int i = 0; i < sectionCount; i++) {
+			if (b.getInt(HEADER_SIZE + SECTION_ENTRY_SIZE * i) == SECTION_STRINGS) {
+				ByteBuffer strings = section(i);
+				readStrings(strings, checkCount(b.getInt(HEADER_SIZE + SECTION_ENTRY_SIZE * i + 4), strings, 4));
+			}
+		}
+
+		DataSet ds = new DataSet();
+		ds.beginUpdate();
+		try {
+			String dsVersion = string(b.getInt(12));
+			ds.setVersion(dsVersion.isEmpty() ? null : dsVersion);
+			String upload = string(b.getInt(16));
+			if (!upload.isEmpty()) {
+				ds.setUploadPolicy(UploadPolicy.of(upload));
+			}
+			String download = string(b.getInt(20));
+			if (!download.isEmpty()) {
+				ds.setDownloadPolicy(DownloadPolicy.of(download));
+			}
+			List<Integer> waySections = new ArrayList<>();
+			int relationSection = -1;
+			for (int i = 0; i < sectionCount; i++) {
+				int type = b.getInt(HEADER_SIZE + SECTION_ENTRY_SIZE * i);
+				int count = b.getInt(HEADER_SIZE + SECTION_ENTRY_SIZE * i + 4);
+				switch (type) {
+				case SECTION_BOUNDS:
+					ByteBuffer bounds = section(i);
+					readBounds(ds, bounds, checkCount(count, bounds, 40));
+					break;
+				case SECTION_NODES:
+					ByteBuffer nodes = section(i);
+					readNodes(ds, nodes, checkCount(count, nodes, 2));
+					break;
+				case SECTION_AGV_LINES:
+				case SECTION_GOALS:
+				case SECTION_AREAS:
+				case SECTION_WAYS:
+					waySections.add(i);
+					break;
+				case SECTION_RELATIONS:
+					relationSection = i;
+					break;
+				default:
+					// unknown sections of later versions are skipped
+					break;
+				}
+			}
+			// ways refer to the nodes, so they are read after all nodes
+			for (int i : waySections) {
+				ByteBuffer ways = section(i);
+				readWays(ds, ways, checkCount(b.getInt(HEADER_SIZE + SECTION_ENTRY_SIZE * i + 4), ways, 2));
+			}
+			if (relationSection >= 0) {
+				ByteBuffer relations = section(relationSection);
+				readRelations(ds, relations,
+						checkCount(b.getInt(HEADER_SIZE + SECTION_ENTRY_SIZE * relationSection + 4), relations, 2));
+			}
+		} finally {
+			ds.endUpdate();
+		}
+		if ((headerFlags & HEADER_LOCKED) != 0) {
+			ds.lock();
+		}
+		return ds;
+	}
+
+	private ByteBuffer section(int index)
+	{
+		int entry = HEADER_SIZE + SECTION_ENTRY_SIZE * index;
+		int offset = Math.toIntExact(m_buffer.getLong(entry + 8));
+		int length = Math.toIntExact(m_buffer.getLong(entry + 16));
+		ByteBuffer section = m_buffer.duplicate();
+		section.position(offset).limit(offset + length);
+		return section.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private void readStrings(ByteBuffer b, int count) throws IllegalDataException
+	{
+		m_strings = new String[count];
+		int data = 4 * (count + 1);
+		byte[] bytes = new byte[256];
+		for (int i = 0; i < count; i++) {
+			int start = b.getInt(4 * i);
+			int length = b.getInt(4 * i + 4) - start;
+			if (start < 0 || length < 0 || length > b.limit() - data - start) {
+				throw new IllegalDataException("Broken LexxPluss binary map: invalid string " + i);
+			}
+			if (bytes.length < length) {
+				bytes = new byte[length];
+			}
+			b.position(data + start);
+			b.get(bytes, 0, length);
+			m_strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+
+	private void readBounds(DataSet ds, ByteBuffer b, int count)
+	{
+		for (int i = 0; i < count; i++) {
+			double minLat = b.getDouble();
+			double minLon = b.getDouble();
+			double maxLat = b.getDouble();
+			double maxLon = b.getDouble();
+			String origin = string(b.getInt());
+			b.getInt();
+			ds.addDataSource(new DataSource(new Bounds(minLat, minLon, maxLat, maxLon), origin));
+		}
+	}
+
+	private void readNodes(DataSet ds, ByteBuffer b, int count) throws IllegalDataException
+	{
+		long id = 0;
+		for (int i = 0; i < count; i++) {
+			id += readSigned(b);
+			int flags = (int) readVarint(b);
+			Node n = (Node) create(OsmPrimitiveType.NODE, id, flags, b);
+			if ((flags & FLAG_INCOMPLETE) == 0) {
+				if ((flags & FLAG_LATLON) != 0) {
+					m_last[0] += readSigned(b);
+					m_last[1] += readSigned(b);
+					// exact for the at most 11 decimals of the OSM file
+					n.setCoor(new LatLon(m_last[0] / LATLON_SCALE, m_last[1] / LATLON_SCALE));
+				}
+				TagMap tags = new TagMap();
+				if ((flags & FLAG_IMAGE) != 0) {
+					m_last[2] += readSigned(b);
+					m_last[3] += readSigned(b);
+					tags.put("X_image", ImageCoordinateCodec.toString(m_last[2]));
+					tags.put("Y_image", ImageCoordinateCodec.toString(m_last[3]));
+				}
+				readTags(b, tags);
+				n.setKeys(tags);
+			}
+			ds.addPrimitive(n);
+			m_nodes.add(n);
+		}
+	}
+
+	private void readWays(DataSet ds, ByteBuffer b, int count) throws IllegalDataException
+	{
+		long id = 0;
+		for (int i = 0; i < count; i++) {
+			id += readSigned(b);
+			int flags = (int) readVarint(b);
+			Way w = (Way) create(OsmPrimitiveType.WAY, id, flags, b);
+			if ((flags & FLAG_INCOMPLETE) == 0) {
+				int nodeCount = checkCount(readVarint(b), b, 1);
+				List<Node> nodes = new ArrayList<>(nodeCount);
+				long index = 0;
+				for (int j = 0; j < nodeCount; j++) {
+					index += readSigned(b);
+					nodes.add(m_nodes.get((int) index));
+				}
+				w.setNodes(nodes);
+				TagMap tags = new TagMap();
+				readTags(b, tags);
+				w.setKeys(tags);
+			}
+			ds.addPrimitive(w);
+			m_ways.add(w);
+		}
+	}
+
+	private void readRelations(DataSet ds, ByteBuffer b, int count) throws IllegalDataException
+	{
+		// members may refer to relations later in the section, so they are set after all relations are added
+		int[] flags = new int[count];
+		int[] memberStart = new int[count];
+		long id = 0;
+		for (int i = 0; i < count; i++) {
+			id += readSigned(b);
+			flags[i] = (int) readVarint(b);
+			Relation r = (Relation) create(OsmPrimitiveType.RELATION, id, flags[i], b);
+			if ((flags[i] & FLAG_INCOMPLETE) == 0) {
+				memberStart[i] = b.position();
+				int memberCount = checkCount(readVarint(b), b, 2);
+				for (int j = 0; j < 2 * memberCount; j++) {
+					readVarint(b);
+				}
+				TagMap tags = new TagMap();
+				readTags(b, tags);
+				r.setKeys(tags);
+			}
+			ds.addPrimitive(r);
+			m_relations.add(r);
+		}
+		for (int i = 0; i < count; i++) {
+			if ((flags[i] & FLAG_INCOMPLETE) != 0) {
+				continue;
+			}
+			b.position(memberStart[i]);
+			int memberCount = (int) readVarint(b);
+			List<RelationMember> members = new ArrayList<>(memberCount);
+			for (int j = 0; j < memberCount; j++) {
+				long ref = readVarint(b);
+				String role = string((int) readVarint(b));
+				int index = (int) (ref >>> 2);
+				OsmPrimitive member;
+				switch ((int) (ref & 3)) {
+				case 0:
+					member = m_nodes.get(index);
+					break;
+				case 1:
+					member = m_ways.get(index);
+					break;
+				default:
+					member = m_relations.get(index);
+					break;
+				}
+				members.add(new RelationMember(role, member));
+			}
+			Relation r = m_relations.get(i);
+			r.setMembers(members);
+			r.setModified((flags[i] & FLAG_MODIFIED) != 0);
+		}
+	}
+
+	// Same as AbstractReader.buildPrimitive: negative ids of new primitives are kept only while they are
+	// not used in this session yet, otherwise the primitive gets a fresh id, so it does not clash with other layers
+	private OsmPrimitive create(OsmPrimitiveType type, long id, int flags, ByteBuffer b)
+	{
+		boolean incomplete = (flags & FLAG_INCOMPLETE) != 0;
+		int version = incomplete ? 0 : (int) readVarint(b);
+		OsmPrimitive p;
+		if (id > 0 || id < AbstractPrimitive.currentUniqueId()) {
+			p = type.newInstance(id, true);
+			if (id < 0) {
+				AbstractPrimitive.advanceUniqueId(id);
+			}
+		} else {
+			p = type.newVersionedInstance(0, version);
+		}
+		if (incomplete) {
+			return p;
+		}
+		if (id > 0) {
+			p.setOsmId(id, version);
+		}
+		if ((flags & FLAG_TIMESTAMP) != 0) {
+			p.setRawTimestamp((int) readSigned(b));
+		}
+		if ((flags & FLAG_USER) != 0) {
+			long uid = readSigned(b);
+			p.setUser(User.createOsmUser(uid, string((int) readVarint(b))));
+		}
+		if ((flags & FLAG_CHANGESET) != 0) {
+			p.setChangesetId((int) readVarint(b));
+		}
+		p.setVisible((flags & FLAG_INVISIBLE) == 0);
+		p.setModified((flags & FLAG_MODIFIED) != 0);
+		p.setDeleted((flags & FLAG_DELETED) != 0);
+		return p;
+	}
+
+	private void readTags(ByteBuffer b, TagMap tags) throws IllegalDataException
+	{
+		int count = checkCount(readVarint(b), b, 2);
+		for (int i = 0; i < count; i++) {
+			String key = string((int) readVarint(b));
+			tags.put(key, string((int) readVarint(b)));
+		}
+	}
+
+	// Checks a count read from the file against the bytes left, each item taking at least minSize bytes
+	private static int checkCount(long count, ByteBuffer b, int minSize) throws IllegalDataException
+	{
+		if (count < 0 || count > b.remaining() / minSize) {
+			throw new IllegalDataException("Broken LexxPluss binary map: invalid count " + count);
+		}
+		return (int) count;
+	}
+
+	private String string(int index)
+	{
+		return m_strings[index];
+	}
+
+	private static long readVarint(ByteBuffer b)
+	{
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte v = b.get();
+			result |= (long) (v & 0x7F) << shift;
+			if (v >= 0) {
+				return result;
+			}
+		}
+		throw new IllegalArgumentException("Varint too long");
+	}
+
+	private static long readSigned(ByteBuffer b)
+	{
+		long v = readVarint(b);
+		return (v >>> 1) ^ -(v & 1);
+	}
+}
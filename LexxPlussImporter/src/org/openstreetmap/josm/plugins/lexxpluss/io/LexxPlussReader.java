@@ -2,21 +2,21 @@ package org.openstreetmap.josm.plugins.lexxpluss.io;
 
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.OsmReader;
-import org.openstreetmap.josm.io.UTFInputStreamReader;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.PrimitiveData;
-import org.openstreetmap.josm.data.osm.TagMap;
+import org.openstreetmap.josm.data.osm.Way;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamConstants;
-import javax.xml.stream.XMLStreamReader;
 
-import java.awt.geom.AffineTransform;
 import java.io.File;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import org.openstreetmap.josm.data.osm.Tagged;
@@ -24,7 +24,6 @@ import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.tools.UncheckedParseException;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
-import org.openstreetmap.josm.tools.XmlUtils;
 import static org.openstreetmap.josm.data.projection.Ellipsoid.WGS84;
 
 
@@ -32,141 +31,181 @@ import static org.openstreetmap.josm.data.projection.Ellipsoid.WGS84;
 
 public class LexxPlussReader extends OsmReader {
 
-	// for converting to lat long
-	private AffineTransform m_transform;
-	private double m_view_center_lon = 0.0;
-	private double m_view_center_lat = 0.0;
-	private double m_pixel_per_en_x = -1.0;
-	private double m_pixel_per_en_y = -1.0;
-	private double m_pic_offset_x = 0.0;
-	private double m_pic_offset_y = 0.0;
-	private double m_scaleX = 0.0;
-	private double m_scaleY = 0.0;
-	private double m_hh = 0.0;
-	private double m_hw = 0.0;
+	// for converting to lat long, see composeTransform
+	private double[] m_transform;
 
-	public boolean readTransformInfo(InputStream source)
-	{
-		boolean exist = false;
-		try (InputStreamReader ir = UTFInputStreamReader.create(source)) {
-			XMLStreamReader local_parser = XmlUtils.newSafeXMLInputFactory().createXMLStreamReader(ir);
-			System.out.println("");
-			// parse OSM
-			if (XMLStreamConstants.START_ELEMENT == local_parser.next() && "osm".equals(local_parser.getLocalName())) {
-				while(local_parser.hasNext()) {
-					int event = local_parser.next();
-					if (event == XMLStreamConstants.START_ELEMENT) {
-						switch (local_parser.getLocalName()) {
-						case "way":
-							{
-								TagMap tags = new TagMap();
-								while (local_parser.hasNext()) {
-									int event_w = local_parser.next();
-									if (event_w == XMLStreamConstants.START_ELEMENT) {
-										if ("tag".equals(local_parser.getLocalName())) {
-											String key = local_parser.getAttributeValue(null, "k");
-											String value = local_parser.getAttributeValue(null, "v");
-											tags.put(key, value);
-											if ("transform matrix".equals(key)) {
-												exist = true;
-											}
-											// jump to end
-											while(XMLStreamConstants.END_ELEMENT == local_parser.next());
-										}
-									}
-									else if (event_w == XMLStreamConstants.END_ELEMENT) {
-										break;
-									}
-								}
-								if (exist) {
-									// set matrix here
-									this.setTransformInfo(tags);
-								}
-							}
-							break;
-						
-						default:
-							{
-								// jump to end
-								while(XMLStreamConstants.END_ELEMENT == local_parser.next());							
-							}
-							break;
-						}
-						if (exist) {
-							break;
-						}
-					}
-				}
-			}
-			local_parser.close();
-		}
-		catch(Exception e) {
-			System.out.println("");
-			return false;
-		}
-		return exist;
-	}
+	// nodes having only X_image, Y_image, converted before they are added to the data set
+	private Node[] m_stagedNodes = new Node[0];
+	private double[] m_stagedXY = new double[0];
+	private int m_stagedCount = 0;
+
+	// the first transform matrix way in the file, the exporter replaces the tags of the same way
+	private Way m_transformWay;
 
-	private void setTransformInfo(TagMap tags) {
-		double[] matrix = new double[6];
+	private void setTransformInfo(Map<String, String> tags) {
 		try {
-			matrix[0] = Double.parseDouble(tags.get("m0"));
-			matrix[1] = Double.parseDouble(tags.get("m1"));
-			matrix[2] = Double.parseDouble(tags.get("m2"));
-			matrix[3] = Double.parseDouble(tags.get("m3"));
-			matrix[4] = Double.parseDouble(tags.get("m4"));
-			matrix[5] = Double.parseDouble(tags.get("m5"));
-			this.m_view_center_lon = Double.parseDouble(tags.get("view_center_lon"));
-			this.m_view_center_lat = Double.parseDouble(tags.get("view_center_lat"));
-			this.m_pixel_per_en_x = Double.parseDouble(tags.get("pixel_per_en_x"));
-			this.m_pixel_per_en_y = Double.parseDouble(tags.get("pixel_per_en_y"));
-			this.m_pic_offset_x = Double.parseDouble(tags.get("pic_offset_x"));
-			this.m_pic_offset_y = Double.parseDouble(tags.get("pic_offset_y"));
-			this.m_scaleX = Double.parseDouble(tags.get("scaleX"));
-			this.m_scaleY = Double.parseDouble(tags.get("scaleY"));
-			this.m_hw = Double.parseDouble(tags.get("hw"));
-			this.m_hh = Double.parseDouble(tags.get("hh"));
+			this.m_transform = composeTransform(tags);
 		}
 		catch(Exception e) {
 			System.out.println("Failed to get transform matrix");
+			this.m_transform = null;
+		}
+	}
+
+	/**
+	 * Composes the conversion of X_image, Y_image (pixel) to east/north of a transform matrix way into one affine transform.
+	 * The steps of the conversion, subtracting hw/hh, dividing by scaleX/scaleY, adding the picture offset,
+	 * the matrix m0-m5 and the scaling by pixel_per_en around the view center, are all affine.
+	 * PointTransformer of lexxpluss_tools repeats this arithmetic to convert bit for bit the same; keep them in sync.
+	 * @param tags the tags of the transform matrix way
+	 * @return the composed transform for {@link #toEastNorth(double[], double, double)}:
+	 *         east = t[0] * x + t[1] * y + t[2], north = t[3] * x + t[4] * y + t[5]
+	 * @throws NumberFormatException if a value is missing or not a number
+	 */
+	public static double[] composeTransform(Map<String, String> tags)
+	{
+		// m0-m5 are the flat matrix of AffineTransform: m00, m10, m01, m11, m02, m12
+		double m00 = parseTag(tags, "m0");
+		double m10 = parseTag(tags, "m1");
+		double m01 = parseTag(tags, "m2");
+		double m11 = parseTag(tags, "m3");
+		double m02 = parseTag(tags, "m4");
+		double m12 = parseTag(tags, "m5");
+		double view_center_lon = parseTag(tags, "view_center_lon");
+		double view_center_lat = parseTag(tags, "view_center_lat");
+		double pixel_per_en_x = parseTag(tags, "pixel_per_en_x");
+		double pixel_per_en_y = parseTag(tags, "pixel_per_en_y");
+		double pic_offset_x = parseTag(tags, "pic_offset_x");
+		double pic_offset_y = parseTag(tags, "pic_offset_y");
+		double scaleX = parseTag(tags, "scaleX");
+		double scaleY = parseTag(tags, "scaleY");
+		double hw = parseTag(tags, "hw");
+		double hh = parseTag(tags, "hh");
+		// picture coordinates: px = ax * x + bx, py = ay * y + by
+		double ax = 1.0 / scaleX;
+		double bx = pic_offset_x / m00 - hw / scaleX;
+		double ay = 1.0 / scaleY;
+		double by = pic_offset_y / m11 - hh / scaleY;
+		return new double[] {
+			m00 * ax / pixel_per_en_x,
+			m01 * ay / pixel_per_en_x,
+			(m00 * bx + m01 * by + m02) / pixel_per_en_x + view_center_lon,
+			-m10 * ax / pixel_per_en_y,
+			-m11 * ay / pixel_per_en_y,
+			view_center_lat - (m10 * bx + m11 * by + m12) / pixel_per_en_y
+		};
+	}
+
+	/**
+	 * Converts X_image, Y_image (pixel) to east/north.
+	 * @param transform the composed transform of {@link #composeTransform(Map)}
+	 * @param x X_image
+	 * @param y Y_image
+	 * @return the east/north, NaN if the transform is invalid
+	 */
+	public static EastNorth toEastNorth(double[] transform, double x, double y)
+	{
+		return new EastNorth(transform[0] * x + transform[1] * y + transform[2],
+				transform[3] * x + transform[4] * y + transform[5]);
+	}
+
+	private static double parseTag(Map<String, String> tags, String key)
+	{
+		String value = tags.get(key);
+		if (value == null) {
+			throw new NumberFormatException("No " + key);
 		}
-		this.m_transform = new AffineTransform(matrix);
+		return Double.parseDouble(value);
 	}
 
+	/**
+	 * Parses a LexxPluss OSM file in a single pass.
+	 * Nodes having only X_image/Y_image are staged while parsing and converted to lat/lon with the
+	 * transform matrix way, wherever it appears in the file, before the nodes are added to the data set.
+	 * @param source the file content
+	 * @param progressMonitor the progress monitor
+	 * @return the data set
+	 * @throws IllegalDataException if the file is invalid
+	 */
 	public DataSet execParse(InputStream source, ProgressMonitor progressMonitor)
 			throws IllegalDataException
 	{
-		return doParseDataSet(source, progressMonitor);
+		m_stagedCount = 0;
+		m_transform = null;
+		m_transformWay = null;
+		try {
+			return doParseDataSet(source, progressMonitor);
+		} finally {
+			m_stagedNodes = new Node[0];
+			m_stagedXY = new double[0];
+			m_stagedCount = 0;
+			m_transformWay = null;
+		}
 	}
-	
-	// Convert X_image, Y_image (pixel) to Longitude, Latitude
-	protected void convert2LatLon(NodeData nd)
+
+	/**
+	 * Returns the ids written in the file of the primitives read by {@link #execParse}.
+	 * Negative ids are renumbered while reading, depending on the other primitives of the session,
+	 * the ids of the file do not change.
+	 * @return the id in the file by primitive
+	 */
+	public Map<OsmPrimitive, Long> getFileIds()
 	{
-		int num = nd.getNumKeys();
-		TagMap mk = nd.getKeys();
-		if ((mk.containsKey("X_image")) && (mk.containsKey("Y_image"))) {
-			try {
-				double x = Double.parseDouble(mk.get("X_image"));
-				double y = Double.parseDouble(mk.get("Y_image"));
-				x -= this.m_hw;
-				y -= this.m_hh;
-				x /= this.m_scaleX;
-				y /= this.m_scaleY;
-				x += this.m_pic_offset_x / m_transform.getScaleX();
-				y += this.m_pic_offset_y / m_transform.getScaleY();
-				double[] in_point = {x, y};
-				double[] cvt_point = new double[2];
-				m_transform.transform(in_point, 0, cvt_point, 0, 1);
-				double east = (cvt_point[0] / this.m_pixel_per_en_x) + this.m_view_center_lon;
-				double north = this.m_view_center_lat - (cvt_point[1] / this.m_pixel_per_en_y);
-				EastNorth pos = new EastNorth(east, north);
-				nd.setEastNorth(pos);
-			}
-			catch (Exception e) {
-				return;
-			}
+		Map<OsmPrimitive, Long> ids = new IdentityHashMap<>(externalIdMap.size());
+		externalIdMap.forEach((id, p) -> ids.put(p, id.getUniqueId()));
+		return ids;
+	}
+
+	@Override
+	protected void processNodesAfterParsing() {
+		convertStagedNodes();
+		super.processNodesAfterParsing();
+	}
+
+	// Convert the staged X_image, Y_image (pixel) to east/north before the nodes are added to the data set,
+	// so that adding them indexes them once at their final position
+	private void convertStagedNodes()
+	{
+		if (m_stagedCount == 0) {
+			return;
+		}
+		if (m_transformWay == null) {
 			return;
 		}
+		setTransformInfo(m_transformWay.getKeys());
+		if (m_transform == null) {
+			return;
+		}
+		double[] transform = m_transform;
+		for (int i = 0; i < m_stagedCount; i++) {
+			EastNorth pos = toEastNorth(transform, m_stagedXY[2 * i], m_stagedXY[2 * i + 1]);
+			if (!Double.isNaN(pos.east()) && !Double.isNaN(pos.north())) {
+				m_stagedNodes[i].setEastNorth(pos);
+			}
+		}
+	}
+
+	// Stage a node having only X_image, Y_image for the conversion at the end
+	private void stage(Node n, double x, double y)
+	{
+		if (m_stagedCount == m_stagedNodes.length) {
+			int capacity = Math.max(1024, 2 * m_stagedCount);
+			m_stagedNodes = Arrays.copyOf(m_stagedNodes, capacity);
+			m_stagedXY = Arrays.copyOf(m_stagedXY, 2 * capacity);
+		}
+		m_stagedNodes[m_stagedCount] = n;
+		m_stagedXY[2 * m_stagedCount] = x;
+		m_stagedXY[2 * m_stagedCount + 1] = y;
+		m_stagedCount++;
+	}
+
+	@Override
+	protected Way parseWay() throws XMLStreamException {
+		Way w = super.parseWay();
+		if (m_transformWay == null && w != null && !w.isDeleted() && w.hasKey("transform matrix")) {
+			m_transformWay = w;
+		}
+		return w;
 	}
 
 	@Override
@@ -178,8 +217,17 @@ public class LexxPlussReader extends OsmReader {
 			try {
 				readCommon(nd);
 				parseNodeTags(nd);
-				convert2LatLon(nd);
-				return (Node) buildPrimitive(nd);
+				String x = nd.get("X_image");
+				String y = nd.get("Y_image");
+				Node n = (Node) buildPrimitive(nd);
+				if (x != null && y != null) {
+					try {
+						stage(n, ImageCoordinateCodec.parse(x), ImageCoordinateCodec.parse(y));
+					} catch (NumberFormatException e) {
+						// left without coordinates
+					}
+				}
+				return n;
 			}catch (Exception e) {
 				
 			}
@@ -0,0 +1,221 @@
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.NoninvertibleTransformException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Round trip of {@link LexxPlussBinaryWriter} of the exporter and {@link LexxPlussBinaryReader},
+ * compared with the LexxPluss OSM file {@link LexxPlussWriter} writes for the same data.
+ * The exporter is on the test class path only, see build.xml.
+ */
+@BasicPreferences
+@Projection
+class LexxPlussBinaryReaderTest {
+
+	// key identifying the primitives of the test map in every data set read back
+	private static final String REF = "test_ref";
+
+	/**
+	 * The binary map reads back the same tags, X_image/Y_image, coordinates, transform matrix way
+	 * and order of way nodes and relation members as the OSM file.
+	 * @throws Exception if the map cannot be written or read
+	 */
+	@Test
+	void testRoundTrip() throws Exception
+	{
+		DataSet ds = map();
+		ImageTransform transform = transform(ds);
+		DataSet xml = OsmReader.parseDataSet(new ByteArrayInputStream(writeXml(ds, transform)), NullProgressMonitor.INSTANCE);
+		DataSet read = new LexxPlussBinaryReader(ByteBuffer.wrap(write(ds, transform))).parse();
+
+		assertEquals(xml.getNodes().size(), read.getNodes().size());
+		assertEquals(xml.getWays().size(), read.getWays().size());
+		assertEquals(xml.getRelations().size(), read.getRelations().size());
+		for (Node n : xml.getNodes()) {
+			Node r = (Node) find(read, n);
+			assertEquals(n.getKeys(), r.getKeys());
+			// exact, the binary map keeps the digits of the OSM file
+			assertEquals(n.lat(), r.lat());
+			assertEquals(n.lon(), r.lon());
+		}
+		for (Way w : xml.getWays()) {
+			Way r = (Way) find(read, w);
+			assertEquals(w.getKeys(), r.getKeys());
+			assertEquals(refs(w.getNodes()), refs(r.getNodes()));
+		}
+		for (Relation rel : xml.getRelations()) {
+			Relation r = (Relation) find(read, rel);
+			assertEquals(rel.getKeys(), r.getKeys());
+			assertEquals(rel.getMembersCount(), r.getMembersCount());
+			for (int i = 0; i < rel.getMembersCount(); i++) {
+				assertEquals(rel.getMember(i).getRole(), r.getMember(i).getRole());
+				assertEquals(ref(rel.getMember(i).getMember()), ref(r.getMember(i).getMember()));
+			}
+		}
+	}
+
+	/**
+	 * Positive ids are kept, negative ids already used in this session are replaced by fresh ones
+	 * like OsmReader does, so the primitives do not clash with other layers.
+	 * @throws Exception if the map cannot be written or read
+	 */
+	@Test
+	void testIds() throws Exception
+	{
+		DataSet ds = map();
+		DataSet read = new LexxPlussBinaryReader(ByteBuffer.wrap(write(ds, transform(ds)))).parse();
+		Set<Long> used = new HashSet<>();
+		for (OsmPrimitive p : ds.allPrimitives()) {
+			used.add(p.getUniqueId());
+		}
+		for (OsmPrimitive p : ds.allPrimitives()) {
+			OsmPrimitive r = find(read, p);
+			if (p.getUniqueId() > 0) {
+				assertEquals(p.getUniqueId(), r.getUniqueId());
+				assertEquals(p.getVersion(), r.getVersion());
+			} else {
+				assertTrue(r.getUniqueId() < 0);
+				assertFalse(used.contains(r.getUniqueId()), r.toString());
+			}
+		}
+	}
+
+	/**
+	 * A negative count is reported as broken data.
+	 * @throws Exception if the map cannot be written
+	 */
+	@Test
+	void testNegativeCount() throws Exception
+	{
+		DataSet ds = map();
+		ByteBuffer b = ByteBuffer.wrap(write(ds, transform(ds))).order(ByteOrder.LITTLE_ENDIAN);
+		int sectionCount = b.getInt(8);
+		for (int i = 0; i < sectionCount; i++) {
+			int entry = LexxPlussBinaryReader.HEADER_SIZE + LexxPlussBinaryReader.SECTION_ENTRY_SIZE * i;
+			if (b.getInt(entry) == LexxPlussBinaryReader.SECTION_NODES) {
+				b.putInt(entry + 4, -1);
+			}
+		}
+		assertThrows(IllegalDataException.class, () -> new LexxPlussBinaryReader(b).parse());
+	}
+
+	// Finds the primitive of another data set by its test_ref, or the transform matrix way
+	private static OsmPrimitive find(DataSet ds, OsmPrimitive p)
+	{
+		String ref = ref(p);
+		for (OsmPrimitive q : ds.allPrimitives()) {
+			if (q.getType() == p.getType() && ref.equals(ref(q))) {
+				return q;
+			}
+		}
+		throw new AssertionError("missing " + p);
+	}
+
+	private static String ref(OsmPrimitive p)
+	{
+		String ref = p.get(REF);
+		if (ref == null && p.hasKey("transform matrix")) {
+			return "transform matrix";
+		}
+		assertNotNull(ref, p.toString());
+		return ref;
+	}
+
+	private static List<String> refs(List<Node> nodes)
+	{
+		List<String> refs = new ArrayList<>();
+		for (Node n : nodes) {
+			refs.add(ref(n));
+		}
+		return refs;
+	}
+
+	private static DataSet map()
+	{
+		DataSet ds = new DataSet();
+		Node a = node(ds, 10, 35.6812345, 139.7671234, "agv_node_id", "1");
+		Node b = node(ds, 11, 35.68125, 139.76715, "name", "ゴール");
+		Node c = node(ds, 0, 35.6813, 139.7672, "intermediate_goal_id", "2");
+		Way w = new Way(20, 3);
+		// not in id order
+		w.setNodes(List.of(c, a, b));
+		w.put("line_info", "agv_pose");
+		w.put(REF, "w");
+		ds.addPrimitive(w);
+		Way area = new Way();
+		area.setNodes(List.of(a, b, c, a));
+		area.put("area_base", "movable");
+		area.put(REF, "area");
+		ds.addPrimitive(area);
+		Relation r = new Relation(30, 1);
+		r.setMembers(List.of(new RelationMember("outer", area), new RelationMember("", b)));
+		r.put("type", "multipolygon");
+		r.put(REF, "r");
+		ds.addPrimitive(r);
+		return ds;
+	}
+
+	private static Node node(DataSet ds, long id, double lat, double lon, String key, String value)
+	{
+		Node n = id > 0 ? new Node(id, 1) : new Node();
+		n.setCoor(new LatLon(lat, lon));
+		n.put(key, value);
+		n.put(REF, key + value);
+		ds.addPrimitive(n);
+		return n;
+	}
+
+	private static ImageTransform transform(DataSet ds) throws NoninvertibleTransformException
+	{
+		return new ImageTransform(ds.getNodes().iterator().next().getEastNorth(), 10.0, 10.0, 0.0, 0.0,
+				new double[] {1.0, 0.0, 0.0, 1.0, 0.0, 0.0}, 500.0, 400.0, 1.0, 1.0);
+	}
+
+	private static byte[] write(DataSet ds, ImageTransform transform) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new LexxPlussBinaryWriter(transform, null).write(ds, out);
+		return out.toByteArray();
+	}
+
+	private static byte[] writeXml(DataSet ds, ImageTransform transform) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (LexxPlussWriter w = new LexxPlussWriter(
+				new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), ds.getVersion(), transform)) {
+			w.write(ds);
+		}
+		return out.toByteArray();
+	}
+}
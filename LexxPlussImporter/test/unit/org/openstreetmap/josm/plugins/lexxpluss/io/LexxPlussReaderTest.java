@@ -0,0 +1,76 @@
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Tests of {@link LexxPlussReader}.
+ */
+@BasicPreferences
+@Projection
+class LexxPlussReaderTest {
+
+	/**
+	 * With several transform matrix ways, the first one in the file converts X_image/Y_image,
+	 * it is the one the exporter writes the current transform matrix to.
+	 * The negative ids are renumbered while reading, so the ids do not tell the order.
+	 * @throws Exception if the file cannot be read
+	 */
+	@Test
+	void testFirstTransformWay() throws Exception
+	{
+		String osm = "<?xml version='1.0' encoding='UTF-8'?>\n"
+				+ "<osm version='0.6' generator='test'>\n"
+				+ "  <node id='-1'>\n"
+				+ "    <tag k='X_image' v='100.0' />\n"
+				+ "    <tag k='Y_image' v='50.0' />\n"
+				+ "  </node>\n"
+				+ "  <way id='-2'>\n"
+				+ transformTags("139.767")
+				+ "  </way>\n"
+				+ "  <way id='-3'>\n"
+				+ transformTags("135.5")
+				+ "  </way>\n"
+				+ "</osm>\n";
+		DataSet ds = new LexxPlussReader().execParse(
+				new ByteArrayInputStream(osm.getBytes(StandardCharsets.UTF_8)), NullProgressMonitor.INSTANCE);
+
+		Way first = null;
+		for (Way w : ds.getWays()) {
+			if ("139.767".equals(w.get("view_center_lon"))) {
+				first = w;
+			}
+		}
+		assertNotNull(first);
+		Node n = ds.getNodes().iterator().next();
+		EastNorth expected = LexxPlussReader.toEastNorth(LexxPlussReader.composeTransform(first.getKeys()), 100.0, 50.0);
+		assertEquals(expected, n.getEastNorth());
+	}
+
+	private static String transformTags(String centerLon)
+	{
+		String[][] tags = {
+			{"transform matrix", ""}, {"view_center_lon", centerLon}, {"view_center_lat", "35.68"},
+			{"pixel_per_en_x", "10.0"}, {"pixel_per_en_y", "10.0"}, {"pic_offset_x", "0.0"}, {"pic_offset_y", "0.0"},
+			{"m0", "1.0"}, {"m1", "0.0"}, {"m2", "0.0"}, {"m3", "1.0"}, {"m4", "0.0"}, {"m5", "0.0"},
+			{"hw", "500.0"}, {"hh", "400.0"}, {"scaleX", "1.0"}, {"scaleY", "1.0"}
+		};
+		StringBuilder sb = new StringBuilder();
+		for (String[] tag : tags) {
+			sb.append("    <tag k='").append(tag[0]).append("' v='").append(tag[1]).append("' />\n");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.awt.geom.NoninvertibleTransformException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.preferences.JosmBaseDirectories;
+import org.openstreetmap.josm.data.preferences.JosmUrls;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.data.projection.Projections;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+/**
+ * Synthetic LexxPluss maps for the benchmarks.
+ * A map of size {@code n} has {@code n} cells laid out on a square grid. Every cell has an
+ * agv pose line, a goal pose and an intermediate goal linked to the next cell by a oneway way.
+ * Every 10th cell has a parking area and every 25th cell a sync area, and one movable area
+ * covers the whole grid. The maps are generated deterministically.
+ */
+public final class BenchmarkMaps {
+
+    /**
+     * The east-north position of the first cell.
+     */
+    private static final EastNorth ORIGIN = new EastNorth(15557000.0, 4257000.0);
+
+    /**
+     * The cell size in east-north units.
+     */
+    private static final double CELL = 10.0;
+
+    /**
+     * The pixels per east-north unit of the transform matrix way.
+     */
+    private static final double PIXEL_PER_EN = 10.0;
+
+    /**
+     * Whether JOSM is initialized.
+     */
+    private static boolean initialized = false;
+
+    /**
+     * Constructs a new {@code BenchmarkMaps}.
+     */
+    private BenchmarkMaps() {
+    }
+
+    /**
+     * Sets up the parts of JOSM needed without a GUI.
+     */
+    public static synchronized void initialize() {
+        if (initialized)
+            return;
+        var pref = Preferences.main();
+        pref.enableSaveOnPut(false);
+        Config.setPreferencesInstance(pref);
+        Config.setBaseDirectoriesProvider(JosmBaseDirectories.getInstance());
+        Config.setUrlsProvider(JosmUrls.getInstance());
+        ProjectionRegistry.setProjection(Projections.getProjectionByCode("EPSG:3857"));
+        initialized = true;
+    }
+
+    /**
+     * Creates a map.
+     * @param size the number of cells
+     * @return the map
+     */
+    public static DataSet create(int size) {
+        initialize();
+        var ds = new DataSet();
+        var columns = (int)Math.ceil(Math.sqrt(size));
+        var rows = (size + columns - 1) / columns;
+        var goals = new ArrayList<Node>(size);
+        for (var i = 0; i < size; ++i) {
+            var x = ORIGIN.east() + (i % columns) * CELL;
+            var y = ORIGIN.north() + (i / columns) * CELL;
+            var n0 = node(ds, x, y, "agv_node_id", Integer.toString(2 * i));
+            var n1 = node(ds, x + 3, y, "agv_node_id", Integer.toString(2 * i + 1));
+            way(ds, List.of(n0, n1), "line_info", "agv_pose");
+            var g0 = node(ds, x, y + 3);
+            var g1 = node(ds, x + 1, y + 3);
+            way(ds, List.of(g0, g1), "line_info", "goal_pose", "goal_id", Integer.toString(i));
+            goals.add(node(ds, x + 5, y + 5, "intermediate_goal_id", Integer.toString(i)));
+            if (i % 10 == 0) {
+                var s = Integer.toString(i / 10);
+                way(ds, rectangle(ds, x + 6, y + 1, 3, 3),
+                        "area_base", "movable", "area_detect", s, "area_name", "park" + s, "space_id", s);
+            }
+            if (i % 25 == 0) {
+                var s = Integer.toString(i / 25);
+                way(ds, rectangle(ds, x + 1, y + 6, 3, 3),
+                        "area_base", "movable", "area_name", "sync" + s, "sync_id", s, "area_info", "sync_area");
+            }
+        }
+        for (var i = 0; i < goals.size(); ++i)
+            way(ds, List.of(goals.get(i), goals.get((i + 1) % goals.size())), "line_info", "\"\"", "oneway", "yes");
+        way(ds, rectangle(ds, ORIGIN.east() - CELL, ORIGIN.north() - CELL, (columns + 2) * CELL, (rows + 2) * CELL),
+                "area_base", "movable");
+        var center = new EastNorth(ORIGIN.east() + columns * CELL / 2, ORIGIN.north() + rows * CELL / 2);
+        var matrix = new Way();
+        matrix.put("transform matrix", "");
+        matrix.put("view_center_lon", Double.toString(center.east()));
+        matrix.put("view_center_lat", Double.toString(center.north()));
+        matrix.put("pixel_per_en_x", Double.toString(PIXEL_PER_EN));
+        matrix.put("pixel_per_en_y", Double.toString(PIXEL_PER_EN));
+        matrix.put("pic_offset_x", "0.0");
+        matrix.put("pic_offset_y", "0.0");
+        matrix.put("m0", "1.0");
+        matrix.put("m1", "0.0");
+        matrix.put("m2", "0.0");
+        matrix.put("m3", "1.0");
+        matrix.put("m4", "0.0");
+        matrix.put("m5", "0.0");
+        matrix.put("hw", Double.toString(columns * CELL * PIXEL_PER_EN / 2 + 100));
+        matrix.put("hh", Double.toString(rows * CELL * PIXEL_PER_EN / 2 + 100));
+        matrix.put("scaleX", "1.0");
+        matrix.put("scaleY", "1.0");
+        ds.addPrimitive(matrix);
+        return ds;
+    }
+
+    /**
+     * Writes a map the way the LexxPluss exporter does: nodes carry X_image/Y_image
+     * instead of lat/lon, so reading the file exercises the coordinate conversion.
+     * @param ds the map
+     * @param file the output file
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeLexxPlussXml(DataSet ds, File file) throws IOException {
+        var transformer = new PointTransformer();
+        if (!transformer.setupFromWay(PointTransformer.getTransformMatrixWay(ds)))
+            throw new IOException("Invalid transform matrix");
+        try (var out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("<?xml version='1.0' encoding='UTF-8'?>");
+            out.println("<osm version='0.6' generator='JOSM'>");
+            for (var node : ds.getNodes()) {
+                double[] xy;
+                try {
+                    xy = transformer.eastNorthToImageXY(node.getEastNorth());
+                } catch (NoninvertibleTransformException e) {
+                    throw new IOException(e);
+                }
+                out.println("  <node id='" + node.getUniqueId() + "' action='modify' visible='true'>");
+                writeTags(out, node);
+                out.println("    <tag k='X_image' v='" + xy[0] + "' />");
+                out.println("    <tag k='Y_image' v='" + xy[1] + "' />");
+                out.println("  </node>");
+            }
+            for (var way : ds.getWays()) {
+                out.println("  <way id='" + way.getUniqueId() + "' action='modify' visible='true'>");
+                for (var node : way.getNodes())
+                    out.println("    <nd ref='" + node.getUniqueId() + "' />");
+                writeTags(out, way);
+                out.println("  </way>");
+            }
+            out.println("</osm>");
+        }
+    }
+
+    /**
+     * Writes the tags of a primitive.
+     * @param out the writer
+     * @param primitive the primitive
+     */
+    private static void writeTags(PrintWriter out, OsmPrimitive primitive) {
+        primitive.visitKeys((p, k, v) -> out.println("    <tag k='" + escape(k) + "' v='" + escape(v) + "' />"));
+    }
+
+    /**
+     * Escapes an XML attribute value.
+     * @param s the value
+     * @return the escaped value
+     */
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                .replace("'", "&apos;").replace("\"", "&quot;");
+    }
+
+    /**
+     * Adds a node.
+     * @param ds the map
+     * @param east the east coordinate
+     * @param north the north coordinate
+     * @param tags the key value pairs
+     * @return the node
+     */
+    private static Node node(DataSet ds, double east, double north, String... tags) {
+        var node = new Node(new EastNorth(east, north));
+        for (var i = 0; i < tags.length; i += 2)
+            node.put(tags[i], tags[i + 1]);
+        ds.addPrimitive(node);
+        return node;
+    }
+
+    /**
+     * Adds a way.
+     * @param ds the map
+     * @param nodes the nodes
+     * @param tags the key value pairs
+     * @return the way
+     */
+    private static Way way(DataSet ds, List<Node> nodes, String... tags) {
+        var way = new Way();
+        way.setNodes(nodes);
+        for (var i = 0; i < tags.length; i += 2)
+            way.put(tags[i], tags[i + 1]);
+        ds.addPrimitive(way);
+        return way;
+    }
+
+    /**
+     * Adds the nodes of a closed rectangle.
+     * @param ds the map
+     * @param east the east coordinate of the lower left corner
+     * @param north the north coordinate of the lower left corner
+     * @param width the width
+     * @param height the height
+     * @return the nodes, the first node repeated at the end
+     */
+    private static List<Node> rectangle(DataSet ds, double east, double north, double width, double height) {
+        var n0 = node(ds, east, north);
+        var n1 = node(ds, east + width, north);
+        var n2 = node(ds, east + width, north + height);
+        var n3 = node(ds, east, north + height);
+        return List.of(n0, n1, n2, n3, n0);
+    }
+}
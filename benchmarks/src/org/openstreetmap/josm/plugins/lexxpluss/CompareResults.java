@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with {@code -rf csv}.
+ * <p>
+ * Usage: {@code CompareResults <baseline.csv> <candidate.csv> [threshold]}
+ * <p>
+ * Prints the score ratio of every benchmark found in both files and exits with status 1
+ * if a ratio exceeds the threshold (default 1.10). All benchmarks use the average time mode,
+ * so a larger ratio is slower.
+ */
+public final class CompareResults {
+
+    /**
+     * Constructs a new {@code CompareResults}.
+     */
+    private CompareResults() {
+    }
+
+    /**
+     * Compares two result files.
+     * @param args the baseline file, the candidate file and the optional threshold
+     * @throws IOException if a file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults <baseline.csv> <candidate.csv> [threshold]");
+            System.exit(2);
+        }
+        var baseline = read(args[0]);
+        var candidate = read(args[1]);
+        var threshold = args.length > 2 ? Double.parseDouble(args[2]) : 1.10;
+        var regressions = 0;
+        System.out.println(String.format(Locale.ROOT, "%-80s %14s %14s %8s", "Benchmark", "Baseline", "Candidate", "Ratio"));
+        for (var entry : candidate.entrySet()) {
+            var base = baseline.get(entry.getKey());
+            if (base == null)
+                continue;
+            var ratio = entry.getValue() / base;
+            var regression = ratio > threshold;
+            if (regression)
+                ++regressions;
+            System.out.println(String.format(Locale.ROOT, "%-80s %14.3f %14.3f %8.3f%s",
+                    entry.getKey(), base, entry.getValue(), ratio, regression ? " REGRESSION" : ""));
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) slower than " + threshold + " x baseline");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the scores of a result file.
+     * @param file the file
+     * @return the scores by benchmark name and parameters
+     * @throws IOException if the file cannot be read
+     */
+    private static Map<String, Double> read(String file) throws IOException {
+        var lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        var result = new LinkedHashMap<String, Double>();
+        if (lines.isEmpty())
+            return result;
+        var header = split(lines.get(0));
+        var name = header.indexOf("Benchmark");
+        var score = header.indexOf("Score");
+        for (var line : lines.subList(1, lines.size())) {
+            var fields = split(line);
+            if (fields.size() != header.size())
+                continue;
+            var key = new StringBuilder(fields.get(name));
+            for (var i = 0; i < header.size(); ++i) {
+                if (header.get(i).startsWith("Param: "))
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+            }
+            result.put(key.toString(), Double.parseDouble(fields.get(score)));
+        }
+        return result;
+    }
+
+    /**
+     * Splits a CSV line.
+     * @param line the line
+     * @return the fields without quotes
+     */
+    private static List<String> split(String line) {
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        var quoted = false;
+        for (var c : line.toCharArray()) {
+            if (c == '"')
+                quoted = !quoted;
+            else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else
+                field.append(c);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
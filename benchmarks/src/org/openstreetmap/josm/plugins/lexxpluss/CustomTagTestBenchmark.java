@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+/**
+ * Benchmarks of the LexxPluss validator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CustomTagTestBenchmark {
+
+    /**
+     * The number of map cells.
+     */
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    /**
+     * Whether the per-primitive checks run in parallel.
+     */
+    @Param({"true", "false"})
+    public boolean parallel;
+
+    /**
+     * The map validated repeatedly, so its results are cached after the first run.
+     */
+    private DataSet map;
+
+    /**
+     * A fresh copy of the map, so nothing is cached.
+     */
+    private DataSet copy;
+
+    /**
+     * Creates the map.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        map = BenchmarkMaps.create(size);
+        ToolsSettings.setParallelValidation(parallel);
+    }
+
+    /**
+     * Copies the map before every cold run.
+     */
+    @Setup(Level.Invocation)
+    public void copy() {
+        copy = new DataSet(map);
+    }
+
+    /**
+     * Validates a map never validated before.
+     * @return the errors
+     */
+    @Benchmark
+    public List<TestError> validateCold() {
+        return validate(copy);
+    }
+
+    /**
+     * Validates an unchanged map again.
+     * @return the errors
+     */
+    @Benchmark
+    public List<TestError> validateCached() {
+        return validate(map);
+    }
+
+    /**
+     * Runs the validator on all primitives of a map.
+     * @param ds the map
+     * @return the errors
+     */
+    private static List<TestError> validate(DataSet ds) {
+        var test = new CustomTagTest();
+        test.startTest(NullProgressMonitor.INSTANCE);
+        test.visit(ds.allPrimitives());
+        test.endTest();
+        return test.getErrors();
+    }
+}
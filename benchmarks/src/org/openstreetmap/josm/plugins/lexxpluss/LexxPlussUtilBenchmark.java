@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstreetmap.josm.data.coor.LatLon;
+
+/**
+ * Benchmarks of the UTM conversion of the exporter plugin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LexxPlussUtilBenchmark {
+
+    /**
+     * The number of map cells.
+     */
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    /**
+     * The node positions.
+     */
+    private LatLon[] positions;
+
+    /**
+     * Creates the map.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        positions = BenchmarkMaps.create(size).getNodes().stream()
+                .map(n -> n.getCoor())
+                .toArray(LatLon[]::new);
+    }
+
+    /**
+     * Converts all node positions to UTM.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void desToUtm(Blackhole bh) {
+        for (var position : positions)
+            bh.consume(LexxPlussUtil.DesToUtm(position));
+    }
+}
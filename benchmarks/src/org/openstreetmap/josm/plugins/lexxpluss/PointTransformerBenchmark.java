@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.awt.geom.NoninvertibleTransformException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstreetmap.josm.data.coor.EastNorth;
+
+/**
+ * Benchmarks of the image coordinate conversion of the tools plugin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PointTransformerBenchmark {
+
+    /**
+     * The number of map cells.
+     */
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    /**
+     * The transformer set up from the transform matrix way of the map.
+     */
+    private PointTransformer transformer;
+
+    /**
+     * The node positions.
+     */
+    private EastNorth[] positions;
+
+    /**
+     * The image x and y coordinates of the nodes.
+     */
+    private double[] points;
+
+    /**
+     * Creates the map and converts its nodes once.
+     * @throws NoninvertibleTransformException if the transform matrix is not invertible
+     */
+    @Setup(Level.Trial)
+    public void setup() throws NoninvertibleTransformException {
+        var map = BenchmarkMaps.create(size);
+        transformer = new PointTransformer();
+        transformer.setupFromWay(PointTransformer.getTransformMatrixWay(map));
+        positions = map.getNodes().stream().map(n -> n.getEastNorth()).toArray(EastNorth[]::new);
+        points = new double[positions.length * 2];
+        for (var i = 0; i < positions.length; ++i) {
+            var xy = transformer.eastNorthToImageXY(positions[i]);
+            points[i * 2] = xy[0];
+            points[i * 2 + 1] = xy[1];
+        }
+    }
+
+    /**
+     * Converts image coordinates to east-north.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void imageXYtoEastNorth(Blackhole bh) {
+        for (var i = 0; i < points.length; i += 2)
+            bh.consume(transformer.imageXYtoEastNorth(points[i], points[i + 1]));
+    }
+
+    /**
+     * Converts east-north to image coordinates.
+     * @param bh the blackhole
+     * @throws NoninvertibleTransformException if the transform matrix is not invertible
+     */
+    @Benchmark
+    public void eastNorthToImageXY(Blackhole bh) throws NoninvertibleTransformException {
+        for (var position : positions)
+            bh.consume(transformer.eastNorthToImageXY(position));
+    }
+}
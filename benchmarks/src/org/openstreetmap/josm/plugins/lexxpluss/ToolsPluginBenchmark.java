@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Benchmarks of the ID helpers of the tools plugin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ToolsPluginBenchmark {
+
+    /**
+     * The number of map cells.
+     */
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    /**
+     * The number of ways renumbered, as when pasting a copied part of a map.
+     */
+    @Param({"100"})
+    public int selection;
+
+    /**
+     * The map.
+     */
+    private DataSet map;
+
+    /**
+     * The ways renumbered.
+     */
+    private List<OsmPrimitive> ways;
+
+    /**
+     * Creates the map.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        map = BenchmarkMaps.create(size);
+        ways = map.getWays().stream()
+                .filter(w -> w.hasKey("goal_id"))
+                .sorted(Comparator.comparingLong(Way::getUniqueId).reversed())
+                .limit(selection)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Finds the largest agv_node_id.
+     * @return the largest ID
+     */
+    @Benchmark
+    public int getMaxId() {
+        return ToolsPlugin.getMaxId(map.getNodes(), "agv_node_id");
+    }
+
+    /**
+     * Finds the largest agv_node_id through the ID index of the map.
+     * @return the largest ID
+     */
+    @Benchmark
+    public int getMaxIdIndexed() {
+        return ToolsPlugin.getMaxId(map, "agv_node_id");
+    }
+
+    /**
+     * Renumbers the IDs of the selected ways and their nodes.
+     * The command is executed directly, so the undo stack does not grow.
+     */
+    @Benchmark
+    public void renumber() {
+        ToolsPlugin.createRenumberCommand(ways).executeCommand();
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstreetmap.josm.plugins.lexxpluss.BenchmarkMaps;
+
+/**
+ * Benchmarks of formatting and parsing X_image/Y_image, by {@link ImageCoordinateCodec}
+ * and by {@link String#valueOf(double)} and {@link Double#parseDouble(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImageCoordinateCodecBenchmark {
+
+    /**
+     * The number of map cells.
+     */
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    /**
+     * X_image and Y_image of the nodes of the map in micro pixels.
+     */
+    private double[] micros;
+
+    /**
+     * X_image and Y_image as written by the exporter.
+     */
+    private String[] values;
+
+    /**
+     * Converts the nodes of the map to image coordinates.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        var xy = new double[2];
+        var map = BenchmarkMaps.create(size);
+        var imageTransform = LexxPlussExporterBenchmark.imageTransform(map);
+        var nodes = map.getNodes();
+        micros = new double[nodes.size() * 2];
+        values = new String[micros.length];
+        var i = 0;
+        for (var node : nodes) {
+            imageTransform.toImageMicros(node.getEastNorth(), xy);
+            for (var m : xy) {
+                micros[i] = m;
+                values[i++] = String.valueOf(m / ImageCoordinateCodec.SCALE);
+            }
+        }
+    }
+
+    /**
+     * Formats the values into a reusable buffer.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void format(Blackhole bh) {
+        var buf = new char[ImageCoordinateCodec.MAX_LENGTH];
+        for (var m : micros)
+            bh.consume(ImageCoordinateCodec.format(m, buf, 0));
+    }
+
+    /**
+     * Formats the values with {@link String#valueOf(double)}.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void formatStringValueOf(Blackhole bh) {
+        for (var m : micros)
+            bh.consume(String.valueOf(m / ImageCoordinateCodec.SCALE));
+    }
+
+    /**
+     * Parses the values.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (var v : values)
+            bh.consume(ImageCoordinateCodec.parse(v));
+    }
+
+    /**
+     * Parses the values with {@link Double#parseDouble(String)}.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void parseDouble(Blackhole bh) {
+        for (var v : values)
+            bh.consume(Double.parseDouble(v));
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.awt.geom.NoninvertibleTransformException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.io.OsmWriterFactory;
+import org.openstreetmap.josm.plugins.lexxpluss.BenchmarkMaps;
+
+/**
+ * Benchmarks of saving LexxPluss maps.
+ * {@code LexxPlussExporter.doSave} reads the view and the PicLayer of a running JOSM, so the
+ * stages it runs after that are measured: the conversion of all nodes to X_image/Y_image,
+ * the plain OSM serialization and the LexxPluss serialization including the conversion,
+ * both of all nodes and of the nodes changed since the last export, the parallel conversion of all nodes
+ * and the binary serialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LexxPlussExporterBenchmark {
+
+    /**
+     * The number of map cells.
+     */
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    /**
+     * The map.
+     */
+    private DataSet map;
+
+    /**
+     * The nodes of the map.
+     */
+    private List<Node> nodes;
+
+    /**
+     * The conversion to image coordinates of the transform matrix way of the map.
+     */
+    private ImageTransform imageTransform;
+
+    /**
+     * The image coordinates of the last export of the map.
+     */
+    private ImageCoordinateCache cache;
+
+    /**
+     * Creates the map.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        map = BenchmarkMaps.create(size);
+        nodes = new ArrayList<>(map.getNodes());
+        imageTransform = imageTransform(map);
+        cache = ImageCoordinateCache.get(map);
+    }
+
+    /**
+     * Creates the conversion to image coordinates of the transform matrix way of a map.
+     * @param map the map
+     * @return the conversion
+     */
+    static ImageTransform imageTransform(DataSet map) {
+        var way = map.getWays().stream().filter(w -> w.hasKey("transform matrix")).findFirst().get();
+        var matrix = new double[6];
+        for (var i = 0; i < 6; ++i)
+            matrix[i] = Double.parseDouble(way.get("m" + i));
+        try {
+            return new ImageTransform(
+                    new EastNorth(Double.parseDouble(way.get("view_center_lon")), Double.parseDouble(way.get("view_center_lat"))),
+                    Double.parseDouble(way.get("pixel_per_en_x")), Double.parseDouble(way.get("pixel_per_en_y")),
+                    Double.parseDouble(way.get("pic_offset_x")), Double.parseDouble(way.get("pic_offset_y")), matrix,
+                    Double.parseDouble(way.get("hw")), Double.parseDouble(way.get("hh")),
+                    Double.parseDouble(way.get("scaleX")), Double.parseDouble(way.get("scaleY")));
+        } catch (NoninvertibleTransformException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Converts all nodes to X_image/Y_image.
+     * @return the sum of the coordinates
+     */
+    @Benchmark
+    public double imageXY() {
+        var xy = new double[2];
+        var sum = 0.0;
+        for (var node : nodes) {
+            imageTransform.toImageXY(node.getEastNorth(), xy);
+            sum += xy[0] + xy[1];
+        }
+        return sum;
+    }
+
+    /**
+     * Serializes the map.
+     * @throws Exception if the map cannot be written
+     */
+    @Benchmark
+    public void write() throws Exception {
+        try (var writer = OsmWriterFactory.createOsmWriter(new PrintWriter(Writer.nullWriter()), false, "0.6")) {
+            writer.write(map);
+        }
+    }
+
+    /**
+     * Serializes the map in the LexxPluss format, converting the nodes while writing.
+     * @throws Exception if the map cannot be written
+     */
+    @Benchmark
+    public void writeLexxPluss() throws Exception {
+        try (var writer = new LexxPlussWriter(new PrintWriter(Writer.nullWriter()), "0.6", imageTransform)) {
+            writer.write(map);
+        }
+    }
+
+    /**
+     * Serializes the unchanged map in the LexxPluss format again, reusing the coordinates of the last export.
+     * @throws Exception if the map cannot be written
+     */
+    @Benchmark
+    public void writeLexxPlussCached() throws Exception {
+        try (var writer = new LexxPlussWriter(new PrintWriter(Writer.nullWriter()), "0.6", imageTransform, cache)) {
+            writer.write(map);
+        }
+    }
+
+    /**
+     * Converts and formats all nodes in parallel, as done before writing a changed map.
+     */
+    @Benchmark
+    public void prepareParallel() {
+        cache.clear();
+        cache.prepare(nodes, imageTransform);
+    }
+
+    /**
+     * Serializes the map in the LexxPluss binary format, converting the nodes while writing.
+     * @throws Exception if the map cannot be written
+     */
+    @Benchmark
+    public void writeBinary() throws Exception {
+        new LexxPlussBinaryWriter(imageTransform, null).write(map, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss.io;
+
+import java.awt.geom.AffineTransform;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.plugins.lexxpluss.BenchmarkMaps;
+
+/**
+ * Benchmarks of reading LexxPluss maps, including the conversion of X_image/Y_image to lat/lon,
+ * of the conversion alone, composed into one affine transform and step by step as before,
+ * and of reading the same maps in the binary format, memory-mapped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LexxPlussReaderBenchmark {
+
+    /**
+     * The number of map cells.
+     */
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    /**
+     * The map file.
+     */
+    private File file;
+
+    /**
+     * The map file in the binary format.
+     */
+    private File binaryFile;
+
+    /**
+     * The tags of the transform matrix way.
+     */
+    private Map<String, String> transformTags;
+
+    /**
+     * The image x and y coordinates of the nodes.
+     */
+    private double[] points;
+
+    /**
+     * Writes the map files.
+     * @throws IOException if the files cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        var map = BenchmarkMaps.create(size);
+        file = File.createTempFile("lexxpluss-bench", ".osm");
+        BenchmarkMaps.writeLexxPlussXml(map, file);
+        binaryFile = File.createTempFile("lexxpluss-bench", ".lxb");
+        try (var out = new FileOutputStream(binaryFile)) {
+            new LexxPlussBinaryWriter(LexxPlussExporterBenchmark.imageTransform(map), null).write(map, out);
+        }
+        var imageTransform = LexxPlussExporterBenchmark.imageTransform(map);
+        transformTags = imageTransform.toTags();
+        var nodes = map.getNodes();
+        points = new double[nodes.size() * 2];
+        var xy = new double[2];
+        var i = 0;
+        for (var node : nodes) {
+            imageTransform.toImageXY(node.getEastNorth(), xy);
+            points[i++] = xy[0];
+            points[i++] = xy[1];
+        }
+    }
+
+    /**
+     * Deletes the map files.
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(binaryFile.toPath());
+    }
+
+    /**
+     * Reads the map the way the importer does.
+     * @return the map
+     * @throws IOException if the file cannot be read
+     * @throws IllegalDataException if the map is invalid
+     */
+    @Benchmark
+    public DataSet read() throws IOException, IllegalDataException {
+        try (var in = new FileInputStream(file)) {
+            return new LexxPlussReader().execParse(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+
+    /**
+     * Reads the map in the binary format the way the binary importer does.
+     * @return the map
+     * @throws IOException if the file cannot be read
+     * @throws IllegalDataException if the map is invalid
+     */
+    @Benchmark
+    public DataSet readBinary() throws IOException, IllegalDataException {
+        return new LexxPlussBinaryReader(LexxPlussBinaryReader.map(binaryFile)).parse();
+    }
+
+    /**
+     * Converts image coordinates to east-north with the composed transform of {@code LexxPlussReader}.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void convert(Blackhole bh) {
+        var transform = LexxPlussReader.composeTransform(transformTags);
+        for (var i = 0; i < points.length; i += 2)
+            bh.consume(LexxPlussReader.toEastNorth(transform, points[i], points[i + 1]));
+    }
+
+    /**
+     * Converts image coordinates to east-north step by step, the way {@code LexxPlussReader} did
+     * before the transform was composed.
+     * @param bh the blackhole
+     */
+    @Benchmark
+    public void convertStepwise(Blackhole bh) {
+        var matrix = new double[6];
+        for (var i = 0; i < 6; ++i)
+            matrix[i] = Double.parseDouble(transformTags.get("m" + i));
+        var transform = new AffineTransform(matrix);
+        var viewCenterLon = Double.parseDouble(transformTags.get("view_center_lon"));
+        var viewCenterLat = Double.parseDouble(transformTags.get("view_center_lat"));
+        var pixelPerEnX = Double.parseDouble(transformTags.get("pixel_per_en_x"));
+        var pixelPerEnY = Double.parseDouble(transformTags.get("pixel_per_en_y"));
+        var picOffsetX = Double.parseDouble(transformTags.get("pic_offset_x"));
+        var picOffsetY = Double.parseDouble(transformTags.get("pic_offset_y"));
+        var scaleX = Double.parseDouble(transformTags.get("scaleX"));
+        var scaleY = Double.parseDouble(transformTags.get("scaleY"));
+        var hw = Double.parseDouble(transformTags.get("hw"));
+        var hh = Double.parseDouble(transformTags.get("hh"));
+        for (var i = 0; i < points.length; i += 2) {
+            var inPoint = new double[]{
+                    (points[i] - hw) / scaleX + picOffsetX / transform.getScaleX(),
+                    (points[i + 1] - hh) / scaleY + picOffsetY / transform.getScaleY()
+            };
+            var cvtPoint = new double[2];
+            transform.transform(inPoint, 0, cvtPoint, 0, 1);
+            bh.consume(new EastNorth(cvtPoint[0] / pixelPerEnX + viewCenterLon,
+                    viewCenterLat - cvtPoint[1] / pixelPerEnY));
+        }
+    }
+}
@@ -74,14 +74,20 @@ public class AGVLineMode extends MapMode {
         nodes[4] = new Node(en_base.add(-1.0,  0.0));
         nodes[5] = new Node(en_base.add( 1.0,  2.0));
         var ds = getLayerManager().getEditDataSet();
-        var max_node_id = ToolsPlugin.getMaxId(ds.getNodes(), "agv_node_id");
+        var max_node_id = ToolsPlugin.getMaxId(ds, "agv_node_id");
         nodes[0].put("agv_node_id", Integer.toString(max_node_id + 1));
         nodes[1].put("agv_node_id", Integer.toString(max_node_id + 2));
         Collection<Command> cmds = new LinkedList<>();
-        var max_goal_id = ToolsPlugin.getMaxId(ds.getWays(), "goal_id");
-        addWayCommands(ds, cmds, nodes[0], nodes[1], new TagMap("line_info", "agv_pose"));
-        addWayCommands(ds, cmds, nodes[2], nodes[3], new TagMap("line_info", "goal_pose", "goal_id", Integer.toString(max_goal_id + 1)));
-        addWayCommands(ds, cmds, nodes[4], nodes[5], new TagMap("line_info", "goal_pose", "goal_id", Integer.toString(max_goal_id + 2)));
+        var max_goal_id = ToolsPlugin.getMaxId(ds, "goal_id");
+        var schema = TagSchema.getInstance();
+        var agv_tags = new TagMap(schema.getTemplate(TagSchema.WayType.AGV_POSE));
+        var goal_tags0 = new TagMap(schema.getTemplate(TagSchema.WayType.GOAL_POSE));
+        goal_tags0.put("goal_id", Integer.toString(max_goal_id + 1));
+        var goal_tags1 = new TagMap(schema.getTemplate(TagSchema.WayType.GOAL_POSE));
+        goal_tags1.put("goal_id", Integer.toString(max_goal_id + 2));
+        addWayCommands(ds, cmds, nodes[0], nodes[1], agv_tags);
+        addWayCommands(ds, cmds, nodes[2], nodes[3], goal_tags0);
+        addWayCommands(ds, cmds, nodes[4], nodes[5], goal_tags1);
         UndoRedoHandler.getInstance().add(new SequenceCommand("AGV Scene", cmds));
     }
 
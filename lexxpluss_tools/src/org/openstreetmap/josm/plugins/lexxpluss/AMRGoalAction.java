@@ -36,9 +36,10 @@ public class AMRGoalAction extends JosmAction {
         var ds = getLayerManager().getEditDataSet();
         var way = ds.getLastSelectedWay();
         Collection<Command> cmds = new LinkedList<>();
-        cmds.add(new ChangePropertyCommand(way, "line_info", "goal_pose"));
+        TagSchema.getInstance().getTemplate(TagSchema.WayType.GOAL_POSE)
+                .forEach((k, v) -> cmds.add(new ChangePropertyCommand(way, k, v)));
         if (!way.hasKey("goal_id")) {
-            var max = ToolsPlugin.getMaxId(ds.getWays(), "goal_id");
+            var max = ToolsPlugin.getMaxId(ds, "goal_id");
             cmds.add(new ChangePropertyCommand(way, "goal_id", Integer.toString(++max)));
         }
         UndoRedoHandler.getInstance().add(new SequenceCommand("AMR goal", cmds));
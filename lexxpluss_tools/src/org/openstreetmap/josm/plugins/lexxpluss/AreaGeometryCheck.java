@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.awt.geom.Area;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.QuadBuckets;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.tools.Geometry;
+
+/**
+ * Geometric checks between LexxPluss areas and lines.
+ * The areas of a data set are indexed once per run, so every check only
+ * compares a way with the areas whose bounding boxes it touches.
+ */
+class AreaGeometryCheck {
+
+    /**
+     * The area in square meters of the bounding box of an overlap below which areas are taken as not overlapping,
+     * so adjacent areas sharing an outline do not overlap by the rounding of their coordinates.
+     */
+    static final double OVERLAP_THRESHOLD = 1e-4;
+
+    /**
+     * The test reporting the errors.
+     */
+    private final CustomTagTest test;
+
+    /**
+     * The tag schema.
+     */
+    private final TagSchema schema;
+
+    /**
+     * The movable areas.
+     */
+    private final QuadBuckets<Way> movableAreas = new QuadBuckets<>();
+
+    /**
+     * The parking areas.
+     */
+    private final QuadBuckets<Way> parkingAreas = new QuadBuckets<>();
+
+    /**
+     * The sync areas without sync_id.
+     */
+    private final QuadBuckets<Way> syncAreas = new QuadBuckets<>();
+
+    /**
+     * The projected shapes of the indexed areas, computed on demand.
+     */
+    private final Map<Way, Area> shapes = new HashMap<>();
+
+    /**
+     * {@link #OVERLAP_THRESHOLD} in square units of the projection.
+     */
+    private final double overlapEps;
+
+    /**
+     * Constructs a new {@code AreaGeometryCheck}.
+     * @param test the test reporting the errors
+     * @param schema the tag schema
+     */
+    AreaGeometryCheck(CustomTagTest test, TagSchema schema) {
+        this.test = test;
+        this.schema = schema;
+        var metersPerUnit = ProjectionRegistry.getProjection().getMetersPerUnit();
+        this.overlapEps = OVERLAP_THRESHOLD / (metersPerUnit * metersPerUnit);
+    }
+
+    /**
+     * Runs the geometric checks on a data set.
+     * @param ds the data set
+     * @param found the list receiving the errors
+     */
+    void check(DataSet ds, List<TestError> found) {
+        var goals = new ArrayList<Way>();
+        var lines = new ArrayList<Way>();
+        for (var way : ds.getWays()) {
+            if (!hasGeometry(way))
+                continue;
+            if (way.isArea()) {
+                if ("movable".equals(way.get("area_base")))
+                    movableAreas.add(way);
+                var type = schema.getAreaType(way);
+                if (type == TagSchema.AreaType.PARK)
+                    parkingAreas.add(way);
+                else if (type == TagSchema.AreaType.SYNC && !way.hasKey("sync_id"))
+                    syncAreas.add(way);
+            } else {
+                var value = way.get("line_info");
+                if ("goal_pose".equals(value))
+                    goals.add(way);
+                else if ("agv_pose".equals(value))
+                    lines.add(way);
+            }
+        }
+        parkingAreas.forEach(area -> checkParkingOverlap(area, found));
+        goals.forEach(goal -> checkGoalContainment(goal, found));
+        lines.forEach(line -> checkSyncCrossing(line, found));
+        movableAreas.clear();
+        parkingAreas.clear();
+        syncAreas.clear();
+        shapes.clear();
+    }
+
+    /**
+     * Check for parking areas overlapping another parking area.
+     * Each pair is reported once.
+     * @param area the parking area
+     * @param found the list receiving the errors
+     */
+    private void checkParkingOverlap(Way area, List<TestError> found) {
+        for (var other : parkingAreas.search(area.getBBox())) {
+            if (other.getUniqueId() <= area.getUniqueId())
+                continue;
+            var intersection = Geometry.polygonIntersection(getShape(area), getShape(other), overlapEps);
+            if (intersection != Geometry.PolygonIntersection.OUTSIDE)
+                found.add(test.error(6007, "Parking areas overlap", List.of(area, other)));
+        }
+    }
+
+    /**
+     * Check for goal poses outside every movable area.
+     * @param goal the goal pose way
+     * @param found the list receiving the errors
+     */
+    private void checkGoalContainment(Way goal, List<TestError> found) {
+        for (var node : goal.getNodes()) {
+            if (!isInMovableArea(node)) {
+                found.add(test.error(6008, "Goal pose outside movable area", List.of(goal)));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Check for agv pose lines crossing a sync area without sync_id.
+     * @param line the agv pose way
+     * @param found the list receiving the errors
+     */
+    private void checkSyncCrossing(Way line, List<TestError> found) {
+        for (var area : syncAreas.search(line.getBBox())) {
+            if (crosses(line, area))
+                found.add(test.error(6009, "agv pose crosses sync area without sync_id", List.of(line, area)));
+        }
+    }
+
+    /**
+     * Returns whether a node lies inside a movable area.
+     * @param node the node
+     * @return {@code true} if the node is inside a movable area
+     */
+    private boolean isInMovableArea(Node node) {
+        var bbox = new BBox(node.lon(), node.lat());
+        for (var area : movableAreas.search(bbox)) {
+            if (Geometry.nodeInsidePolygon(node, area.getNodes()))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a line touches the inside or the outline of an area.
+     * @param line the line
+     * @param area the area
+     * @return {@code true} if the line touches the area
+     */
+    private static boolean crosses(Way line, Way area) {
+        var lineNodes = line.getNodes();
+        for (var node : lineNodes) {
+            if (Geometry.nodeInsidePolygon(node, area.getNodes()))
+                return true;
+        }
+        var areaNodes = area.getNodes();
+        for (var i = 1; i < lineNodes.size(); ++i) {
+            EastNorth p1 = lineNodes.get(i - 1).getEastNorth();
+            EastNorth p2 = lineNodes.get(i).getEastNorth();
+            for (var j = 1; j < areaNodes.size(); ++j) {
+                EastNorth p3 = areaNodes.get(j - 1).getEastNorth();
+                EastNorth p4 = areaNodes.get(j).getEastNorth();
+                if (Geometry.getSegmentSegmentIntersection(p1, p2, p3, p4) != null)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the projected shape of an area.
+     * @param area the area
+     * @return the shape
+     */
+    private Area getShape(Way area) {
+        return shapes.computeIfAbsent(area, w -> Geometry.getArea(w.getNodes()));
+    }
+
+    /**
+     * Returns whether a way can be checked geometrically.
+     * @param way the way
+     * @return {@code true} if all nodes of the way have coordinates
+     */
+    private static boolean hasGeometry(Way way) {
+        return way.isUsable() && way.getNodesCount() >= 2 && way.getNodes().stream().allMatch(Node::isLatLonKnown);
+    }
+}
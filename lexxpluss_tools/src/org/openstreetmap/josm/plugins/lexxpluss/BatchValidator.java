@@ -0,0 +1,496 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.preferences.JosmBaseDirectories;
+import org.openstreetmap.josm.data.preferences.JosmUrls;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.data.projection.Projections;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmWriterFactory;
+import org.openstreetmap.josm.plugins.lexxpluss.io.LexxPlussReader;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+/**
+ * Headless batch validator and exporter for LexxPluss maps.
+ * Reads maps with the LexxPluss importer, runs the LexxPluss validator, optionally
+ * re-exports X_image/Y_image from the transform matrix way, and writes a JSON report.
+ * <p>
+ * Usage: {@code java -cp josm.jar:lexxpluss_tools.jar:lexxpluss_importer.jar
+ * org.openstreetmap.josm.plugins.lexxpluss.BatchValidator [options] <map or directory>...}
+ * <ul>
+ * <li>{@code --threads <n>} number of files processed at the same time</li>
+ * <li>{@code --export <dir>} write the maps with updated X_image/Y_image to the directory</li>
+ * <li>{@code --report <file>} write the report to the file instead of the standard output</li>
+ * <li>{@code --no-timings} leave the timings and check statistics out, so the report only depends on the input</li>
+ * </ul>
+ * The exit status is 0 if no errors were found, 1 if errors were found and 2 on failures.
+ */
+public final class BatchValidator {
+
+    /**
+     * The result of one map.
+     */
+    private static final class Result {
+
+        /**
+         * The map file.
+         */
+        final Path file;
+
+        /**
+         * The failure message, or {@code null}.
+         */
+        String failure = null;
+
+        /**
+         * The number of nodes.
+         */
+        int nodes = 0;
+
+        /**
+         * The number of ways.
+         */
+        int ways = 0;
+
+        /**
+         * The IDs written in the map file by primitive.
+         */
+        Map<OsmPrimitive, Long> fileIds = Map.of();
+
+        /**
+         * The errors sorted by code, message and primitives.
+         */
+        List<TestError> errors = List.of();
+
+        /**
+         * Whether X_image/Y_image were exported.
+         */
+        boolean exported = false;
+
+        /**
+         * The read time in milliseconds.
+         */
+        long readMillis = 0;
+
+        /**
+         * The validation time in milliseconds.
+         */
+        long validateMillis = 0;
+
+        /**
+         * The export time in milliseconds.
+         */
+        long exportMillis = 0;
+
+        /**
+         * The timing and counters of the validator checks, or {@code null}.
+         */
+        ValidationStatistics statistics = null;
+
+        /**
+         * Constructs a new {@code Result}.
+         * @param file the map file
+         */
+        Result(Path file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * Constructs a new {@code BatchValidator}.
+     */
+    private BatchValidator() {
+    }
+
+    /**
+     * Runs the batch validator.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the batch validator.
+     * @param args the command line arguments
+     * @param out the stream receiving the report if no report file is given
+     * @param err the stream receiving messages
+     * @return the exit status
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        var threads = Runtime.getRuntime().availableProcessors();
+        Path exportDir = null;
+        Path reportFile = null;
+        var timings = true;
+        var inputs = new ArrayList<Path>();
+        try {
+            for (var i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                case "--threads":
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                case "--export":
+                    exportDir = Paths.get(args[++i]);
+                    break;
+                case "--report":
+                    reportFile = Paths.get(args[++i]);
+                    break;
+                case "--no-timings":
+                    timings = false;
+                    break;
+                default:
+                    inputs.add(Paths.get(args[i]));
+                    break;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            inputs.clear();
+        }
+        if (inputs.isEmpty()) {
+            err.println("Usage: BatchValidator [--threads <n>] [--export <dir>] [--report <file>] [--no-timings] <map or directory>...");
+            return 2;
+        }
+        List<Path> files;
+        try {
+            files = collectFiles(inputs);
+            if (exportDir != null)
+                Files.createDirectories(exportDir);
+        } catch (IOException e) {
+            err.println(e.getMessage());
+            return 2;
+        }
+        initialize(threads);
+        var results = process(files, exportDir, threads);
+        var report = toJson(results, timings);
+        if (reportFile == null) {
+            out.print(report);
+        } else {
+            try {
+                Files.write(reportFile, report.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                err.println(e.getMessage());
+                return 2;
+            }
+        }
+        if (results.stream().anyMatch(r -> r.failure != null))
+            return 2;
+        return results.stream().anyMatch(r -> !r.errors.isEmpty()) ? 1 : 0;
+    }
+
+    /**
+     * Sets up the parts of JOSM needed without a GUI.
+     * @param threads the number of files processed at the same time
+     */
+    private static void initialize(int threads) {
+        var pref = Preferences.main();
+        pref.enableSaveOnPut(false);
+        Config.setPreferencesInstance(pref);
+        Config.setBaseDirectoriesProvider(JosmBaseDirectories.getInstance());
+        Config.setUrlsProvider(JosmUrls.getInstance());
+        ProjectionRegistry.setProjection(Projections.getProjectionByCode("EPSG:3857"));
+        // the files already keep the cores busy
+        if (threads > 1)
+            ToolsSettings.setParallelValidation(false);
+    }
+
+    /**
+     * Expands the inputs to the sorted list of map files.
+     * @param inputs the files and directories
+     * @return the map files
+     * @throws IOException if a directory cannot be read
+     */
+    private static List<Path> collectFiles(List<Path> inputs) throws IOException {
+        var files = new ArrayList<Path>();
+        for (var input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> walk = Files.walk(input)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".osm"))
+                            .forEach(files::add);
+                }
+            } else {
+                files.add(input);
+            }
+        }
+        return files.stream().distinct().sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Processes the map files on a worker pool.
+     * @param files the map files
+     * @param exportDir the export directory, or {@code null}
+     * @param threads the number of workers
+     * @return the results in the order of the files
+     */
+    private static List<Result> process(List<Path> files, Path exportDir, int threads) {
+        var executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.size())));
+        try {
+            var futures = new ArrayList<Future<Result>>();
+            for (var file : files)
+                futures.add(executor.submit(() -> process(file, exportDir)));
+            var results = new ArrayList<Result>();
+            for (var i = 0; i < files.size(); ++i) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    var result = new Result(files.get(i));
+                    result.failure = String.valueOf(e.getCause());
+                    results.add(result);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Processes a map file.
+     * @param file the map file
+     * @param exportDir the export directory, or {@code null}
+     * @return the result
+     */
+    private static Result process(Path file, Path exportDir) {
+        var result = new Result(file);
+        try {
+            var start = System.nanoTime();
+            var reader = new LexxPlussReader();
+            var ds = read(reader, file.toFile());
+            result.fileIds = reader.getFileIds();
+            result.nodes = ds.getNodes().size();
+            result.ways = ds.getWays().size();
+            result.readMillis = (System.nanoTime() - start) / 1000000;
+
+            start = System.nanoTime();
+            var test = new CustomTagTest();
+            test.startTest(NullProgressMonitor.INSTANCE);
+            test.visit(new ArrayList<OsmPrimitive>(ds.allPrimitives()));
+            test.endTest();
+            var errors = new ArrayList<>(test.getErrors());
+            errors.sort(Comparator.comparingInt(TestError::getCode)
+                    .thenComparing(TestError::getMessage)
+                    .thenComparing(e -> primitiveIds(e, result.fileIds)));
+            result.errors = errors;
+            result.statistics = test.getStatistics();
+            result.validateMillis = (System.nanoTime() - start) / 1000000;
+
+            if (exportDir != null) {
+                start = System.nanoTime();
+                result.exported = export(ds, exportDir.resolve(file.getFileName()).toFile());
+                result.exportMillis = (System.nanoTime() - start) / 1000000;
+            }
+        } catch (Exception e) {
+            result.failure = e.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Reads a map with the LexxPluss importer.
+     * @param reader the reader, giving the IDs written in the file afterwards
+     * @param file the map file
+     * @return the data set
+     * @throws Exception if the map cannot be read
+     */
+    private static DataSet read(LexxPlussReader reader, File file) throws Exception {
+        try (var in = Compression.getUncompressedFileInputStream(file)) {
+            return reader.execParse(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+
+    /**
+     * Updates X_image/Y_image of all nodes from the transform matrix way and writes the map.
+     * @param ds the data set
+     * @param file the output file
+     * @return {@code true} if X_image/Y_image were updated, {@code false} if the map
+     * has no usable transform matrix and was written unchanged
+     * @throws Exception if the map cannot be written
+     */
+    private static boolean export(DataSet ds, File file) throws Exception {
+        var updated = false;
+        var way = PointTransformer.getTransformMatrixWay(ds);
+        var transformer = new PointTransformer();
+        if (way != null && transformer.setupFromWay(way)) {
+            var buf = new char[ImageCoordinateCodec.MAX_LENGTH];
+            for (var node : ds.getNodes()) {
+                var en = node.getEastNorth();
+                if (en == null)
+                    continue;
+                var micros = transformer.eastNorthToImageMicros(en);
+                node.put("X_image", new String(buf, 0, ImageCoordinateCodec.format(micros[0], buf, 0)));
+                node.put("Y_image", new String(buf, 0, ImageCoordinateCodec.format(micros[1], buf, 0)));
+            }
+            updated = true;
+        }
+        try (var writer = OsmWriterFactory.createOsmWriter(new PrintWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)), false, ds.getVersion())) {
+            writer.write(ds);
+        }
+        return updated;
+    }
+
+    /**
+     * Returns the IDs written in the map file of the primitives of an error.
+     * The IDs do not depend on the maps read at the same time, unlike the IDs of new primitives in the data set.
+     * @param error the error
+     * @param fileIds the IDs written in the map file by primitive
+     * @return the IDs, e.g. {@code n-1,w-2}
+     */
+    private static String primitiveIds(TestError error, Map<OsmPrimitive, Long> fileIds) {
+        return error.getPrimitives().stream()
+                .map(p -> primitiveId(p, fileIds))
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Returns the ID written in the map file of a primitive.
+     * @param primitive the primitive
+     * @param fileIds the IDs written in the map file by primitive
+     * @return the ID, e.g. {@code n-1}
+     */
+    private static String primitiveId(OsmPrimitive primitive, Map<OsmPrimitive, Long> fileIds) {
+        var id = fileIds.get(primitive);
+        return primitive.getType().getAPIName().charAt(0) + Long.toString(id != null ? id : primitive.getUniqueId());
+    }
+
+    /**
+     * Formats the results as JSON.
+     * @param results the results
+     * @param timings whether to include the timings
+     * @return the JSON report
+     */
+    private static String toJson(List<Result> results, boolean timings) {
+        var sb = new StringBuilder();
+        sb.append("{\n  \"files\": [");
+        var totalErrors = 0;
+        for (var i = 0; i < results.size(); ++i) {
+            var r = results.get(i);
+            totalErrors += r.errors.size();
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\n      \"file\": ").append(quote(r.file.toString()));
+            if (r.failure != null) {
+                sb.append(",\n      \"failure\": ").append(quote(r.failure)).append("\n    }");
+                continue;
+            }
+            sb.append(",\n      \"nodes\": ").append(r.nodes);
+            sb.append(",\n      \"ways\": ").append(r.ways);
+            sb.append(",\n      \"exported\": ").append(r.exported);
+            if (timings) {
+                sb.append(",\n      \"timings_ms\": {\"read\": ").append(r.readMillis)
+                        .append(", \"validate\": ").append(r.validateMillis)
+                        .append(", \"export\": ").append(r.exportMillis).append('}');
+                appendChecks(sb, r.statistics);
+            }
+            sb.append(",\n      \"errors\": [");
+            for (var j = 0; j < r.errors.size(); ++j) {
+                var e = r.errors.get(j);
+                sb.append(j == 0 ? "\n" : ",\n");
+                sb.append("        {\"code\": ").append(e.getCode())
+                        .append(", \"severity\": ").append(quote(e.getSeverity().name()))
+                        .append(", \"message\": ").append(quote(e.getMessage()))
+                        .append(", \"primitives\": [");
+                var ids = primitiveIds(e, r.fileIds);
+                if (!ids.isEmpty())
+                    sb.append(Stream.of(ids.split(",")).map(BatchValidator::quote).collect(Collectors.joining(", ")));
+                sb.append("]}");
+            }
+            sb.append(r.errors.isEmpty() ? "]\n    }" : "\n      ]\n    }");
+        }
+        sb.append(results.isEmpty() ? "]" : "\n  ]");
+        sb.append(",\n  \"total_errors\": ").append(totalErrors).append("\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Appends the timing and counters of the validator checks as JSON.
+     * @param sb the report
+     * @param statistics the statistics, or {@code null}
+     */
+    private static void appendChecks(StringBuilder sb, ValidationStatistics statistics) {
+        if (statistics == null)
+            return;
+        sb.append(",\n      \"cache\": {\"hits\": ").append(statistics.getCacheHits())
+                .append(", \"misses\": ").append(statistics.getCacheMisses()).append('}');
+        sb.append(",\n      \"checks\": [");
+        var checks = statistics.getChecks();
+        for (var i = 0; i < checks.size(); ++i) {
+            var c = checks.get(i);
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("        {\"name\": ").append(quote(c.getName()))
+                    .append(", \"ms\": ").append(String.format(Locale.ROOT, "%.3f", c.getNanos() / 1e6))
+                    .append(", \"primitives\": ").append(c.getPrimitives())
+                    .append(", \"errors\": ").append(c.getErrors())
+                    .append(", \"allocated_bytes\": ").append(c.getAllocatedBytes()).append('}');
+        }
+        sb.append(checks.isEmpty() ? "]" : "\n      ]");
+    }
+
+    /**
+     * Quotes a string for JSON.
+     * @param s the string
+     * @return the quoted string
+     */
+    private static String quote(String s) {
+        var sb = new StringBuilder("\"");
+        for (var c : s.toCharArray()) {
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20)
+                    sb.append(String.format("\\u%04x", (int)c));
+                else
+                    sb.append(c);
+                break;
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
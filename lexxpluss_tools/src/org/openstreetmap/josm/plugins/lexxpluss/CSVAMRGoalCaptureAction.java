@@ -49,7 +49,7 @@ public class CSVAMRGoalCaptureAction extends JosmAction {
             var file = dialog.getSelectedFile();
             var data = loadCSVFile(file);
             if (!data.isEmpty()) {
-                var max = ToolsPlugin.getMaxId(ds.getWays(), "goal_id");
+                var max = ToolsPlugin.getMaxId(ds, "goal_id");
                 var cmds = new LinkedList<Command>();
                 for (var d : data) {
                     var ne0 = transformer.imageXYtoEastNorth(d.x, d.y);
@@ -63,7 +63,7 @@ public class CSVAMRGoalCaptureAction extends JosmAction {
                     var way = new Way();
                     way.addNode(nodes[0]);
                     way.addNode(nodes[1]);
-                    way.put("line_info", "goal_pose");
+                    TagSchema.getInstance().getTemplate(TagSchema.WayType.GOAL_POSE).forEach(way::put);
                     way.put("goal_id", Integer.toString(++max));
                     cmds.add(new AddCommand(ds, nodes[0]));
                     cmds.add(new AddCommand(ds, nodes[1]));
@@ -38,4 +38,11 @@ public class CSVFileDialog extends JFileChooser {
         currentDirectory = getCurrentDirectory();
         return ret;
     }
+
+    @Override
+    public int showSaveDialog(Component parent) {
+        int ret = super.showSaveDialog(parent);
+        currentDirectory = getCurrentDirectory();
+        return ret;
+    }
 }
@@ -49,7 +49,7 @@ public class CSVPGVTapeCaptureAction extends JosmAction {
             var file = dialog.getSelectedFile();
             var data = loadCSVFile(file);
             if (!data.isEmpty()) {
-                var agv_node_id = ToolsPlugin.getMaxId(ds.getNodes(), "agv_node_id");
+                var agv_node_id = ToolsPlugin.getMaxId(ds, "agv_node_id");
                 var cmds = new LinkedList<Command>();
                 for (var d : data) {
                     var ne0 = transformer.imageXYtoEastNorth(d.start_x, d.start_y);
@@ -67,7 +67,7 @@ public class CSVPGVTapeCaptureAction extends JosmAction {
                     var way = new Way();
                     way.addNode(nodes[0]);
                     way.addNode(nodes[1]);
-                    way.put("line_info", "agv_pose");
+                    TagSchema.getInstance().getTemplate(TagSchema.WayType.AGV_POSE).forEach(way::put);
                     way.put("agv_line_start_offset", String.valueOf(d.start_pgv));
                     way.put("agv_line_end_offset", String.valueOf(d.end_pgv));
                     cmds.add(new AddCommand(ds, nodes[0]));
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import javax.swing.JOptionPane;
+import org.openstreetmap.josm.actions.JosmAction;
+import org.openstreetmap.josm.data.UndoRedoHandler;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.Notification;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Action to compact the IDs of the edit data set and save the mapping of old to new IDs.
+ */
+public class CompactIdsAction extends JosmAction {
+
+    /**
+     * Constructs a new {@code CompactIdsAction}.
+     */
+    public CompactIdsAction() {
+        super("Compact IDs", "mapmode/lexxpluss_tools", "Renumber the LexxPluss IDs into dense ranges",
+                null, false);
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        var ds = getLayerManager().getEditDataSet();
+        if (ds == null)
+            return;
+        var compactor = new IdCompactor(ds);
+        if (!compactor.hasChanges()) {
+            showNotification("IDs are already compact.", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        var dialog = new CSVFileDialog();
+        dialog.setDialogTitle("Save ID mapping");
+        dialog.setSelectedFile(new File("id_mapping.csv"));
+        if (dialog.showSaveDialog(MainApplication.getMainFrame()) != CSVFileDialog.APPROVE_OPTION)
+            return;
+        try {
+            compactor.writeMapping(dialog.getSelectedFile());
+        } catch (IOException ex) {
+            Logging.log(Level.WARNING, "Could not write ID mapping.", ex);
+            showNotification("Error writing ID mapping file.", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        UndoRedoHandler.getInstance().add(compactor.createCommand());
+    }
+
+    @Override
+    protected void updateEnabledState() {
+        setEnabled(getLayerManager().getEditDataSet() != null);
+    }
+
+    /**
+     * Shows a notification.
+     * @param message the message
+     * @param type the message type of {@link JOptionPane}
+     */
+    private void showNotification(String message, int type) {
+        new Notification(message)
+                .setIcon(type)
+                .setDuration(3000)
+                .show();
+    }
+}
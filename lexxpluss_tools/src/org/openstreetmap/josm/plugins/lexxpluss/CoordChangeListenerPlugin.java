@@ -7,14 +7,7 @@
 package org.openstreetmap.josm.plugins.lexxpluss;
 
 import java.awt.geom.AffineTransform;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.awt.Image;
-import java.util.List;
 import java.util.Map;
-import java.awt.geom.NoninvertibleTransformException;
-import java.util.logging.Level;
 
 import javax.swing.SwingUtilities;
 
@@ -38,11 +31,7 @@ import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapFrame;
 import org.openstreetmap.josm.gui.MapView;
-import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
-import org.openstreetmap.josm.plugins.piclayer.layer.PicLayerAbstract;
-import org.openstreetmap.josm.plugins.piclayer.transform.PictureTransform;
-import org.openstreetmap.josm.tools.Logging;
 
 /**
  * Action to set the node coords automatically
@@ -112,71 +101,52 @@ public class CoordChangeListenerPlugin implements DataSetListener {
 
     private void onNodeTagChanged(Node node, Map<String, String> originalTags, Map<String, String> newTags, String tagThatHasChanged) {
         if ("X_image".equals(tagThatHasChanged)) {
-            moveNodeToCustomCoordinates(node, Double.parseDouble(newTags.get(tagThatHasChanged)), Double.parseDouble(newTags.get("Y_image")));
+            moveNodeToCustomCoordinates(node, ImageCoordinateCodec.parse(newTags.get(tagThatHasChanged)), ImageCoordinateCodec.parse(newTags.get("Y_image")));
         } else if ("Y_image".equals(tagThatHasChanged)) {
-            moveNodeToCustomCoordinates(node, Double.parseDouble(newTags.get("X_image")), Double.parseDouble(newTags.get(tagThatHasChanged)));
+            moveNodeToCustomCoordinates(node, ImageCoordinateCodec.parse(newTags.get("X_image")), ImageCoordinateCodec.parse(newTags.get(tagThatHasChanged)));
         }
     }
 
     private void moveNodeToCustomCoordinates(Node node, double customX, double customY) {
         // Reverse the transformation steps in opposite order
         final MapFrame mf = MainApplication.getMap();
-        MapView mv = mf.mapView;
-        Image image = null;
-        AffineTransform transform = null;
-        EastNorth imagePosition = null;
-        PicLayerAbstract picLayer = null;
-        EastNorth center = mv.getCenter();
-        EastNorth leftop = mv.getEastNorth(0, 0);
-        double pixel_per_en_x = (mv.getWidth() / 2.0) / (center.east() - leftop.east());
-        double pixel_per_en_y = (mv.getHeight() / 2.0) / (leftop.north() - center.north());
-
-        List<Layer> layers = MainApplication.getLayerManager().getVisibleLayersInZOrder();
-        double pic_offset_x = 0, pic_offset_y = 0;
-        for (Layer _layer : layers) {
-            if (_layer instanceof PicLayerAbstract) {
-                picLayer = (PicLayerAbstract)_layer;
-                image = picLayer.getImage();
-                PictureTransform transformer = picLayer.getTransformer();
-                transform = transformer.getTransform(); 
-                imagePosition = transformer.getImagePosition();
-                pic_offset_x = ((imagePosition.east() - center.east()) * pixel_per_en_x);
-                pic_offset_y = ((center.north() - imagePosition.north()) * pixel_per_en_y);
-            }
-        }
-
-        if (picLayer == null || image == null || transform == null) {
+        // The PicLayer and its calibration are cached, the view is read each time
+        var calibration = PicLayerCalibration.getInstance().getSnapshot();
+        if (calibration == null) {
             return;
         }
-
-        EastNorth pos = node.getEastNorth();
-        double[] srcPts = new double[2];
-        double[] dstPts = new double[srcPts.length];
-
-        srcPts[0] = (pos.east() - center.east()) * pixel_per_en_x;
-        srcPts[1] =  (center.north() - pos.north()) * pixel_per_en_y;
-
-        double initialImageScale = getInitialImageScale(picLayer);
-        PictureTransform transformer = picLayer.getTransformer();
-        transform = transformer.getTransform();
+        EastNorth center;
+        double pixel_per_en_x;
+        double pixel_per_en_y;
+        if (mf == null || mf.mapView == null || ToolsSettings.getViewIndependentExport()) {
+            // Same as the view independent export: the view is centered on the image at 1 pixel per east/north
+            center = calibration.getImagePosition();
+            pixel_per_en_x = 1.0;
+            pixel_per_en_y = 1.0;
+        } else {
+            MapView mv = mf.mapView;
+            center = mv.getCenter();
+            EastNorth leftop = mv.getEastNorth(0, 0);
+            pixel_per_en_x = (mv.getWidth() / 2.0) / (center.east() - leftop.east());
+            pixel_per_en_y = (mv.getHeight() / 2.0) / (leftop.north() - center.north());
+        }
+
+        EastNorth imagePosition = calibration.getImagePosition();
+        double pic_offset_x = ((imagePosition.east() - center.east()) * pixel_per_en_x);
+        double pic_offset_y = ((center.north() - imagePosition.north()) * pixel_per_en_y);
+
+        double initialImageScale = calibration.getInitialImageScale();
         double[] matrix = new double[6];
-        transform.getMatrix(matrix);
+        calibration.getTransform().getMatrix(matrix);
         matrix[4] = 0.0;
         matrix[5] = 0.0;
-        transform = new AffineTransform(matrix);
-        try {
-            transform.inverseTransform(srcPts, 0, dstPts, 0, 1);
-        }
-        catch (NoninvertibleTransformException e) {
-            Logging.log(Level.WARNING, "Could not inverseTransform.", e);
-            return;
-        }
+        AffineTransform transform = new AffineTransform(matrix);
 
-        double hw = image.getWidth(null) / 2.0;
-        double hh = image.getHeight(null) / 2.0;
+        double hw = calibration.getImageWidth() / 2.0;
+        double hh = calibration.getImageHeight() / 2.0;
 
-        double scaleX = (100.0 * getMetersPerEasting(picLayer, imagePosition)) / (initialImageScale * pixel_per_en_x);
-        double scaleY = (100.0 * getMetersPerNorthing(picLayer, imagePosition)) / (initialImageScale * pixel_per_en_y);
+        double scaleX = (100.0 * calibration.getMetersPerEasting()) / (initialImageScale * pixel_per_en_x);
+        double scaleY = (100.0 * calibration.getMetersPerNorthing()) / (initialImageScale * pixel_per_en_y);
 
         // Step 1: Reverse the floor operation (already done, customX and customY are the floored values)
         double x = customX;
@@ -215,65 +185,6 @@ public class CoordChangeListenerPlugin implements DataSetListener {
         UndoRedoHandler.getInstance().add(new MoveCommand(node, this.finalLatLon));
     }
 
-    /**
-     * get PicLayerAbstract.initialImageScale
-     * @param picLayer PicLayerAbstract instance
-     * @return PicLayerAbstract.initialImageScale
-     */
-    private double getInitialImageScale(PicLayerAbstract picLayer) {
-        double r = Double.NaN;
-        try {
-            // PicLayerAbstractは抽象クラスなのでpicLayerの実態は必ず継承クラスになる。
-            // リファクタリングには継承クラスから親クラスのPicLayerAbstractを参照する
-            Field f = picLayer.getClass().getSuperclass().getDeclaredField("initialImageScale");
-            f.setAccessible(true);
-            r = (double)f.get(picLayer);
-        }
-        catch (NoSuchFieldException | IllegalAccessException e) {
-            Logging.log(Level.WARNING, "Could not get PicLayerAbstract.initialImageScale.", e);
-        }
-        return r;
-    }
-
-    /**
-     * get MetersPerEasting
-     * @param picLayer PicLayerAbstract instance
-     * @param en imagePosition
-     * @return MetersPerEasting
-     */
-    private double getMetersPerEasting(PicLayerAbstract picLayer, EastNorth en) {
-        double r = Double.NaN;
-        try {
-            Method m = picLayer.getClass().getSuperclass().getDeclaredMethod("getMetersPerEasting", EastNorth.class);
-            m.setAccessible(true);
-            r = (double)m.invoke(picLayer, en); 
-        }
-        catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-            Logging.log(Level.WARNING, "Could not invoke PicLayerAbstract.getMetersPerEasting.", e);
-        }
-        return r;
-    }
-
-    /**
-     * get MetersPerNorthing
-     * @param picLayer PicLayerAbstract instance
-     * @param en imagePosition
-     * @return MetersPerNorthing
-     */
-    private double getMetersPerNorthing(PicLayerAbstract picLayer, EastNorth en) {
-        double r = Double.NaN;
-        try {
-            Method m = picLayer.getClass().getSuperclass().getDeclaredMethod("getMetersPerNorthing", EastNorth.class);
-            m.setAccessible(true);
-            r = (double)m.invoke(picLayer, en); 
-        }
-        catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-            Logging.log(Level.WARNING, "Could not invoke PicLayerAbstract.getMetersPerNorthing.", e);
-        }
-        return r;
-    }
-
-
     // Other DataSetListener methods (required by interface)
     @Override
     public void primitivesAdded(PrimitivesAddedEvent event) {}
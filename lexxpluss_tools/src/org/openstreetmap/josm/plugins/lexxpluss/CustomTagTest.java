@@ -6,12 +6,16 @@
 
 package org.openstreetmap.josm.plugins.lexxpluss;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Tagged;
@@ -20,6 +24,8 @@ import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * Custom tag check for LexxPluss.
@@ -27,68 +33,171 @@ import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 public class CustomTagTest extends Test {
 
     /**
-     * Way type.
+     * A per-primitive check.
      */
-    enum WayType {
-        /**
-         * Unknown way type.
-         */
-        UNKNOWN,
-        /**
-         * AGV pose way type.
-         */
-        AGV_POSE,
-        /**
-         * Goal pose way type.
-         */
-        GOAL_POSE,
-        /**
-         * Marker pose way type.
-         */
-        MARKER_POSE,
-        /**
-         * Oneway way type.
-         */
-        ONEWAY,
+    @FunctionalInterface
+    private interface PrimitiveCheck {
+
         /**
-         * Oneway direction way type.
+         * Runs the check.
+         * @param primitive the primitive
+         * @param found the list receiving the errors
          */
-        ONEWAY_DIR
-    };
+        void check(OsmPrimitive primitive, List<TestError> found);
+    }
 
     /**
-     * Area type.
+     * Node keys whose values must be unique.
      */
-    enum AreaType {
-        /**
-         * Unknown area type.
-         */
-        UNKNOWN,
-        /**
-         * Movable area type.
-         */
-        MOVABLE,
-        /**
-         * Non-stop area type.
-         */
-        NON_STOP,
-        /**
-         * Parking area type.
-         */
-        PARK,
-        /**
-         * Safety area type.
-         */
-        SAFETY,
-        /**
-         * Sync area type.
-         */
-        SYNC,
-        /**
-         * Oneway area type.
-         */
-        ONEWAY
-    };
+    static final List<String> NODE_UNIQUE_KEYS = List.of(
+            "agv_node_id",
+            "intermediate_goal_id");
+
+    /**
+     * Way keys whose values must be unique.
+     */
+    static final List<String> WAY_UNIQUE_KEYS = List.of(
+            "area_detect",
+            "area_name",
+            "goal_id",
+            "marker_group_id",
+            "space_id",
+            "sync_id");
+
+    /**
+     * Maximum number of primitives checked by one parallel task.
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 512;
+
+    /**
+     * The pool running the parallel checks, created on first use.
+     */
+    private static ForkJoinPool pool = null;
+
+    /**
+     * Whether the per-primitive checks of the current run are executed in parallel.
+     */
+    private boolean parallel = false;
+
+    /**
+     * Whether IDs used in other layers and site maps are reported in the current run.
+     */
+    private boolean globalIds = false;
+
+    /**
+     * The primitives whose checks are deferred to the parallel phase, in visiting order.
+     */
+    private final List<OsmPrimitive> deferred = new ArrayList<>();
+
+    /**
+     * The tag schema.
+     */
+    private TagSchema schema = TagSchema.getInstance();
+
+    /**
+     * The primitives visited in the current run.
+     */
+    private final Set<OsmPrimitive> visited = new HashSet<>();
+
+    /**
+     * The result caches of the data sets of the visited primitives.
+     */
+    private final Map<DataSet, ValidationCache> caches = new LinkedHashMap<>();
+
+    /**
+     * The timing and counters of the current or last run.
+     */
+    private final ValidationStatistics statistics = new ValidationStatistics();
+
+    /**
+     * The statistics of the per-primitive checks as a whole, measured per visit or per parallel task.
+     */
+    private final ValidationStatistics.Check primitiveStats = statistics.add("primitive checks");
+
+    /**
+     * The statistics of the invalid tag check.
+     */
+    private final ValidationStatistics.Check invalidTagStats = statistics.add("invalid tag");
+
+    /**
+     * The statistics of the numeric tag value check.
+     */
+    private final ValidationStatistics.Check numericValueStats = statistics.add("numeric tag value");
+
+    /**
+     * The statistics of the tag value check.
+     */
+    private final ValidationStatistics.Check tagValueStats = statistics.add("tag value");
+
+    /**
+     * The statistics of the tag combination check.
+     */
+    private final ValidationStatistics.Check tagCombinationStats = statistics.add("tag combination");
+
+    /**
+     * The statistics of the way node combination check.
+     */
+    private final ValidationStatistics.Check wayNodeStats = statistics.add("way node combination");
+
+    /**
+     * The statistics of the split way check.
+     */
+    private final ValidationStatistics.Check splitWayStats = statistics.add("split way");
+
+    /**
+     * The statistics of the duplicate ID check over the whole data set.
+     */
+    private final ValidationStatistics.Check duplicateStats = statistics.add("duplicate tag values");
+
+    /**
+     * The statistics of the area geometry check over the whole data set.
+     */
+    private final ValidationStatistics.Check geometryStats = statistics.add("area geometry");
+
+    /**
+     * The statistics of the route graph check over the whole data set.
+     */
+    private final ValidationStatistics.Check routeStats = statistics.add("route graph");
+
+    /**
+     * The statistics of the check of IDs used in other layers and site maps.
+     */
+    private final ValidationStatistics.Check otherUsesStats = statistics.add("IDs in other maps");
+
+    /**
+     * The invalid tag check, kept in a field so that running it does not allocate.
+     */
+    private final PrimitiveCheck invalidTag = this::checkInvalidTag;
+
+    /**
+     * The numeric tag value check.
+     */
+    private final PrimitiveCheck numericValue = this::checkNumericTagValue;
+
+    /**
+     * The tag value check.
+     */
+    private final PrimitiveCheck tagValue = this::checkTagValue;
+
+    /**
+     * The tag combination check.
+     */
+    private final PrimitiveCheck tagCombination = this::checkTagCombination;
+
+    /**
+     * The way node combination check.
+     */
+    private final PrimitiveCheck wayNode = this::checkWayNodeCombination;
+
+    /**
+     * The split way check.
+     */
+    private final PrimitiveCheck splitWay = (p, found) -> checkSplitWay((Way)p, found);
+
+    /**
+     * The allocated bytes of the validator thread when the run started, or -1.
+     */
+    private long startBytes = -1;
 
     /**
      * Constructs a new {@code CustomTagTest}.
@@ -97,159 +206,328 @@ public class CustomTagTest extends Test {
         super("Custom tag check (LexxPluss)", "Custom tag check for LexxPluss");
     }
 
+    @Override
+    public void startTest(ProgressMonitor progressMonitor) {
+        super.startTest(progressMonitor);
+        schema = TagSchema.getInstance();
+        parallel = ToolsSettings.getParallelValidation();
+        globalIds = ToolsSettings.getGlobalIds();
+        deferred.clear();
+        visited.clear();
+        caches.clear();
+        statistics.start();
+        startBytes = parallel ? -1 : ValidationStatistics.allocatedBytes();
+    }
+
     @Override
     public void visit(Node node) {
-        checkInvalidTag(node);
-        checkNumericTagValue(node);
-        checkTagValue(node);
-        checkTagCombination(node);
-        checkWayNodeCombination(node);
-        var other_nodes = node.getDataSet().getNodes().stream()
-                .filter(n -> n != node)
-                .collect(Collectors.toList());
-        Arrays.asList("agv_node_id", "intermediate_goal_id")
-                .forEach(key -> checkDuplicateTagValue(node, key, other_nodes));
+        markVisited(node);
+        if (parallel)
+            deferred.add(node);
+        else
+            checkMeasured(node, errors);
     }
 
     @Override
     public void visit(Way way) {
-        checkInvalidTag(way);
-        checkNumericTagValue(way);
-        checkTagValue(way);
-        checkTagCombination(way);
-        checkWayNodeCombination(way);
-        checkSplitWay(way);
-        var other_ways = way.getDataSet().getWays().stream()
-                .filter(w -> w != way)
-                .collect(Collectors.toList());
-        Arrays.asList("area_detect", "area_name", "goal_id", "marker_group_id", "space_id", "sync_id")
-                .forEach(key -> checkDuplicateTagValue(way, key, other_ways));
+        markVisited(way);
+        if (parallel)
+            deferred.add(way);
+        else
+            checkMeasured(way, errors);
+    }
+
+    @Override
+    public void endTest() {
+        // in sequential runs the validator thread only ran our checks since startTest
+        primitiveStats.recordBytes(startBytes);
+        if (!deferred.isEmpty()) {
+            errors.addAll(checkInParallel(deferred));
+            deferred.clear();
+        }
+        caches.forEach(this::checkDataSet);
+        if (globalIds) {
+            for (var ds : caches.keySet())
+                measure(otherUsesStats, visited.size(), errors, () -> checkOtherUses(ds));
+        }
+        visited.clear();
+        caches.clear();
+        statistics.finish();
+        Logging.info(statistics.summary());
+        super.endTest();
     }
 
     /**
-     * Check for invalid tag.
+     * Returns the timing and counters of the checks.
+     * The statistics belong to the last run and are reset when the next run starts.
+     * Times of parallel runs are summed over the worker threads.
+     * @return the statistics
+     */
+    public ValidationStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Uses the current tag schema for {@link #checkPrimitive(OsmPrimitive)}, e.g. after the schema was reloaded.
+     * Validator runs take the current schema in {@link #startTest(ProgressMonitor)}.
+     */
+    void updateSchema() {
+        schema = TagSchema.getInstance();
+    }
+
+    /**
+     * Runs the per-primitive checks on a single primitive.
+     * The checks only read data and do not touch the state of the current run.
      * @param primitive the primitive
+     * @return the errors found
      */
-    private void checkInvalidTag(OsmPrimitive primitive) {
-        Set<String> validTags = null;
-        if (primitive instanceof Node) {
-            validTags = Set.of(
-                    "agv_node_id",
-                    "intermediate_goal_id",
-                    "X_image",
-                    "Y_image");
-        } else if (primitive instanceof Way) {
-            if (((Way)primitive).isArea()) {
-                validTags = Set.of(
-                        "area_base",
-                        "area_detect",
-                        "area_info",
-                        "area_name",
-                        "diagonal_dir_sensitivity_left",
-                        "diagonal_dir_sensitivity_right",
-                        "front_left_safety",
-                        "front_left_stop_distance",
-                        "front_left_warning_distance",
-                        "front_right_safety",
-                        "front_right_stop_distance",
-                        "front_right_warning_distance",
-                        "front_safety",
-                        "front_stop_distance",
-                        "front_warning_distance",
-                        "non_stop_area",
-                        "oneway",
-                        "rear_left_safety",
-                        "rear_left_stop_distance",
-                        "rear_left_warning_distance",
-                        "rear_right_safety",
-                        "rear_right_stop_distance",
-                        "rear_right_warning_distance",
-                        "rear_safety",
-                        "rear_stop_distance",
-                        "rear_warning_distance",
-                        "section",
-                        "side_left_safety",
-                        "side_left_stop_distance",
-                        "side_left_warning_distance",
-                        "side_right_safety",
-                        "side_right_stop_distance",
-                        "side_right_warning_distance",
-                        "space_id",
-                        "sync_id",
-                        "use_scan_hi");
-            } else {
-                validTags = Set.of(
-                        "agv_line_end_offset",
-                        "agv_line_start_offset",
-                        "goal_id",
-                        "line_info",
-                        "marker_group_id",
-                        "oneway");
+    List<TestError> checkPrimitive(OsmPrimitive primitive) {
+        var found = new ArrayList<TestError>();
+        checkUncached(primitive, found);
+        return found;
+    }
+
+    /**
+     * Runs the per-primitive checks on a node or way and records their time.
+     * @param primitive the primitive
+     * @param found the list receiving the errors
+     */
+    private void checkMeasured(OsmPrimitive primitive, List<TestError> found) {
+        var start = System.nanoTime();
+        var before = found.size();
+        check(primitive, found);
+        primitiveStats.record(start, 1, found.size() - before);
+    }
+
+    /**
+     * Runs the per-primitive checks on a node or way, reusing the results of the
+     * previous run if the primitive did not change since.
+     * @param primitive the primitive
+     * @param found the list receiving the errors
+     */
+    private void check(OsmPrimitive primitive, List<TestError> found) {
+        var cache = caches.get(primitive.getDataSet());
+        if (cache == null) {
+            checkUncached(primitive, found);
+            return;
+        }
+        var fingerprint = ValidationCache.fingerprint(primitive);
+        var issues = cache.get(primitive, fingerprint);
+        statistics.recordCache(issues != null);
+        if (issues != null) {
+            issues.forEach(i -> found.add(error(i.code, i.message, i.primitives)));
+            return;
+        }
+        var start = found.size();
+        checkUncached(primitive, found);
+        cache.put(primitive, fingerprint, found.subList(start, found.size()));
+    }
+
+    /**
+     * Runs the per-primitive checks on a node or way.
+     * @param primitive the primitive
+     * @param found the list receiving the errors
+     */
+    private void checkUncached(OsmPrimitive primitive, List<TestError> found) {
+        if (primitive instanceof Node)
+            checkNode((Node)primitive, found);
+        else if (primitive instanceof Way)
+            checkWay((Way)primitive, found);
+    }
+
+    /**
+     * Runs the per-primitive checks on the given primitives using the fork-join pool.
+     * The errors are returned in the order of the primitives, independent of scheduling.
+     * @param primitives the primitives
+     * @return the errors found
+     */
+    private List<TestError> checkInParallel(List<OsmPrimitive> primitives) {
+        var task = new CheckTask(primitives, 0, primitives.size());
+        if (primitives.size() <= PARALLEL_CHUNK_SIZE)
+            return task.compute();
+        return getPool().invoke(task);
+    }
+
+    /**
+     * Returns the pool running the parallel checks.
+     * @return the pool
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null)
+            pool = Utils.newForkJoinPool("lexxpluss_tools.validator.threads", "lexxpluss-validator-%d", Thread.NORM_PRIORITY);
+        return pool;
+    }
+
+    /**
+     * Runs the per-primitive checks on a node.
+     * @param node the node
+     * @param found the list receiving the errors
+     */
+    private void checkNode(Node node, List<TestError> found) {
+        measure(invalidTagStats, invalidTag, node, found);
+        measure(numericValueStats, numericValue, node, found);
+        measure(tagValueStats, tagValue, node, found);
+        measure(tagCombinationStats, tagCombination, node, found);
+        measure(wayNodeStats, wayNode, node, found);
+    }
+
+    /**
+     * Runs the per-primitive checks on a way.
+     * @param way the way
+     * @param found the list receiving the errors
+     */
+    private void checkWay(Way way, List<TestError> found) {
+        measure(invalidTagStats, invalidTag, way, found);
+        measure(numericValueStats, numericValue, way, found);
+        measure(tagValueStats, tagValue, way, found);
+        measure(tagCombinationStats, tagCombination, way, found);
+        measure(wayNodeStats, wayNode, way, found);
+        measure(splitWayStats, splitWay, way, found);
+    }
+
+    /**
+     * Runs a per-primitive check and records its time and errors.
+     * Allocations are not measured per check, reading them costs more than most checks.
+     * @param stats the statistics of the check
+     * @param check the check
+     * @param primitive the primitive
+     * @param found the list receiving the errors
+     */
+    private static void measure(ValidationStatistics.Check stats, PrimitiveCheck check,
+            OsmPrimitive primitive, List<TestError> found) {
+        var start = System.nanoTime();
+        var before = found.size();
+        check.check(primitive, found);
+        stats.record(start, 1, found.size() - before);
+    }
+
+    /**
+     * Records a visited primitive for the cross-primitive checks.
+     * @param primitive the primitive
+     */
+    private void markVisited(OsmPrimitive primitive) {
+        visited.add(primitive);
+        var ds = primitive.getDataSet();
+        if (ds != null && !caches.containsKey(ds))
+            caches.put(ds, ValidationCache.get(ds, schema));
+    }
+
+    /**
+     * Runs the checks over a whole data set, reusing the results of the previous
+     * run if the data set did not change since.
+     * Only errors involving a visited primitive, or a node of a visited way, are reported.
+     * @param ds the data set
+     * @param cache the result cache of the data set
+     */
+    private void checkDataSet(DataSet ds, ValidationCache cache) {
+        var issues = cache.getDataSetIssues();
+        if (issues == null) {
+            var generation = cache.getGeneration();
+            var found = new ArrayList<TestError>();
+            var size = ds.getNodes().size() + ds.getWays().size();
+            measure(duplicateStats, size, found, () -> checkDuplicateTagValues(ds, found));
+            measure(geometryStats, size, found, () -> new AreaGeometryCheck(this, schema).check(ds, found));
+            measure(routeStats, size, found, () -> new RouteGraphCheck(this).check(ds, found));
+            issues = cache.putDataSetIssues(found, generation);
+        }
+        for (var issue : issues) {
+            if (issue.primitives.stream().anyMatch(this::isReported))
+                errors.add(error(issue.code, issue.message, issue.primitives));
+        }
+    }
+
+    /**
+     * Runs a check over a whole data set and records its time, errors and allocations.
+     * @param stats the statistics of the check
+     * @param size the number of primitives of the data set
+     * @param found the list receiving the errors
+     * @param check the check
+     */
+    private static void measure(ValidationStatistics.Check stats, int size, List<TestError> found, Runnable check) {
+        var startBytes = ValidationStatistics.allocatedBytes();
+        var start = System.nanoTime();
+        var before = found.size();
+        check.run();
+        stats.record(start, size, found.size() - before);
+        stats.recordBytes(startBytes);
+    }
+
+    /**
+     * Check for IDs of visited primitives used in other open layers or site maps.
+     * The results are not cached, as they depend on other data sets and files.
+     * @param ds the data set of the primitives
+     */
+    private void checkOtherUses(DataSet ds) {
+        var otherUses = IdRegistry.otherUses(ds);
+        for (var primitive : visited) {
+            if (primitive.getDataSet() != ds || primitive.isDeleted())
+                continue;
+            List<String> keys;
+            if (primitive instanceof Node)
+                keys = IdAllocator.NODE_KEYS;
+            else if (primitive instanceof Way)
+                keys = IdAllocator.WAY_KEYS;
+            else
+                continue;
+            for (var key : keys) {
+                var id = IdAllocator.parseId(primitive.get(key));
+                if (id == null)
+                    continue;
+                var uses = otherUses.find(key, id);
+                if (!uses.isEmpty())
+                    addError(errors, primitive, 6013, "Tag used in other map (" + String.join(", ", uses) + "):" + key + "=" + id);
             }
         }
+    }
+
+    /**
+     * Returns whether errors involving a primitive are reported in the current run.
+     * @param primitive the primitive
+     * @return {@code true} if the primitive or one of its parent ways was visited
+     */
+    private boolean isReported(OsmPrimitive primitive) {
+        if (visited.contains(primitive))
+            return true;
+        return primitive instanceof Node && ((Node)primitive).getParentWays().stream().anyMatch(visited::contains);
+    }
+
+    /**
+     * Check for invalid tag.
+     * @param primitive the primitive
+     * @param found the list receiving the errors
+     */
+    private void checkInvalidTag(OsmPrimitive primitive, List<TestError> found) {
+        int flag;
+        if (primitive instanceof Node)
+            flag = TagSchema.NODE;
+        else if (primitive instanceof Way)
+            flag = ((Way)primitive).isArea() ? TagSchema.AREA : TagSchema.WAY;
+        else
+            return;
         for (var key : primitive.keySet()) {
-            if (!validTags.contains(key))
-                addError(primitive, 6001, "Invalid tag:" + key);
+            var info = schema.getKey(key);
+            if (info == null || !info.is(flag))
+                addError(found, primitive, 6001, "Invalid tag:" + key);
         }
     }
 
     /**
      * Check for numeric tag value.
      * @param primitive the primitive
+     * @param found the list receiving the errors
      */
-    private void checkNumericTagValue(OsmPrimitive primitive) {
-        var intTags = Set.of(
-                "agv_node_id",
-                "goal_id",
-                "intermediate_goal_id",
-                "marker_group_id",
-                "space_id",
-                "sync_id");
-        var doubleTags = Set.of(
-                "agv_line_end_offset",
-                "agv_line_start_offset",
-                "diagonal_dir_sensitivity_left",
-                "diagonal_dir_sensitivity_right",
-                "front_left_stop_distance",
-                "front_left_warning_distance",
-                "front_right_stop_distance",
-                "front_right_warning_distance",
-                "front_stop_distance",
-                "front_warning_distance",
-                "marker_height",
-                "marker_pitch_deg",
-                "rear_left_stop_distance",
-                "rear_left_warning_distance",
-                "rear_right_stop_distance",
-                "rear_right_warning_distance",
-                "rear_stop_distance",
-                "rear_warning_distance",
-                "side_left_stop_distance",
-                "side_left_warning_distance",
-                "side_right_stop_distance",
-                "side_right_warning_distance",
-                "X_image",
-                "Y_image");
-        primitive.keySet().forEach(k -> {
-            var value = primitive.get(k);
-            String intValue = null;
-            if (intTags.contains(k)) {
-                intValue = value;
-            }
-            if (intValue != null) {
-                try {
-                    Integer.parseInt(intValue);
-                } catch (NumberFormatException e) {
-                    addError(primitive, 6002, "Invalid tag value:" + k + "=" + value);
-                }
-
-            }
-            if (doubleTags.contains(k)) {
-                try {
-                    Double.parseDouble(value);
-                } catch (NumberFormatException e) {
-                    addError(primitive, 6002, "Invalid tag value:" + k + "=" + value);
-                }
+    private void checkNumericTagValue(OsmPrimitive primitive, List<TestError> found) {
+        primitive.visitKeys((p, k, value) -> {
+            var info = schema.getKey(k);
+            if (info == null)
+                return;
+            try {
+                if (info.is(TagSchema.INTEGER))
+                    Integer.parseInt(value);
+                else if (info.is(TagSchema.DOUBLE))
+                    ImageCoordinateCodec.parse(value);
+            } catch (NumberFormatException e) {
+                addError(found, primitive, 6002, "Invalid tag value:" + k + "=" + value);
             }
         });
     }
@@ -257,233 +535,115 @@ public class CustomTagTest extends Test {
     /**
      * Check for tag value.
      * @param primitive the primitive
+     * @param found the list receiving the errors
      */
-    private void checkTagValue(OsmPrimitive primitive) {
-        var tagMap = Map.ofEntries(
-                Map.entry("line_info",          Set.of("agv_pose", "goal_pose", "marker_pose", "oneway_direction", "\"\"")),
-                Map.entry("oneway",             Set.of("yes", "no")),
-                Map.entry("area_info",          Set.of("sync_area")),
-                Map.entry("area_base",          Set.of("movable")),
-                Map.entry("non_stop_area",      Set.of("true")),
-                Map.entry("front_safety",       Set.of("off")),
-                Map.entry("front_left_safety",  Set.of("off")),
-                Map.entry("front_right_safety", Set.of("off")),
-                Map.entry("side_left_safety",   Set.of("off")),
-                Map.entry("side_right_safety",  Set.of("off")),
-                Map.entry("rear_safety",        Set.of("off")),
-                Map.entry("rear_left_safety",   Set.of("off")),
-                Map.entry("rear_right_safety",  Set.of("off")));
-        primitive.keySet().forEach(k -> {
-            var valueSet = tagMap.get(k);
-            if (valueSet != null && !valueSet.contains(primitive.get(k)))
-                addError(primitive, 6002, "Invalid tag value:" + k + "=" + primitive.get(k));
+    private void checkTagValue(OsmPrimitive primitive, List<TestError> found) {
+        primitive.visitKeys((p, k, value) -> {
+            var info = schema.getKey(k);
+            if (info != null && info.values != null && !info.values.contains(value))
+                addError(found, primitive, 6002, "Invalid tag value:" + k + "=" + value);
         });
     }
 
     /**
      * Check for tag combination.
      * @param primitive the primitive
+     * @param found the list receiving the errors
      */
-    private void checkTagCombination(OsmPrimitive primitive) {
+    private void checkTagCombination(OsmPrimitive primitive, List<TestError> found) {
         if (primitive instanceof Node) {
-            checkNodeTagCombination((Node)primitive);
+            checkNodeTagCombination((Node)primitive, found);
         } else if (primitive instanceof Way) {
             var way = (Way)primitive;
             if (way.isArea())
-                checkAreaTagCombination(way);
+                checkAreaTagCombination(way, found);
             else
-                checkWayTagCombination(way);
+                checkWayTagCombination(way, found);
         }
     }
 
     /**
      * Check for node tag combination.
      * @param node the node
+     * @param found the list receiving the errors
      */
-    private void checkNodeTagCombination(Node node) {
+    private void checkNodeTagCombination(Node node, List<TestError> found) {
         node.keySet().forEach(k -> {
             if ((k.equals("agv_node_id") && node.hasKey("intermediate_goal_id")) ||
                     (k.equals("intermediate_goal_id") && node.hasKey("agv_node_id")))
-                addError(node, 6003, "Invalid tag combination agv_node_id & intermediate_goal_id");
+                addError(found, node, 6003, "Invalid tag combination agv_node_id & intermediate_goal_id");
         });
     }
 
-    /**
-     * Get way type.
-     * @param way the way
-     * @return the way type
-     */
-    private WayType getWayType(Way way) {
-        for (var k : way.keySet()) {
-            if (k.equals("line_info")) {
-                var value = way.get(k);
-                if (value.equals("agv_pose"))
-                    return WayType.AGV_POSE;
-                else if (value.equals("goal_pose"))
-                    return WayType.GOAL_POSE;
-                else if (value.equals("marker_pose"))
-                    return WayType.MARKER_POSE;
-                else if (value.equals("oneway_direction"))
-                    return WayType.ONEWAY_DIR;
-            } else if (k.equals("goal_id")) {
-                return WayType.GOAL_POSE;
-            } else if (k.equals("marker_group_id")) {
-                return WayType.MARKER_POSE;
-            } else if (k.equals("oneway")) {
-                return WayType.ONEWAY;
-            }
-        }
-        return WayType.UNKNOWN;
-    }
-
     /**
      * Check for way tag combination.
      * @param way the way
+     * @param found the list receiving the errors
      */
-    private void checkWayTagCombination(Way way) {
-        switch (getWayType(way)) {
-        case UNKNOWN:
-            addError(way, 6003, "unknown way");
-            break;
-        case AGV_POSE:
-            if (way.keySet().size() > 3)
-                addError(way, 6003, "Incorrect tag number for agv pose");
-            var validTags = Set.of("line_info", "agv_line_end_offset", "agv_line_start_offset");
-            for (var key : way.keySet()) {
-                if (!validTags.contains(key))
-                    addError(way, 6003, "Incorrect tag combination for agv pose");
-            }
-            break;
-        case GOAL_POSE:
-            if (way.keySet().size() > 2)
-                addError(way, 6003, "Incorrect tag number for goal pose");
-            if (!way.hasKey("line_info") || !way.hasKey("goal_id"))
-                addError(way, 6003, "Incorrect tag combination for goal pose");
-            break;
-        case MARKER_POSE:
-            if (way.keySet().size() > 4)
-                addError(way, 6003, "Incorrect tag number for marker pose");
-            if (!way.hasKey("line_info") || !way.hasKey("marker_group_id") ||
-                    !way.hasKey("marker_height") || !way.hasKey("marker_pitch_deg"))
-                addError(way, 6003, "Incorrect tag combination for marker pose");
-            break;
-        case ONEWAY:
-            var keys = way.keySet().size();
-            if (keys > 2) {
-                addError(way, 6003, "Incorrect tag number for oneway");
-            } else if (keys == 1) {
-                if (!way.hasKey("oneway"))
-                    addError(way, 6003, "Incorrect tag combination for oneway");
-            } else if (keys == 2) {
-                if (!way.hasKey("line_info") || !way.hasKey("oneway"))
-                    addError(way, 6003, "Incorrect tag combination for oneway");
-            }
-            break;
-        case ONEWAY_DIR:
-            if (way.keySet().size() > 1)
-                addError(way, 6003, "Incorrect tag number for oneway direction");
-            break;
-        }
+    private void checkWayTagCombination(Way way, List<TestError> found) {
+        var type = schema.getWayType(way);
+        if (type == TagSchema.WayType.UNKNOWN)
+            addError(found, way, 6003, "unknown way");
+        else
+            checkTypeRule(way, schema.getRule(type), found);
     }
 
     /**
-     * Get area type.
+     * Check for area tag combination.
      * @param way the way
-     * @return the area type
-     */
-    private AreaType getAreaType(Way way) {
-        for (var k : way.keySet()) {
-            if (k.equals("area_name")) {
-                var value = way.get(k);
-                if (value.equals("non stop"))
-                    return AreaType.NON_STOP;
-                else if (value.startsWith("park"))
-                    return AreaType.PARK;
-                else if (value.startsWith("warning"))
-                    return AreaType.SAFETY;
-                else if (value.startsWith("sync"))
-                    return AreaType.SYNC;
-            } else if (k.equals("non_stop_area")) {
-                return AreaType.NON_STOP;
-            } else if (k.equals("area_detect") || k.equals("space_id")) {
-                return AreaType.PARK;
-            } else if (k.equals("front_left_safety") || k.equals("front_right_safety") ||
-                    k.equals("side_left_safety") || k.equals("side_right_safety") ||
-                    k.equals("rear_left_safety") || k.equals("rear_right_safety")) {
-                return AreaType.SAFETY;
-            } else if (k.equals("sync_id") || k.equals("area_info")) {
-                return AreaType.SYNC;
-            } else if (k.equals("oneway")) {
-                return AreaType.ONEWAY;
-            }
-        }
-        if (way.hasKey("area_base") && way.get("area_base").equals("movable"))
-            return AreaType.MOVABLE;
-        return AreaType.UNKNOWN;
+     * @param found the list receiving the errors
+     */
+    private void checkAreaTagCombination(Way way, List<TestError> found) {
+        var type = schema.getAreaType(way);
+        if (type == TagSchema.AreaType.UNKNOWN)
+            addError(found, way, 6003, "unknown area");
+        else
+            checkTypeRule(way, schema.getRule(type), found);
     }
 
     /**
-     * Check for area tag combination.
+     * Check the tag number and combination of a way against the rule of its type.
      * @param way the way
+     * @param rule the rule
+     * @param found the list receiving the errors
      */
-    private void checkAreaTagCombination(Way way) {
-        switch (getAreaType(way)) {
-        case UNKNOWN:
-            addError(way, 6003, "unknown area");
-            break;
-        case MOVABLE:
-            break;
-        case NON_STOP:
-            if (way.keySet().size() > 3)
-                addError(way, 6003, "Incorrect tag number for non stop area");
-            if (!way.hasKey("area_base") || !way.hasKey("area_name") ||
-                    !way.hasKey("non_stop_area"))
-                addError(way, 6003, "Incorrect tag combination for non stop area");
-            break;
-        case PARK:
-            if (way.keySet().size() > 4)
-                addError(way, 6003, "Incorrect tag number for parking area");
-            if (!way.hasKey("area_base") || !way.hasKey("area_name") ||
-                    !way.hasKey("area_detect") || !way.hasKey("space_id"))
-                addError(way, 6003, "Incorrect tag combination for parking area");
-            break;
-        case SAFETY:
-            if (way.keySet().size() > 10)
-                addError(way, 6003, "Incorrect tag number for safety area");
-            if (!way.hasKey("area_base") || !way.hasKey("area_name"))
-                addError(way, 6003, "Incorrect tag combination for safety area");
-            break;
-        case SYNC:
-            if (way.keySet().size() > 4)
-                addError(way, 6003, "Incorrect tag number for sync area");
-            if (!way.hasKey("area_base") || !way.hasKey("area_name") ||
-                    !way.hasKey("sync_id") || !way.hasKey("area_info"))
-                addError(way, 6003, "Incorrect tag combination for sync area");
-            break;
-        case ONEWAY:
-            if (way.keySet().size() > 2)
-                addError(way, 6003, "Incorrect tag number for oneway area");
-            if (!way.hasKey("area_base") || !way.hasKey("oneway"))
-                addError(way, 6003, "Incorrect tag combination for oneway area");
-            break;
+    private void checkTypeRule(Way way, TagSchema.TypeRule rule, List<TestError> found) {
+        if (rule.maxTags >= 0 && way.getNumKeys() > rule.maxTags) {
+            addError(found, way, 6003, "Incorrect tag number for " + rule.label);
+            if (rule.maxExclusive)
+                return;
+        }
+        // one error for missing required tags, otherwise one for each tag that is not allowed
+        for (var key : rule.required) {
+            if (!way.hasKey(key)) {
+                addError(found, way, 6003, "Incorrect tag combination for " + rule.label);
+                return;
+            }
+        }
+        if (rule.allowed != null) {
+            for (var key : way.keySet()) {
+                if (!rule.allowed.contains(key))
+                    addError(found, way, 6003, "Incorrect tag combination for " + rule.label);
+            }
         }
     }
 
     /**
      * Check for way node combination.
      * @param primitive the primitive
+     * @param found the list receiving the errors
      */
-    private void checkWayNodeCombination(OsmPrimitive primitive) {
+    private void checkWayNodeCombination(OsmPrimitive primitive, List<TestError> found) {
         if (primitive instanceof Node) {
             var node = (Node)primitive;
             if (node.hasKey("agv_node_id")) {
                 var ways = node.getParentWays();
                 if (ways.size() != 1) {
-                    addError(node, 6004, "Node with agv_node_id must be part of 1 way");
+                    addError(found, node, 6004, "Node with agv_node_id must be part of 1 way");
                 } else {
                     var value = ways.get(0).get("line_info");
                     if (value == null || !value.equals("agv_pose"))
-                        addError(node, 6004, "Node with agv_node_id must be part of way with line_info=agv_pose");
+                        addError(found, node, 6004, "Node with agv_node_id must be part of way with line_info=agv_pose");
                 }
             }
         } else if (primitive instanceof Way) {
@@ -493,15 +653,15 @@ public class CustomTagTest extends Test {
                 if (value.equals("agv_pose")) {
                     var nodes = way.getNodes();
                     if (nodes.size() != 2)
-                        addError(way, 6004, "Way with line_info=agv_pose must have 2 nodes");
+                        addError(found, way, 6004, "Way with line_info=agv_pose must have 2 nodes");
                     var node0 = nodes.get(0);
                     var node1 = nodes.get(1);
                     if (!node0.hasKey("agv_node_id") || !node1.hasKey("agv_node_id"))
-                        addError(way, 6004, "Way with line_info=agv_pose must have nodes with agv_node_id");
+                        addError(found, way, 6004, "Way with line_info=agv_pose must have nodes with agv_node_id");
                 } else if (value.equals("goal_pose")) {
                     var nodes = way.getNodes();
                     if (nodes.size() != 2)
-                        addError(way, 6004, "Way with line_info=goal_pose must have 2 nodes");
+                        addError(found, way, 6004, "Way with line_info=goal_pose must have 2 nodes");
                 }
             }
         }
@@ -510,44 +670,124 @@ public class CustomTagTest extends Test {
     /**
      * Check for split way.
      * @param way the way
+     * @param found the list receiving the errors
      */
-    private void checkSplitWay(Way way) {
+    private void checkSplitWay(Way way, List<TestError> found) {
         var value = way.get("line_info");
         if (value != null && value.equals("\"\"")) {
             var oneway = way.get("oneway");
             if (oneway != null && (oneway.equals("yes") || oneway.equals("no"))) {
                 if (way.getNodesCount() != 2)
-                    addError(way, 6005, "Way with oneway must split");
+                    addError(found, way, 6005, "Way with oneway must split");
             }
         }
     }
 
     /**
      * Check for duplicate IDs.
-     * @param current the current primitive
-     * @param key the key
-     * @param other_primitives the other primitives
-     */
-    private void checkDuplicateTagValue(OsmPrimitive current, String key, Collection<? extends OsmPrimitive> other_primitives) {
-        var value = current.get(key);
-        if (value != null) {
-            var values = other_primitives.stream()
-                    .map(p -> p.get(key))
-                    .filter(v -> v != null)
-                    .collect(Collectors.toSet());
-            if (values.contains(value))
-                addError(current, 6006, "Duplicate tag:" + key + "=" + value);
+     * Builds a value index over the whole data set once and reports every duplicate group.
+     * @param ds the data set
+     * @param found the list receiving the errors
+     */
+    private void checkDuplicateTagValues(DataSet ds, List<TestError> found) {
+        var index = new TagValueIndex();
+        ds.getNodes().stream()
+                .filter(OsmPrimitive::isUsable)
+                .forEach(n -> index.add(n, NODE_UNIQUE_KEYS));
+        ds.getWays().stream()
+                .filter(OsmPrimitive::isUsable)
+                .forEach(w -> index.add(w, WAY_UNIQUE_KEYS));
+        index.forEachDuplicate((key, value, primitives) -> found.add(duplicateError(key, value, primitives)));
+    }
+
+    /**
+     * Fork-join task checking a range of primitives into its own error buffer.
+     */
+    private class CheckTask extends RecursiveTask<List<TestError>> {
+
+        /**
+         * The primitives.
+         */
+        private final List<OsmPrimitive> primitives;
+
+        /**
+         * The first index of the range (inclusive).
+         */
+        private final int from;
+
+        /**
+         * The last index of the range (exclusive).
+         */
+        private final int to;
+
+        /**
+         * Constructs a new {@code CheckTask}.
+         * @param primitives the primitives
+         * @param from the first index of the range (inclusive)
+         * @param to the last index of the range (exclusive)
+         */
+        CheckTask(List<OsmPrimitive> primitives, int from, int to) {
+            this.primitives = primitives;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<TestError> compute() {
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                var startBytes = ValidationStatistics.allocatedBytes();
+                var start = System.nanoTime();
+                var found = new ArrayList<TestError>();
+                for (var i = from; i < to; ++i)
+                    check(primitives.get(i), found);
+                primitiveStats.record(start, to - from, found.size());
+                primitiveStats.recordBytes(startBytes);
+                return found;
+            }
+            var mid = (from + to) >>> 1;
+            var left = new CheckTask(primitives, from, mid);
+            left.fork();
+            var right = new CheckTask(primitives, mid, to).compute();
+            var found = left.join();
+            found.addAll(right);
+            return found;
         }
     }
 
+    /**
+     * Creates the error for a group of primitives sharing an ID value.
+     * @param key the key
+     * @param value the duplicated value
+     * @param primitives the primitives sharing the value
+     * @return the error
+     */
+    TestError duplicateError(String key, String value, Collection<? extends OsmPrimitive> primitives) {
+        return error(6006, "Duplicate tag:" + key + "=" + value, primitives);
+    }
+
+    /**
+     * Creates an error involving several primitives.
+     * @param number the error number
+     * @param message the error message
+     * @param primitives the primitives
+     * @return the error
+     */
+    TestError error(int number, String message, Collection<? extends OsmPrimitive> primitives) {
+        return TestError.builder(this, Severity.ERROR, number)
+                .message(message)
+                .primitives(primitives)
+                .build();
+    }
+
     /**
      * Add an error.
+     * @param found the list receiving the error
      * @param primitive the primitive
      * @param number the error number
      * @param message the error message
      */
-    private void addError(OsmPrimitive primitive, int number, String message) {
-        errors.add(TestError.builder(this, Severity.ERROR, number)
+    private void addError(List<TestError> found, OsmPrimitive primitive, int number, String message) {
+        found.add(TestError.builder(this, Severity.ERROR, number)
                 .message(message)
                 .primitives(primitive)
                 .build());
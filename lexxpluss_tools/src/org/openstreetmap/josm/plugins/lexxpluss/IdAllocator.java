@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+
+/**
+ * Index of the LexxPluss IDs used in a data set, kept up to date by data set events.
+ * Deleted primitives and values that are not integers are not indexed.
+ * Changes made inside a data set update are seen when the update ends.
+ */
+class IdAllocator implements DataSetListener {
+
+    /**
+     * Node keys holding IDs.
+     */
+    static final List<String> NODE_KEYS = List.of(
+            "agv_node_id",
+            "intermediate_goal_id");
+
+    /**
+     * Way keys holding IDs.
+     */
+    static final List<String> WAY_KEYS = List.of(
+            "goal_id",
+            "space_id",
+            "sync_id");
+
+    /**
+     * The used values of one key.
+     */
+    private static final class KeyIndex {
+
+        /**
+         * The number of primitives by value.
+         */
+        final Map<Integer, Integer> counts = new HashMap<>();
+
+        /**
+         * The maximum value, or -1 if no value is used.
+         */
+        int max = -1;
+
+        /**
+         * Whether {@link #max} is up to date.
+         */
+        boolean maxValid = true;
+
+        /**
+         * Adds a value.
+         * @param value the value
+         */
+        void add(int value) {
+            counts.merge(value, 1, Integer::sum);
+            if (maxValid && value > max)
+                max = value;
+        }
+
+        /**
+         * Removes a value.
+         * @param value the value
+         */
+        void remove(int value) {
+            var count = counts.get(value);
+            if (count == null)
+                return;
+            if (count > 1) {
+                counts.put(value, count - 1);
+            } else {
+                counts.remove(value);
+                // the maximum is searched again only when it is asked for
+                if (value == max)
+                    maxValid = false;
+            }
+        }
+
+        /**
+         * Returns the maximum value.
+         * @return the maximum value, or -1 if no value is used
+         */
+        int getMax() {
+            if (!maxValid) {
+                max = counts.keySet().stream().reduce(-1, Integer::max);
+                maxValid = true;
+            }
+            return max;
+        }
+    }
+
+    /**
+     * The allocators by data set. An allocator is kept alive by the data set it listens to.
+     */
+    private static final Map<DataSet, WeakReference<IdAllocator>> allocators = new WeakHashMap<>();
+
+    /**
+     * The used values by key.
+     */
+    private final Map<String, KeyIndex> indexes = new HashMap<>();
+
+    /**
+     * The indexed IDs by primitive, in the order of {@link #NODE_KEYS} or {@link #WAY_KEYS}.
+     * Only primitives with at least one ID are kept. Updates compare the current tags with these
+     * values, so replaying several events of one primitive counts its IDs once.
+     */
+    private final Map<OsmPrimitive, Integer[]> indexed = new HashMap<>();
+
+    /**
+     * The data set.
+     */
+    private final DataSet ds;
+
+    /**
+     * Constructs a new {@code IdAllocator} and indexes the data set.
+     * @param ds the data set
+     */
+    private IdAllocator(DataSet ds) {
+        this.ds = ds;
+        rebuild();
+    }
+
+    /**
+     * Returns the allocator of a data set, creating it if necessary.
+     * @param ds the data set
+     * @return the allocator
+     */
+    static synchronized IdAllocator get(DataSet ds) {
+        var ref = allocators.get(ds);
+        var allocator = ref != null ? ref.get() : null;
+        if (allocator == null) {
+            allocator = new IdAllocator(ds);
+            ds.addDataSetListener(allocator);
+            allocators.put(ds, new WeakReference<>(allocator));
+        }
+        return allocator;
+    }
+
+    /**
+     * Returns whether a key is indexed.
+     * @param key the key
+     * @return {@code true} if the key is one of {@link #NODE_KEYS} or {@link #WAY_KEYS}
+     */
+    static boolean isIndexed(String key) {
+        return NODE_KEYS.contains(key) || WAY_KEYS.contains(key);
+    }
+
+    /**
+     * Returns the maximum value of a key.
+     * @param key the key, one of {@link #NODE_KEYS} or {@link #WAY_KEYS}
+     * @return the maximum value, or -1 if no value is used
+     */
+    synchronized int getMaxId(String key) {
+        var index = indexes.get(key);
+        return index != null ? index.getMax() : -1;
+    }
+
+    /**
+     * Returns the next free value of a key.
+     * @param key the key, one of {@link #NODE_KEYS} or {@link #WAY_KEYS}
+     * @return the maximum value plus one
+     */
+    int nextId(String key) {
+        return getMaxId(key) + 1;
+    }
+
+    /**
+     * Returns whether a value of a key is used.
+     * @param key the key, one of {@link #NODE_KEYS} or {@link #WAY_KEYS}
+     * @param value the value
+     * @return {@code true} if a primitive has the value
+     */
+    synchronized boolean isUsed(String key, int value) {
+        var index = indexes.get(key);
+        return index != null && index.counts.containsKey(value);
+    }
+
+    /**
+     * Parses an ID value.
+     * @param value the value, may be {@code null}
+     * @return the ID, or {@code null} if the value is not an integer
+     */
+    static Integer parseId(String value) {
+        if (value == null)
+            return null;
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indexes the whole data set again.
+     */
+    private synchronized void rebuild() {
+        indexes.clear();
+        indexed.clear();
+        NODE_KEYS.forEach(k -> indexes.put(k, new KeyIndex()));
+        WAY_KEYS.forEach(k -> indexes.put(k, new KeyIndex()));
+        ds.getNodes().forEach(this::update);
+        ds.getWays().forEach(this::update);
+    }
+
+    /**
+     * Brings the IDs of a primitive up to date with its current tags.
+     * Deleted primitives and primitives no longer in the data set have no IDs.
+     * @param primitive the primitive
+     */
+    private void update(OsmPrimitive primitive) {
+        List<String> keys;
+        if (primitive instanceof Node)
+            keys = NODE_KEYS;
+        else if (primitive instanceof Way)
+            keys = WAY_KEYS;
+        else
+            return;
+        Integer[] current = null;
+        if (!primitive.isDeleted() && primitive.getDataSet() == ds) {
+            for (var i = 0; i < keys.size(); ++i) {
+                var id = parseId(primitive.get(keys.get(i)));
+                if (id == null)
+                    continue;
+                if (current == null)
+                    current = new Integer[keys.size()];
+                current[i] = id;
+            }
+        }
+        var previous = current != null ? indexed.put(primitive, current) : indexed.remove(primitive);
+        if (previous == null && current == null)
+            return;
+        for (var i = 0; i < keys.size(); ++i) {
+            var from = previous != null ? previous[i] : null;
+            var to = current != null ? current[i] : null;
+            if (Objects.equals(from, to))
+                continue;
+            var index = indexes.get(keys.get(i));
+            if (from != null)
+                index.remove(from);
+            if (to != null)
+                index.add(to);
+        }
+    }
+
+    /**
+     * Brings the IDs of primitives up to date.
+     * @param primitives the primitives
+     */
+    private synchronized void update(Collection<? extends OsmPrimitive> primitives) {
+        primitives.forEach(this::update);
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        update(event.getPrimitives());
+    }
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        // fired when a primitive is marked deleted, or when it is purged from the data set
+        update(event.getPrimitives());
+    }
+
+    @Override
+    public synchronized void tagsChanged(TagsChangedEvent event) {
+        update(event.getPrimitive());
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        // IDs do not depend on positions
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        // IDs do not depend on way nodes
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        // relations carry no IDs
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        // no IDs involved
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        var events = event.getEvents();
+        if (events == null)
+            rebuild();
+        else
+            events.forEach(e -> e.fire(this));
+    }
+}
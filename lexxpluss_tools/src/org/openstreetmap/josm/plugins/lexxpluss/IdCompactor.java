@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.openstreetmap.josm.command.ChangePropertyCommand;
+import org.openstreetmap.josm.command.Command;
+import org.openstreetmap.josm.command.SequenceCommand;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+
+/**
+ * Compaction of the LexxPluss IDs of a data set into dense ranges starting at 0.
+ * The order of the IDs is kept, so the lowest ID becomes 0, the next one 1 and so on.
+ * With global IDs enabled the ranges start above the IDs of the other open layers and the site maps,
+ * so the compacted IDs do not clash with them.
+ * Primitives sharing an ID keep sharing the new ID. Values that are not non-negative
+ * integers are left unchanged.
+ */
+class IdCompactor {
+
+    /**
+     * The new IDs by old ID, by key.
+     */
+    private final Map<String, Map<Integer, Integer>> mappings = new LinkedHashMap<>();
+
+    /**
+     * The first new ID by key.
+     */
+    private final Map<String, Integer> firstIds = new HashMap<>();
+
+    /**
+     * The new tags by primitive.
+     */
+    private final Map<OsmPrimitive, Map<String, String>> changes = new LinkedHashMap<>();
+
+    /**
+     * Computes the compaction of a data set.
+     * @param ds the data set
+     */
+    IdCompactor(DataSet ds) {
+        var global = ToolsSettings.getGlobalIds();
+        for (var key : IdAllocator.NODE_KEYS)
+            compact(ds.getNodes(), key, global ? IdRegistry.getOtherMaxId(ds, key) + 1 : 0);
+        for (var key : IdAllocator.WAY_KEYS)
+            compact(ds.getWays(), key, global ? IdRegistry.getOtherMaxId(ds, key) + 1 : 0);
+    }
+
+    /**
+     * Computes the compaction of one key.
+     * @param primitives the nodes or ways
+     * @param key the key
+     * @param firstId the first new ID
+     */
+    private void compact(Iterable<? extends OsmPrimitive> primitives, String key, int firstId) {
+        var holders = new ArrayList<OsmPrimitive>();
+        var ids = new ArrayList<Integer>();
+        var max = -1;
+        for (var p : primitives) {
+            if (p.isDeleted())
+                continue;
+            var id = IdAllocator.parseId(p.get(key));
+            if (id == null || id < 0)
+                continue;
+            holders.add(p);
+            ids.add(id);
+            max = Math.max(max, id);
+        }
+        var mapping = rank(ids, max, firstId);
+        mappings.put(key, mapping);
+        firstIds.put(key, firstId);
+        for (var i = 0; i < holders.size(); ++i) {
+            var p = holders.get(i);
+            var oldId = ids.get(i);
+            var newId = mapping.get(oldId);
+            if (newId.equals(oldId))
+                continue;
+            var tags = changes.computeIfAbsent(p, x -> new LinkedHashMap<>());
+            tags.put(key, Integer.toString(newId));
+            var prefix = areaNamePrefix(key);
+            if (prefix != null && (prefix + oldId).equals(p.get("area_name")))
+                tags.put("area_name", prefix + newId);
+        }
+    }
+
+    /**
+     * Maps the distinct IDs to their rank added to the first new ID.
+     * The IDs are ordered by a bit set when they are dense enough, otherwise by sorting.
+     * @param ids the IDs
+     * @param max the maximum ID
+     * @param firstId the first new ID
+     * @return the new ID by ID
+     */
+    private static Map<Integer, Integer> rank(List<Integer> ids, int max, int firstId) {
+        var mapping = new HashMap<Integer, Integer>();
+        if (max < 0)
+            return mapping;
+        if (max <= 16L * ids.size() + 1024) {
+            var used = new BitSet(max + 1);
+            ids.forEach(used::set);
+            var rank = firstId;
+            for (var id = used.nextSetBit(0); id >= 0; id = used.nextSetBit(id + 1))
+                mapping.put(id, rank++);
+        } else {
+            var sorted = ids.stream().mapToInt(Integer::intValue).distinct().toArray();
+            Arrays.sort(sorted);
+            for (var i = 0; i < sorted.length; ++i)
+                mapping.put(sorted[i], firstId + i);
+        }
+        return mapping;
+    }
+
+    /**
+     * Returns the prefix of the area name derived from an ID.
+     * @param key the key
+     * @return "park" for space_id, "sync" for sync_id, otherwise {@code null}
+     */
+    private static String areaNamePrefix(String key) {
+        if (key.equals("space_id"))
+            return "park";
+        if (key.equals("sync_id"))
+            return "sync";
+        return null;
+    }
+
+    /**
+     * Returns whether any ID changes.
+     * @return {@code true} if the IDs are not compact
+     */
+    boolean hasChanges() {
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Creates the command changing the IDs.
+     * @return the command, or {@code null} if no ID changes
+     */
+    Command createCommand() {
+        if (changes.isEmpty())
+            return null;
+        var cmds = new ArrayList<Command>(changes.size());
+        changes.forEach((p, tags) -> cmds.add(new ChangePropertyCommand(List.of(p), tags)));
+        return new SequenceCommand("Compact IDs", cmds);
+    }
+
+    /**
+     * Writes the mapping as CSV with the columns key, old ID and new ID.
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    void writeMapping(File file) throws IOException {
+        try (var out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            out.println("key,old,new");
+            mappings.forEach((key, mapping) -> {
+                // the new IDs are the ranks 0..n-1 added to the first new ID, so inverting the mapping orders the old IDs
+                var firstId = firstIds.get(key);
+                var oldIds = new int[mapping.size()];
+                mapping.forEach((oldId, newId) -> oldIds[newId - firstId] = oldId);
+                for (var i = 0; i < oldIds.length; ++i)
+                    out.println(key + "," + oldIds[i] + "," + (firstId + i));
+            });
+        }
+    }
+}
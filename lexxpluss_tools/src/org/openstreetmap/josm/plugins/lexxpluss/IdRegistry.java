@@ -0,0 +1,397 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import org.openstreetmap.josm.actions.ExtensionFileFilter;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.io.importexport.OsmImporter;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Registry of the LexxPluss IDs of all open data layers and of the maps in the site map folder,
+ * for sites whose floors or zones are edited as separate maps and merged later.
+ * The layers are looked up in their {@link IdAllocator}. The maps in the folder are scanned in the
+ * background, a lookup uses the last finished scan and starts the next one, so the EDT does not wait for
+ * the disk except for the first scan of a folder. A scan reads a map again only when it changed.
+ * Maps open in a layer are taken from the layer.
+ */
+final class IdRegistry {
+
+    /**
+     * Lookup of the other uses of the IDs of a data set.
+     */
+    @FunctionalInterface
+    interface OtherUses {
+
+        /**
+         * Returns where else an ID is used.
+         * @param key the key
+         * @param value the ID
+         * @return the names of the other layers and site maps using the ID, empty if none
+         */
+        List<String> find(String key, int value);
+    }
+
+    /**
+     * The IDs of a map file.
+     */
+    private static final class FileIndex {
+
+        /**
+         * The modification time of the file when it was read.
+         */
+        final long modified;
+
+        /**
+         * The size of the file when it was read.
+         */
+        final long size;
+
+        /**
+         * The used IDs by key.
+         */
+        final Map<String, Set<Integer>> ids = new HashMap<>();
+
+        /**
+         * The maximum ID by key.
+         */
+        final Map<String, Integer> max = new HashMap<>();
+
+        /**
+         * Constructs a new {@code FileIndex}.
+         * @param file the map file
+         */
+        FileIndex(File file) {
+            modified = file.lastModified();
+            size = file.length();
+        }
+
+        /**
+         * Adds an ID.
+         * @param key the key
+         * @param id the ID
+         */
+        void add(String key, int id) {
+            ids.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+            max.merge(key, id, Integer::max);
+        }
+    }
+
+    /**
+     * The IDs of the maps in the site map folder by file, only used by the scanner thread.
+     */
+    private static final Map<File, FileIndex> files = new HashMap<>();
+
+    /**
+     * The thread scanning the site map folder.
+     */
+    private static final ExecutorService scanner = Executors.newSingleThreadExecutor(
+            Utils.newThreadFactory("lexxpluss-site-maps-%d", Thread.NORM_PRIORITY));
+
+    /**
+     * The site map folder of the scans, or {@code null}.
+     */
+    private static File scannedFolder = null;
+
+    /**
+     * The IDs by file of the last finished scan, or {@code null} before the first scan of the folder.
+     */
+    private static Map<File, FileIndex> scanned = null;
+
+    /**
+     * The running scan, or {@code null}.
+     */
+    private static Future<Map<File, FileIndex>> scan = null;
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private IdRegistry() {
+    }
+
+    /**
+     * Returns the maximum value of an ID key over a data set, the other open layers and the site maps.
+     * @param ds the data set
+     * @param key the key, one of {@link IdAllocator#NODE_KEYS} or {@link IdAllocator#WAY_KEYS}
+     * @return the maximum value, or -1 if no value is used
+     */
+    static synchronized int getMaxId(DataSet ds, String key) {
+        return Math.max(IdAllocator.get(ds).getMaxId(key), getOtherMaxId(ds, key));
+    }
+
+    /**
+     * Returns the maximum value of an ID key over the other open layers and the site maps, without the data set.
+     * @param ds the data set
+     * @param key the key, one of {@link IdAllocator#NODE_KEYS} or {@link IdAllocator#WAY_KEYS}
+     * @return the maximum value, or -1 if no value is used
+     */
+    static synchronized int getOtherMaxId(DataSet ds, String key) {
+        var max = -1;
+        for (var other : getOtherDataSets(ds).keySet())
+            max = Math.max(max, IdAllocator.get(other).getMaxId(key));
+        for (var index : getSiteMaps().values())
+            max = Math.max(max, index.max.getOrDefault(key, -1));
+        return max;
+    }
+
+    /**
+     * Returns the check looking up the other uses of IDs of a data set.
+     * The layers and site maps are collected once, so the check only does hash lookups.
+     * @param ds the data set holding the IDs
+     * @return the check, taking the key and the ID and returning the other uses
+     */
+    static synchronized OtherUses otherUses(DataSet ds) {
+        var others = getOtherDataSets(ds);
+        var siteMaps = getSiteMaps();
+        return (key, value) -> findOtherUses(others, siteMaps, key, value);
+    }
+
+    /**
+     * Returns where else an ID is used.
+     * @param others the layer names by other data set
+     * @param siteMaps the site maps
+     * @param key the key
+     * @param value the ID
+     * @return the names of the other layers and site maps using the ID, empty if none
+     */
+    private static List<String> findOtherUses(Map<DataSet, String> others, Map<File, FileIndex> siteMaps,
+            String key, int value) {
+        var result = new ArrayList<String>();
+        others.forEach((other, name) -> {
+            if (IdAllocator.get(other).isUsed(key, value))
+                result.add(name);
+        });
+        siteMaps.forEach((file, index) -> {
+            var ids = index.ids.get(key);
+            if (ids != null && ids.contains(value))
+                result.add(file.getName());
+        });
+        return result;
+    }
+
+    /**
+     * Returns the data sets of the open data layers other than a data set.
+     * @param ds the data set
+     * @return the layer names by other data set
+     */
+    private static Map<DataSet, String> getOtherDataSets(DataSet ds) {
+        var result = new LinkedHashMap<DataSet, String>();
+        if (MainApplication.getLayerManager() == null)
+            return result;
+        for (var layer : MainApplication.getLayerManager().getLayersOfType(OsmDataLayer.class)) {
+            var other = layer.getDataSet();
+            if (other != ds)
+                result.putIfAbsent(other, layer.getName());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs of the maps in the site map folder that are not open in a layer.
+     * The IDs are those of the last finished scan, the next scan is started in the background.
+     * @return the IDs by file
+     */
+    private static Map<File, FileIndex> getSiteMaps() {
+        var result = new HashMap<File, FileIndex>();
+        var folderName = ToolsSettings.getSiteMapFolder();
+        if (folderName.isEmpty())
+            return result;
+        var folder = new File(folderName).getAbsoluteFile();
+        if (!folder.equals(scannedFolder)) {
+            scannedFolder = folder;
+            scanned = null;
+            scan = null;
+        }
+        if (scan != null && scan.isDone()) {
+            scanned = getScan(scan);
+            scan = null;
+        }
+        if (scan == null)
+            scan = scanner.submit(() -> scan(folder));
+        if (scanned == null) {
+            // without a previous scan the IDs of the folder are not known yet
+            scanned = getScan(scan);
+            scan = null;
+        }
+        var open = new HashSet<File>();
+        if (MainApplication.getLayerManager() != null) {
+            for (var layer : MainApplication.getLayerManager().getLayersOfType(OsmDataLayer.class)) {
+                if (layer.getAssociatedFile() != null)
+                    open.add(layer.getAssociatedFile().getAbsoluteFile());
+            }
+        }
+        scanned.forEach((file, index) -> {
+            if (!open.contains(file))
+                result.put(file, index);
+        });
+        return result;
+    }
+
+    /**
+     * Waits for a scan of the site map folder.
+     * @param scan the scan
+     * @return the IDs by file, empty if the scan failed
+     */
+    private static Map<File, FileIndex> getScan(Future<Map<File, FileIndex>> scan) {
+        try {
+            return scan.get();
+        } catch (ExecutionException e) {
+            Logging.log(Level.WARNING, "Could not scan the site map folder.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Map.of();
+    }
+
+    /**
+     * Scans the site map folder, running on the scanner thread.
+     * The maps that did not change since the last scan are not read again.
+     * @param folder the site map folder
+     * @return the IDs by file
+     */
+    private static Map<File, FileIndex> scan(File folder) {
+        var result = new HashMap<File, FileIndex>();
+        var list = folder.listFiles(f -> f.isFile() && isSiteMap(f.getName()));
+        if (list == null)
+            return result;
+        files.keySet().retainAll(List.of(list));
+        for (var file : list) {
+            var index = files.get(file);
+            if (index == null || index.modified != file.lastModified() || index.size != file.length()) {
+                index = file.getName().toLowerCase(Locale.ROOT).endsWith(".lxb") ? readBinary(file) : read(file);
+                files.put(file, index);
+            }
+            result.put(file, index);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether a file is a site map, an OSM file, also compressed, or a LexxPluss binary map.
+     * @param name the file name
+     * @return {@code true} for *.osm, *.osm.gz, *.osm.bz2, *.osm.xz, *.osm.zip and *.lxb
+     */
+    static boolean isSiteMap(String name) {
+        var lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".lxb"))
+            return true;
+        var compression = Compression.byExtension(lower);
+        if (compression != Compression.NONE)
+            lower = lower.substring(0, lower.lastIndexOf('.'));
+        return lower.endsWith(".osm");
+    }
+
+    /**
+     * Reads the IDs of a LexxPluss binary map with the importer registered for it.
+     * Deleted primitives are skipped.
+     * @param file the map file
+     * @return the IDs, empty if no importer is installed or the file cannot be read
+     */
+    private static FileIndex readBinary(File file) {
+        var index = new FileIndex(file);
+        for (var importer : ExtensionFileFilter.getImporters()) {
+            if (!(importer instanceof OsmImporter) || !importer.acceptFile(file))
+                continue;
+            try (var in = new FileInputStream(file)) {
+                var ds = ((OsmImporter) importer).loadLayer(in, file, file.getName(), NullProgressMonitor.INSTANCE)
+                        .getLayer().getDataSet();
+                addIds(index, ds.getNodes(), IdAllocator.NODE_KEYS);
+                addIds(index, ds.getWays(), IdAllocator.WAY_KEYS);
+            } catch (IOException | IllegalDataException e) {
+                Logging.log(Level.WARNING, "Could not read site map " + file + ".", e);
+            }
+            return index;
+        }
+        Logging.warn("No importer for site map " + file + ", the LexxPluss importer plugin is needed.");
+        return index;
+    }
+
+    /**
+     * Adds the IDs of primitives that are not deleted.
+     * @param index the IDs of the map
+     * @param primitives the nodes or ways
+     * @param keys the ID keys of the primitives
+     */
+    private static void addIds(FileIndex index, Iterable<? extends OsmPrimitive> primitives, List<String> keys) {
+        for (var p : primitives) {
+            if (p.isDeleted())
+                continue;
+            for (var key : keys) {
+                var id = IdAllocator.parseId(p.get(key));
+                if (id != null)
+                    index.add(key, id);
+            }
+        }
+    }
+
+    /**
+     * Reads the IDs of a map file, also compressed.
+     * Only the tags are read, deleted primitives are skipped.
+     * @param file the map file
+     * @return the IDs, empty if the file cannot be read
+     */
+    private static FileIndex read(File file) {
+        var index = new FileIndex(file);
+        try (var in = Compression.getUncompressedFileInputStream(file)) {
+            var factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            var parser = factory.createXMLStreamReader(in);
+            List<String> keys = null;
+            var deleted = false;
+            while (parser.hasNext()) {
+                var event = parser.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    var name = parser.getLocalName();
+                    if (name.equals("node") || name.equals("way")) {
+                        keys = name.equals("node") ? IdAllocator.NODE_KEYS : IdAllocator.WAY_KEYS;
+                        deleted = "delete".equals(parser.getAttributeValue(null, "action"));
+                    } else if (name.equals("tag") && keys != null && !deleted) {
+                        var key = parser.getAttributeValue(null, "k");
+                        if (keys.contains(key)) {
+                            var id = IdAllocator.parseId(parser.getAttributeValue(null, "v"));
+                            if (id != null)
+                                index.add(key, id);
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    var name = parser.getLocalName();
+                    if (name.equals("node") || name.equals("way"))
+                        keys = null;
+                }
+            }
+        } catch (IOException | XMLStreamException e) {
+            Logging.log(Level.WARNING, "Could not read site map " + file + ".", e);
+        }
+        return index;
+    }
+}
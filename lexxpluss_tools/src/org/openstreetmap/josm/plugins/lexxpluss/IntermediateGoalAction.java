@@ -37,10 +37,10 @@ public class IntermediateGoalAction extends JosmAction {
         var ds = getLayerManager().getEditDataSet();
         var way = ds.getLastSelectedWay();
         Collection<Command> cmds = new LinkedList<>();
-        cmds.add(new ChangePropertyCommand(way, "line_info", "\"\""));
-        cmds.add(new ChangePropertyCommand(way, "oneway", "yes"));
+        TagSchema.getInstance().getTemplate(TagSchema.WayType.ONEWAY)
+                .forEach((k, v) -> cmds.add(new ChangePropertyCommand(way, k, v)));
         var nodes = way.getNodes();
-        var max = ToolsPlugin.getMaxId(ds.getNodes(), "intermediate_goal_id");
+        var max = ToolsPlugin.getMaxId(ds, "intermediate_goal_id");
         var key = "intermediate_goal_id";
         for (var n : nodes) {
             if (!n.hasKey(key))
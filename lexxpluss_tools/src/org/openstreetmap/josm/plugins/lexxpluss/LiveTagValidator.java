@@ -0,0 +1,366 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.swing.SwingUtilities;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.ValidatorLayer;
+
+/**
+ * Incremental LexxPluss tag validation driven by data set events.
+ * Keeps a persistent error model and re-checks only the primitives affected by an edit.
+ */
+class LiveTagValidator implements DataSetListener {
+
+    /**
+     * The test providing the checks.
+     */
+    private final CustomTagTest test = new CustomTagTest();
+
+    /**
+     * The observed data set.
+     */
+    private DataSet dataSet = null;
+
+    /**
+     * The per-primitive errors.
+     */
+    private final Map<OsmPrimitive, List<TestError>> primitiveErrors = new HashMap<>();
+
+    /**
+     * The duplicate errors by key and value.
+     */
+    private final Map<String, TestError> duplicateErrors = new LinkedHashMap<>();
+
+    /**
+     * The ID values of the observed data set.
+     */
+    private final TagValueIndex ids = new TagValueIndex();
+
+    /**
+     * The last known nodes of each way, used to re-check nodes removed from a way.
+     */
+    private final Map<Way, List<Node>> wayNodes = new HashMap<>();
+
+    /**
+     * The primitives to re-check.
+     */
+    private final Set<OsmPrimitive> dirtyPrimitives = new LinkedHashSet<>();
+
+    /**
+     * The ID key and value pairs whose duplicate state must be re-evaluated.
+     */
+    private final Set<String> dirtyIds = new LinkedHashSet<>();
+
+    /**
+     * Whether a flush is already scheduled.
+     */
+    private boolean flushScheduled = false;
+
+    /**
+     * Starts observing a data set.
+     * @param ds the data set
+     */
+    void attach(DataSet ds) {
+        detach();
+        dataSet = ds;
+        rebuild();
+        dataSet.addDataSetListener(this);
+    }
+
+    /**
+     * Stops observing the current data set and clears the error model.
+     */
+    void detach() {
+        if (dataSet != null)
+            dataSet.removeDataSetListener(this);
+        dataSet = null;
+        clearModel();
+        publish();
+    }
+
+    /**
+     * Re-checks the observed data set with the current tag schema.
+     */
+    void schemaChanged() {
+        test.updateSchema();
+        if (dataSet != null)
+            rebuild();
+    }
+
+    /**
+     * Returns the observed data set.
+     * @return the data set, or {@code null}
+     */
+    DataSet getDataSet() {
+        return dataSet;
+    }
+
+    /**
+     * Returns the current errors.
+     * @return the errors
+     */
+    List<TestError> getErrors() {
+        var result = new ArrayList<TestError>();
+        primitiveErrors.values().forEach(result::addAll);
+        result.addAll(duplicateErrors.values());
+        return result;
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        var primitive = event.getPrimitive();
+        var original = event.getOriginalKeys();
+        for (var key : uniqueKeys(primitive)) {
+            var oldValue = original.get(key);
+            var newValue = primitive.get(key);
+            if (oldValue != null && oldValue.equals(newValue))
+                continue;
+            if (oldValue != null) {
+                ids.remove(primitive, key, oldValue);
+                dirtyIds.add(idKey(key, oldValue));
+            }
+            if (newValue != null) {
+                ids.add(primitive, key, newValue);
+                dirtyIds.add(idKey(key, newValue));
+            }
+        }
+        markDirty(primitive);
+        scheduleFlush();
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        for (var primitive : event.getPrimitives()) {
+            if (primitive instanceof Node || primitive instanceof Way) {
+                indexIds((OsmPrimitive)primitive);
+                markDirty((OsmPrimitive)primitive);
+            }
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        for (var primitive : event.getPrimitives()) {
+            if (primitive instanceof Node || primitive instanceof Way) {
+                var p = (OsmPrimitive)primitive;
+                for (var key : uniqueKeys(p)) {
+                    var value = p.get(key);
+                    if (value != null) {
+                        ids.remove(p, key, value);
+                        dirtyIds.add(idKey(key, value));
+                    }
+                }
+                markDirty(p);
+            }
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        markDirty(event.getChangedWay());
+        scheduleFlush();
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        var events = event.getEvents();
+        if (events == null) {
+            rebuild();
+            return;
+        }
+        events.forEach(e -> e.fire(this));
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        // tag checks do not depend on node positions
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        // relations are not used by LexxPluss
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        // nothing to re-check
+    }
+
+    /**
+     * Re-checks the whole data set.
+     */
+    private void rebuild() {
+        clearModel();
+        dataSet.getNodes().forEach(n -> {
+            indexIds(n);
+            dirtyPrimitives.add(n);
+        });
+        dataSet.getWays().forEach(w -> {
+            indexIds(w);
+            dirtyPrimitives.add(w);
+        });
+        flush();
+    }
+
+    /**
+     * Clears the error model.
+     */
+    private void clearModel() {
+        primitiveErrors.clear();
+        duplicateErrors.clear();
+        ids.clear();
+        wayNodes.clear();
+        dirtyPrimitives.clear();
+        dirtyIds.clear();
+    }
+
+    /**
+     * Adds the ID values of a primitive to the index.
+     * @param primitive the primitive
+     */
+    private void indexIds(OsmPrimitive primitive) {
+        for (var key : uniqueKeys(primitive)) {
+            var value = primitive.get(key);
+            if (value != null) {
+                ids.add(primitive, key, value);
+                dirtyIds.add(idKey(key, value));
+            }
+        }
+    }
+
+    /**
+     * Marks a primitive and the primitives whose checks depend on it for re-checking.
+     * @param primitive the primitive
+     */
+    private void markDirty(OsmPrimitive primitive) {
+        dirtyPrimitives.add(primitive);
+        if (primitive instanceof Node) {
+            dirtyPrimitives.addAll(((Node)primitive).getParentWays());
+        } else if (primitive instanceof Way) {
+            var way = (Way)primitive;
+            dirtyPrimitives.addAll(way.getNodes());
+            var previous = wayNodes.get(way);
+            if (previous != null)
+                dirtyPrimitives.addAll(previous);
+        }
+    }
+
+    /**
+     * Schedules a flush on the event dispatch thread, coalescing bursts of events.
+     */
+    private void scheduleFlush() {
+        if (flushScheduled)
+            return;
+        flushScheduled = true;
+        SwingUtilities.invokeLater(() -> {
+            flushScheduled = false;
+            if (dataSet != null)
+                flush();
+        });
+    }
+
+    /**
+     * Re-checks the dirty primitives and IDs and publishes the error model.
+     */
+    private void flush() {
+        for (var primitive : dirtyPrimitives) {
+            if (!primitive.isUsable() || primitive.getDataSet() != dataSet) {
+                primitiveErrors.remove(primitive);
+                wayNodes.remove(primitive);
+                continue;
+            }
+            var found = test.checkPrimitive(primitive);
+            if (found.isEmpty())
+                primitiveErrors.remove(primitive);
+            else
+                primitiveErrors.put(primitive, found);
+            if (primitive instanceof Way)
+                wayNodes.put((Way)primitive, ((Way)primitive).getNodes());
+        }
+        dirtyPrimitives.clear();
+        for (var id : dirtyIds) {
+            var separator = id.indexOf('=');
+            var key = id.substring(0, separator);
+            var value = id.substring(separator + 1);
+            var primitives = ids.get(key, value).stream()
+                    .filter(OsmPrimitive::isUsable)
+                    .collect(Collectors.toList());
+            if (primitives.size() > 1)
+                duplicateErrors.put(id, test.duplicateError(key, value, primitives));
+            else
+                duplicateErrors.remove(id);
+        }
+        dirtyIds.clear();
+        publish();
+    }
+
+    /**
+     * Replaces the LexxPluss errors shown in the validator dialog with the current model.
+     */
+    private void publish() {
+        var map = MainApplication.getMap();
+        if (map == null || map.validatorDialog == null)
+            return;
+        var tree = map.validatorDialog.tree;
+        var shown = tree.getErrors().stream()
+                .filter(e -> !(e.getTester() instanceof CustomTagTest))
+                .collect(Collectors.toList());
+        shown.addAll(getErrors());
+        tree.setErrors(shown);
+        MainApplication.getLayerManager().getLayersOfType(ValidatorLayer.class)
+                .forEach(ValidatorLayer::invalidate);
+    }
+
+    /**
+     * Returns the keys that must be unique for the type of a primitive.
+     * @param primitive the primitive
+     * @return the unique keys
+     */
+    private static Collection<String> uniqueKeys(OsmPrimitive primitive) {
+        if (primitive instanceof Node)
+            return CustomTagTest.NODE_UNIQUE_KEYS;
+        else if (primitive instanceof Way)
+            return CustomTagTest.WAY_UNIQUE_KEYS;
+        return List.of();
+    }
+
+    /**
+     * Returns the model key of an ID key and value pair.
+     * @param key the key
+     * @param value the value
+     * @return the model key
+     */
+    private static String idKey(String key, String value) {
+        return key + "=" + value;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.awt.event.ActionEvent;
+import javax.swing.JOptionPane;
+import org.openstreetmap.josm.actions.JosmAction;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.Notification;
+import org.openstreetmap.josm.gui.layer.MainLayerManager.ActiveLayerChangeEvent;
+import org.openstreetmap.josm.gui.layer.MainLayerManager.ActiveLayerChangeListener;
+
+/**
+ * Action to toggle the live LexxPluss tag validation.
+ */
+public class LiveValidationAction extends JosmAction implements ActiveLayerChangeListener {
+
+    /**
+     * The live validator.
+     */
+    private final LiveTagValidator validator = new LiveTagValidator();
+
+    /**
+     * Whether the live validation is active.
+     */
+    private boolean active = false;
+
+    /**
+     * Constructs a new {@code LiveValidationAction}.
+     */
+    public LiveValidationAction() {
+        super("Live Validation (LexxPluss)", "mapmode/validateaction", "Toggle live LexxPluss tag validation",
+                null, false);
+        MainApplication.getLayerManager().addActiveLayerChangeListener(this);
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (active) {
+            validator.detach();
+            active = false;
+            showNotification("Live validation disabled");
+        } else {
+            var ds = getLayerManager().getEditDataSet();
+            if (ds == null)
+                return;
+            validator.attach(ds);
+            active = true;
+            showNotification("Live validation enabled");
+        }
+    }
+
+    @Override
+    public void activeOrEditLayerChanged(ActiveLayerChangeEvent e) {
+        if (!active)
+            return;
+        var ds = getLayerManager().getEditDataSet();
+        if (ds == null)
+            validator.detach();
+        else if (ds != validator.getDataSet())
+            validator.attach(ds);
+    }
+
+    /**
+     * Re-checks the data set with the current tag schema, if the live validation is active.
+     */
+    void schemaChanged() {
+        validator.schemaChanged();
+    }
+
+    @Override
+    protected void updateEnabledState() {
+        setEnabled(getLayerManager().getEditDataSet() != null);
+    }
+
+    /**
+     * Shows a notification.
+     * @param message the message
+     */
+    private void showNotification(String message) {
+        new Notification(message)
+                .setIcon(JOptionPane.INFORMATION_MESSAGE)
+                .setDuration(3000)
+                .show();
+    }
+}
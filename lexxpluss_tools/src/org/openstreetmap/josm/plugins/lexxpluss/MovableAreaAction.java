@@ -36,7 +36,8 @@ public class MovableAreaAction extends JosmAction {
         var ds = getLayerManager().getEditDataSet();
         var way = ds.getLastSelectedWay();
         Collection<Command> cmds = new LinkedList<>();
-        cmds.add(new ChangePropertyCommand(way, "area_base", "movable"));
+        TagSchema.getInstance().getTemplate(TagSchema.AreaType.MOVABLE)
+                .forEach((k, v) -> cmds.add(new ChangePropertyCommand(way, k, v)));
         UndoRedoHandler.getInstance().add(new SequenceCommand("Movable area", cmds));
     }
 
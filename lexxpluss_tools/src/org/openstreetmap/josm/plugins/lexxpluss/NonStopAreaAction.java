@@ -36,9 +36,8 @@ public class NonStopAreaAction extends JosmAction {
         var ds = getLayerManager().getEditDataSet();
         var way = ds.getLastSelectedWay();
         Collection<Command> cmds = new LinkedList<>();
-        cmds.add(new ChangePropertyCommand(way, "area_base", "movable"));
-        cmds.add(new ChangePropertyCommand(way, "area_name", "non stop"));
-        cmds.add(new ChangePropertyCommand(way, "non_stop_area", "true"));
+        TagSchema.getInstance().getTemplate(TagSchema.AreaType.NON_STOP)
+                .forEach((k, v) -> cmds.add(new ChangePropertyCommand(way, k, v)));
         UndoRedoHandler.getInstance().add(new SequenceCommand("Non-Stop area", cmds));
     }
 
@@ -70,11 +70,10 @@ public class ParkingAreaMode extends MapMode {
         nodes[2] = new Node(en_base.add( 1.0,  1.0));
         nodes[3] = new Node(en_base.add( 1.0, -1.0));
         var ds = getLayerManager().getEditDataSet();
-        var max = ToolsPlugin.getMaxId(ds.getWays(), "space_id");
+        var max = ToolsPlugin.getMaxId(ds, "space_id");
         var s = Integer.toString(max + 1);
         var w = new Way();
-        w.put("area_base", "movable");
-        w.put("area_detect", "1");
+        TagSchema.getInstance().getTemplate(TagSchema.AreaType.PARK).forEach(w::put);
         w.put("area_name", "park" + s);
         w.put("space_id", s);
         Collection<Command> cmds = new LinkedList<>();
@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.awt.Image;
+import java.awt.geom.AffineTransform;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.logging.Level;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.Layer;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerAddEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerChangeListener;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerOrderChangeEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
+import org.openstreetmap.josm.plugins.piclayer.layer.PicLayerAbstract;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Calibration of the active PicLayer, shared by the coordinate code of the plugin.
+ * The PicLayer is looked up again only when layers are added, removed, reordered or shown/hidden,
+ * and the private members of {@link PicLayerAbstract} are accessed through method handles resolved once.
+ * The exporter plugin has its own copy, as the plugins are installed separately.
+ */
+final class PicLayerCalibration implements LayerChangeListener, PropertyChangeListener {
+
+    /**
+     * Immutable calibration of a PicLayer.
+     */
+    static final class Snapshot {
+
+        /**
+         * The PicLayer.
+         */
+        private final PicLayerAbstract layer;
+
+        /**
+         * The image of the PicLayer.
+         */
+        private final Image image;
+
+        /**
+         * A copy of the transform of the picture.
+         */
+        private final AffineTransform transform;
+
+        /**
+         * The image center in east/north.
+         */
+        private final EastNorth imagePosition;
+
+        /**
+         * The projection the calibration was read with.
+         */
+        private final Projection projection;
+
+        /**
+         * The image width in pixels.
+         */
+        private final double imageWidth;
+
+        /**
+         * The image height in pixels.
+         */
+        private final double imageHeight;
+
+        /**
+         * PicLayerAbstract.initialImageScale.
+         */
+        private final double initialImageScale;
+
+        /**
+         * PicLayerAbstract.getMetersPerEasting at the image position.
+         */
+        private final double metersPerEasting;
+
+        /**
+         * PicLayerAbstract.getMetersPerNorthing at the image position.
+         */
+        private final double metersPerNorthing;
+
+        /**
+         * Constructs a new {@code Snapshot}.
+         * @param layer the PicLayer
+         * @param image the image
+         * @param transform the transform of the picture
+         * @param imagePosition the image position
+         */
+        private Snapshot(PicLayerAbstract layer, Image image, AffineTransform transform, EastNorth imagePosition) {
+            this.layer = layer;
+            this.image = image;
+            this.transform = new AffineTransform(transform);
+            this.imagePosition = imagePosition;
+            this.projection = ProjectionRegistry.getProjection();
+            this.imageWidth = image.getWidth(null);
+            this.imageHeight = image.getHeight(null);
+            this.initialImageScale = invoke(INITIAL_IMAGE_SCALE, layer, null);
+            this.metersPerEasting = invoke(GET_METERS_PER_EASTING, layer, imagePosition);
+            this.metersPerNorthing = invoke(GET_METERS_PER_NORTHING, layer, imagePosition);
+        }
+
+        /**
+         * Returns whether the snapshot still describes a PicLayer.
+         * @param picLayer the PicLayer
+         * @param image the current image
+         * @param transform the current transform
+         * @param imagePosition the current image position
+         * @return {@code true} if nothing changed
+         */
+        private boolean matches(PicLayerAbstract picLayer, Image image, AffineTransform transform,
+                EastNorth imagePosition) {
+            return layer == picLayer && this.image == image && this.transform.equals(transform)
+                    && this.imagePosition.equals(imagePosition) && projection == ProjectionRegistry.getProjection();
+        }
+
+        /**
+         * Returns the PicLayer.
+         * @return the PicLayer
+         */
+        PicLayerAbstract getLayer() {
+            return layer;
+        }
+
+        /**
+         * Returns the transform of the picture.
+         * @return a copy of the transform
+         */
+        AffineTransform getTransform() {
+            return new AffineTransform(transform);
+        }
+
+        /**
+         * Returns the image position.
+         * @return the image center in east/north
+         */
+        EastNorth getImagePosition() {
+            return imagePosition;
+        }
+
+        /**
+         * Returns the image width.
+         * @return the width in pixels
+         */
+        double getImageWidth() {
+            return imageWidth;
+        }
+
+        /**
+         * Returns the image height.
+         * @return the height in pixels
+         */
+        double getImageHeight() {
+            return imageHeight;
+        }
+
+        /**
+         * Returns PicLayerAbstract.initialImageScale.
+         * @return the initial image scale, NaN if it cannot be read
+         */
+        double getInitialImageScale() {
+            return initialImageScale;
+        }
+
+        /**
+         * Returns the meters per easting at the image position.
+         * @return the meters per easting, NaN if it cannot be read
+         */
+        double getMetersPerEasting() {
+            return metersPerEasting;
+        }
+
+        /**
+         * Returns the meters per northing at the image position.
+         * @return the meters per northing, NaN if it cannot be read
+         */
+        double getMetersPerNorthing() {
+            return metersPerNorthing;
+        }
+    }
+
+    /**
+     * The getter of PicLayerAbstract.initialImageScale.
+     */
+    private static final MethodHandle INITIAL_IMAGE_SCALE;
+
+    /**
+     * PicLayerAbstract.getMetersPerEasting.
+     */
+    private static final MethodHandle GET_METERS_PER_EASTING;
+
+    /**
+     * PicLayerAbstract.getMetersPerNorthing.
+     */
+    private static final MethodHandle GET_METERS_PER_NORTHING;
+
+    static {
+        var lookup = MethodHandles.lookup();
+        MethodHandle h = null;
+        try {
+            var f = PicLayerAbstract.class.getDeclaredField("initialImageScale");
+            f.setAccessible(true);
+            // the signature is adapted to the one of the methods, so all handles are invoked the same way
+            h = MethodHandles.dropArguments(lookup.unreflectGetter(f), 1, EastNorth.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Logging.log(Level.WARNING, "Could not get PicLayerAbstract.initialImageScale.", e);
+        }
+        INITIAL_IMAGE_SCALE = h;
+        GET_METERS_PER_EASTING = findMethod(lookup, "getMetersPerEasting");
+        GET_METERS_PER_NORTHING = findMethod(lookup, "getMetersPerNorthing");
+    }
+
+    /**
+     * The instance.
+     */
+    private static PicLayerCalibration instance;
+
+    /**
+     * Whether {@link #picLayer} is up to date.
+     */
+    private boolean layerValid;
+
+    /**
+     * The active PicLayer, or {@code null}.
+     */
+    private PicLayerAbstract picLayer;
+
+    /**
+     * The calibration of the active PicLayer, or {@code null}.
+     */
+    private Snapshot snapshot;
+
+    /**
+     * Private constructor, use {@link #getInstance()}.
+     */
+    private PicLayerCalibration() {
+    }
+
+    /**
+     * Returns the instance, listening to the layers of the main layer manager.
+     * @return the instance
+     */
+    static synchronized PicLayerCalibration getInstance() {
+        if (instance == null) {
+            instance = new PicLayerCalibration();
+            MainApplication.getLayerManager().addAndFireLayerChangeListener(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the calibration of the active PicLayer, the top visible one.
+     * The calibration is read again only if the PicLayer, its image or its transform changed.
+     * @return the calibration, or {@code null} if there is no PicLayer with an image
+     */
+    synchronized Snapshot getSnapshot() {
+        if (!layerValid) {
+            picLayer = findPicLayer();
+            layerValid = true;
+        }
+        var image = picLayer != null ? picLayer.getImage() : null;
+        var transformer = picLayer != null ? picLayer.getTransformer() : null;
+        if (image == null || transformer == null || transformer.getTransform() == null) {
+            snapshot = null;
+            return null;
+        }
+        var transform = transformer.getTransform();
+        var imagePosition = transformer.getImagePosition();
+        if (snapshot == null || !snapshot.matches(picLayer, image, transform, imagePosition))
+            snapshot = new Snapshot(picLayer, image, transform, imagePosition);
+        return snapshot;
+    }
+
+    /**
+     * Finds the top visible PicLayer.
+     * @return the PicLayer, or {@code null}
+     */
+    private static PicLayerAbstract findPicLayer() {
+        PicLayerAbstract result = null;
+        for (var layer : MainApplication.getLayerManager().getVisibleLayersInZOrder()) {
+            if (layer instanceof PicLayerAbstract)
+                result = (PicLayerAbstract) layer;
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the active PicLayer and its calibration.
+     */
+    private synchronized void invalidate() {
+        layerValid = false;
+        snapshot = null;
+    }
+
+    @Override
+    public void layerAdded(LayerAddEvent e) {
+        e.getAddedLayer().addPropertyChangeListener(this);
+        invalidate();
+    }
+
+    @Override
+    public void layerRemoving(LayerRemoveEvent e) {
+        e.getRemovedLayer().removePropertyChangeListener(this);
+        invalidate();
+    }
+
+    @Override
+    public void layerOrderChanged(LayerOrderChangeEvent e) {
+        invalidate();
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (Layer.VISIBLE_PROP.equals(evt.getPropertyName()))
+            invalidate();
+    }
+
+    /**
+     * Finds a private method of {@link PicLayerAbstract} taking an {@link EastNorth}.
+     * @param lookup the lookup
+     * @param name the method name
+     * @return the method handle, or {@code null} if it cannot be accessed
+     */
+    private static MethodHandle findMethod(MethodHandles.Lookup lookup, String name) {
+        try {
+            var m = PicLayerAbstract.class.getDeclaredMethod(name, EastNorth.class);
+            m.setAccessible(true);
+            return lookup.unreflect(m);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Logging.log(Level.WARNING, "Could not get PicLayerAbstract." + name + ".", e);
+            return null;
+        }
+    }
+
+    /**
+     * Invokes a method handle of {@link PicLayerAbstract}.
+     * @param handle the method handle, may be {@code null}
+     * @param picLayer the PicLayer
+     * @param en the position, ignored by the getter of the initial image scale
+     * @return the value, NaN if it cannot be read
+     */
+    private static double invoke(MethodHandle handle, PicLayerAbstract picLayer, EastNorth en) {
+        if (handle == null)
+            return Double.NaN;
+        try {
+            return (double) handle.invokeExact(picLayer, en);
+        } catch (Throwable e) {
+            Logging.log(Level.WARNING, "Could not invoke PicLayerAbstract.", e);
+            return Double.NaN;
+        }
+    }
+}
@@ -7,6 +7,7 @@
 package org.openstreetmap.josm.plugins.lexxpluss;
 
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.util.stream.Collectors;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.osm.DataSet;
@@ -25,6 +26,12 @@ class PointTransformer {
      */
     private AffineTransform transform;
 
+    /**
+     * The image to east-north conversion composed into one affine transform,
+     * see {@link #composeImageToEastNorth()}.
+     */
+    private double[] imageToEastNorth;
+
     /**
      * The view center longitude.
      */
@@ -80,6 +87,7 @@ class PointTransformer {
      */
     PointTransformer() {
         transform = null;
+        imageToEastNorth = null;
         view_center_lon = 0.0;
         view_center_lat = 0.0;
         pixel_per_en_x = -1.0;
@@ -106,6 +114,22 @@ class PointTransformer {
             GuiHelper.runInEDT(notification::show);
             return false;
         }
+        if (!setupFromWay(way)) {
+            var notification = new Notification("Error parsing transform matrix.")
+                    .setIcon(ImageProvider.get("data/error"));
+            GuiHelper.runInEDT(notification::show);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sets up the transform matrix from the given transform matrix way without user feedback.
+     *
+     * @param way the way with the transform matrix
+     * @return {@code true} if the setup was successful, {@code false} otherwise
+     */
+    boolean setupFromWay(Way way) {
         var matrix = new double[6];
         try {
             matrix[0] = Double.parseDouble(way.get("m0"));
@@ -125,33 +149,90 @@ class PointTransformer {
             hw = Double.parseDouble(way.get("hw"));
             hh = Double.parseDouble(way.get("hh"));
         } catch (Exception ex) {
-            var notification = new Notification("Error parsing transform matrix.")
-                    .setIcon(ImageProvider.get("data/error"));
-            GuiHelper.runInEDT(notification::show);
             return false;
         }
         transform = new AffineTransform(matrix);
+        imageToEastNorth = composeImageToEastNorth();
         return true;
     }
 
     /**
-     * Transforms the given image coordinates to east-north coordinates.
+     * Composes the steps of {@link #imageXYtoEastNorth} into one affine transform:
+     * east = t[0] * x + t[1] * y + t[2], north = t[3] * x + t[4] * y + t[5].
+     * The arithmetic is the same as {@code LexxPlussReader.composeTransform} of the LexxPluss importer,
+     * so that both convert bit for bit the same; keep them in sync.
+     *
+     * @return the composed transform
+     */
+    private double[] composeImageToEastNorth() {
+        var m00 = transform.getScaleX();
+        var m10 = transform.getShearY();
+        var m01 = transform.getShearX();
+        var m11 = transform.getScaleY();
+        var m02 = transform.getTranslateX();
+        var m12 = transform.getTranslateY();
+        // picture coordinates: px = ax * x + bx, py = ay * y + by
+        var ax = 1.0 / scaleX;
+        var bx = pic_offset_x / m00 - hw / scaleX;
+        var ay = 1.0 / scaleY;
+        var by = pic_offset_y / m11 - hh / scaleY;
+        return new double[]{
+                m00 * ax / pixel_per_en_x,
+                m01 * ay / pixel_per_en_x,
+                (m00 * bx + m01 * by + m02) / pixel_per_en_x + view_center_lon,
+                -m10 * ax / pixel_per_en_y,
+                -m11 * ay / pixel_per_en_y,
+                view_center_lat - (m10 * bx + m11 * by + m12) / pixel_per_en_y
+        };
+    }
+
+    /**
+     * Transforms the given image coordinates to east-north coordinates,
+     * bit for bit the same as the LexxPluss importer.
      *
      * @param x the image x coordinate
      * @param y the image y coordinate
      * @return the east-north coordinates
      */
     EastNorth imageXYtoEastNorth(double x, double y) {
-        var in_point = new double[]{
-                (x - hw) / scaleX + pic_offset_x / transform.getScaleX(),
-                (y - hh) / scaleY + pic_offset_y / transform.getScaleY()
+        var t = imageToEastNorth;
+        return new EastNorth(t[0] * x + t[1] * y + t[2], t[3] * x + t[4] * y + t[5]);
+    }
+
+    /**
+     * Transforms the given east-north coordinates to image coordinates.
+     * This is the inverse of {@link #imageXYtoEastNorth} and follows the steps of the
+     * LexxPluss exporter, including the truncation to 6 decimal places.
+     *
+     * @param en the east-north coordinates
+     * @return the image x and y coordinates
+     * @throws NoninvertibleTransformException if the transform matrix is not invertible
+     */
+    double[] eastNorthToImageXY(EastNorth en) throws NoninvertibleTransformException {
+        var micros = eastNorthToImageMicros(en);
+        micros[0] /= ImageCoordinateCodec.SCALE;
+        micros[1] /= ImageCoordinateCodec.SCALE;
+        return micros;
+    }
+
+    /**
+     * Transforms the given east-north coordinates to image coordinates in micro pixels,
+     * the fixed precision of X_image/Y_image.
+     *
+     * @param en the east-north coordinates
+     * @return the image x and y coordinates in micro pixels, see {@link ImageCoordinateCodec#toMicros}
+     * @throws NoninvertibleTransformException if the transform matrix is not invertible
+     */
+    double[] eastNorthToImageMicros(EastNorth en) throws NoninvertibleTransformException {
+        var src_point = new double[]{
+                (en.east() - view_center_lon) * pixel_per_en_x,
+                (view_center_lat - en.north()) * pixel_per_en_y
         };
-        var cvt_point = new double[2];
-        transform.transform(in_point, 0, cvt_point, 0, 1);
-        var east = (cvt_point[0] / pixel_per_en_x) + view_center_lon;
-        var north = view_center_lat - (cvt_point[1] / pixel_per_en_y);
-        var pos = new EastNorth(east, north);
-        return pos;
+        var dst_point = new double[2];
+        transform.inverseTransform(src_point, 0, dst_point, 0, 1);
+        var x = (dst_point[0] - pic_offset_x / transform.getScaleX()) * scaleX + hw;
+        var y = (dst_point[1] - pic_offset_y / transform.getScaleY()) * scaleY + hh;
+        return new double[]{ImageCoordinateCodec.toMicros(x), ImageCoordinateCodec.toMicros(y)};
     }
 
     /**
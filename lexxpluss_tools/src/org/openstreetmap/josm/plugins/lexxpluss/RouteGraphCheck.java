@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.validation.TestError;
+
+/**
+ * Connectivity analysis of the AGV route graph.
+ * agv_pose lines and intermediate goal ways ({@code line_info=""}) are turned into
+ * a directed graph whose weakly and strongly connected components are computed in
+ * linear time with union-find and Tarjan's algorithm.
+ */
+class RouteGraphCheck {
+
+    /**
+     * The test reporting the errors.
+     */
+    private final CustomTagTest test;
+
+    /**
+     * The vertex of each node.
+     */
+    private final Map<Node, Integer> vertices = new HashMap<>();
+
+    /**
+     * The node of each vertex.
+     */
+    private final List<Node> nodes = new ArrayList<>();
+
+    /**
+     * The source vertex of each directed edge.
+     */
+    private int[] edgeFrom = new int[64];
+
+    /**
+     * The target vertex of each directed edge.
+     */
+    private int[] edgeTo = new int[64];
+
+    /**
+     * The number of directed edges.
+     */
+    private int edgeCount = 0;
+
+    /**
+     * The one-way ways by directed edge key.
+     */
+    private final Map<Long, Way> onewayEdges = new HashMap<>();
+
+    /**
+     * Constructs a new {@code RouteGraphCheck}.
+     * @param test the test reporting the errors
+     */
+    RouteGraphCheck(CustomTagTest test) {
+        this.test = test;
+    }
+
+    /**
+     * Runs the route graph analysis on a data set.
+     * @param ds the data set
+     * @param found the list receiving the errors
+     */
+    void check(DataSet ds, List<TestError> found) {
+        var directions = new ArrayList<Way>();
+        for (var way : ds.getWays()) {
+            if (!way.isUsable() || way.isArea() || way.getNodesCount() < 2)
+                continue;
+            var value = way.get("line_info");
+            if ("agv_pose".equals(value))
+                addWay(way, false);
+            else if ("\"\"".equals(value) || (value == null && way.hasKey("oneway")))
+                addWay(way, "yes".equals(way.get("oneway")));
+            else if ("oneway_direction".equals(value))
+                directions.add(way);
+        }
+        if (!nodes.isEmpty())
+            analyze(found);
+        directions.forEach(way -> checkDirection(way, found));
+    }
+
+    /**
+     * Adds the segments of a way to the graph.
+     * @param way the way
+     * @param oneway {@code true} if the way may only be travelled in node order
+     */
+    private void addWay(Way way, boolean oneway) {
+        var previous = -1;
+        for (var node : way.getNodes()) {
+            var v = vertex(node);
+            if (previous >= 0 && previous != v) {
+                addEdge(previous, v);
+                if (oneway)
+                    onewayEdges.put(edgeKey(previous, v), way);
+                else
+                    addEdge(v, previous);
+            }
+            previous = v;
+        }
+    }
+
+    /**
+     * Returns the vertex of a node, adding it if necessary.
+     * @param node the node
+     * @return the vertex
+     */
+    private int vertex(Node node) {
+        return vertices.computeIfAbsent(node, k -> {
+            nodes.add(k);
+            return nodes.size() - 1;
+        });
+    }
+
+    /**
+     * Adds a directed edge.
+     * @param from the source vertex
+     * @param to the target vertex
+     */
+    private void addEdge(int from, int to) {
+        if (edgeCount == edgeFrom.length) {
+            edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+            edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+        }
+        edgeFrom[edgeCount] = from;
+        edgeTo[edgeCount] = to;
+        ++edgeCount;
+    }
+
+    /**
+     * Returns the key of a directed edge.
+     * @param from the source vertex
+     * @param to the target vertex
+     * @return the key
+     */
+    private static long edgeKey(int from, int to) {
+        return ((long)from << 32) | (to & 0xffffffffL);
+    }
+
+    /**
+     * Reports unreachable goals and dead ends.
+     * A route usually ends in one sink component, e.g. a bidirectional network entered by
+     * oneway spurs. Only the other sinks, and an intended sink without goals while the route
+     * has goals elsewhere, are dead ends.
+     * @param found the list receiving the errors
+     */
+    private void analyze(List<TestError> found) {
+        var n = nodes.size();
+        // adjacency in compressed sparse row form
+        var start = new int[n + 1];
+        for (var e = 0; e < edgeCount; ++e)
+            ++start[edgeFrom[e] + 1];
+        for (var v = 0; v < n; ++v)
+            start[v + 1] += start[v];
+        var adjacency = new int[edgeCount];
+        var fill = Arrays.copyOf(start, n);
+        for (var e = 0; e < edgeCount; ++e)
+            adjacency[fill[edgeFrom[e]]++] = edgeTo[e];
+        var weak = weakComponents(n);
+        var strong = new int[n];
+        var strongCount = strongComponents(n, start, adjacency, strong);
+        // Tarjan numbers the components in reverse topological order
+        var goals = new int[strongCount];
+        var totalGoals = 0;
+        for (var v = 0; v < n; ++v) {
+            if (nodes.get(v).hasKey("intermediate_goal_id")) {
+                ++goals[strong[v]];
+                ++totalGoals;
+            }
+        }
+        var members = new int[strongCount + 1];
+        for (var v = 0; v < n; ++v)
+            ++members[strong[v] + 1];
+        for (var c = 0; c < strongCount; ++c)
+            members[c + 1] += members[c];
+        var order = new int[n];
+        var cursor = Arrays.copyOf(members, strongCount);
+        for (var v = 0; v < n; ++v)
+            order[cursor[strong[v]]++] = v;
+        var reachedByGoal = new boolean[strongCount];
+        var hasExit = new boolean[strongCount];
+        for (var c = strongCount - 1; c >= 0; --c) {
+            for (var i = members[c]; i < members[c + 1]; ++i) {
+                var v = order[i];
+                for (var j = start[v]; j < start[v + 1]; ++j) {
+                    var d = strong[adjacency[j]];
+                    if (d == c)
+                        continue;
+                    hasExit[c] = true;
+                    if (goals[c] > 0 || reachedByGoal[c])
+                        reachedByGoal[d] = true;
+                }
+            }
+        }
+        // the intended sink of each weak component, indexed by its representative:
+        // the sink with the most goals, then the most nodes
+        var intendedSink = new int[n];
+        var weakGoals = new int[n];
+        Arrays.fill(intendedSink, -1);
+        for (var c = 0; c < strongCount; ++c) {
+            var w = weak[order[members[c]]];
+            weakGoals[w] += goals[c];
+            if (hasExit[c])
+                continue;
+            var s = intendedSink[w];
+            if (s < 0 || goals[c] > goals[s]
+                    || (goals[c] == goals[s] && members[c + 1] - members[c] > members[s + 1] - members[s]))
+                intendedSink[w] = c;
+        }
+        for (var c = 0; c < strongCount; ++c) {
+            var from = members[c];
+            var to = members[c + 1];
+            if (totalGoals > 1 && goals[c] == 1 && !reachedByGoal[c]) {
+                for (var i = from; i < to; ++i) {
+                    var node = nodes.get(order[i]);
+                    if (node.hasKey("intermediate_goal_id"))
+                        found.add(test.error(6010, "Goal cannot be reached from other goals", List.of(node)));
+                }
+            }
+            var w = weak[order[from]];
+            if (!hasExit[c] && (intendedSink[w] != c || (goals[c] == 0 && weakGoals[w] > 0))) {
+                var sink = new ArrayList<Node>();
+                for (var i = from; i < to; ++i)
+                    sink.add(nodes.get(order[i]));
+                found.add(test.error(6011, "Dead end in route graph", sink));
+            }
+        }
+    }
+
+    /**
+     * Computes the weakly connected components with union-find.
+     * @param n the number of vertices
+     * @return the representative of the component of each vertex
+     */
+    private int[] weakComponents(int n) {
+        var parent = new int[n];
+        for (var v = 0; v < n; ++v)
+            parent[v] = v;
+        for (var e = 0; e < edgeCount; ++e) {
+            var a = find(parent, edgeFrom[e]);
+            var b = find(parent, edgeTo[e]);
+            if (a != b)
+                parent[a] = b;
+        }
+        for (var v = 0; v < n; ++v)
+            parent[v] = find(parent, v);
+        return parent;
+    }
+
+    /**
+     * Finds the representative of a vertex, halving the path on the way.
+     * @param parent the parent of each vertex
+     * @param v the vertex
+     * @return the representative
+     */
+    private static int find(int[] parent, int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    /**
+     * Computes the strongly connected components with an iterative Tarjan's algorithm.
+     * @param n the number of vertices
+     * @param start the first adjacency index of each vertex
+     * @param adjacency the targets of the edges
+     * @param component the array receiving the component of each vertex
+     * @return the number of components
+     */
+    private static int strongComponents(int n, int[] start, int[] adjacency, int[] component) {
+        var index = new int[n];
+        var low = new int[n];
+        var next = new int[n];
+        var onStack = new boolean[n];
+        var stack = new int[n];
+        var calls = new int[n];
+        Arrays.fill(index, -1);
+        var stackSize = 0;
+        var counter = 0;
+        var count = 0;
+        for (var root = 0; root < n; ++root) {
+            if (index[root] >= 0)
+                continue;
+            var depth = 0;
+            calls[depth++] = root;
+            index[root] = low[root] = counter++;
+            next[root] = start[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth > 0) {
+                var v = calls[depth - 1];
+                if (next[v] < start[v + 1]) {
+                    var w = adjacency[next[v]++];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        next[w] = start[w];
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        calls[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                --depth;
+                if (depth > 0) {
+                    var u = calls[depth - 1];
+                    low[u] = Math.min(low[u], low[v]);
+                }
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component[w] = count;
+                    } while (w != v);
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check for oneway_direction ways running against a oneway way.
+     * @param way the oneway_direction way
+     * @param found the list receiving the errors
+     */
+    private void checkDirection(Way way, List<TestError> found) {
+        var wayNodes = way.getNodes();
+        for (var i = 1; i < wayNodes.size(); ++i) {
+            var from = vertices.get(wayNodes.get(i - 1));
+            var to = vertices.get(wayNodes.get(i));
+            if (from == null || to == null)
+                continue;
+            if (onewayEdges.containsKey(edgeKey(from, to)))
+                continue;
+            var opposite = onewayEdges.get(edgeKey(to, from));
+            if (opposite != null) {
+                found.add(test.error(6012, "oneway_direction conflicts with oneway", List.of(way, opposite)));
+                return;
+            }
+        }
+    }
+}
@@ -36,16 +36,8 @@ public class SafetyAreaAction extends JosmAction {
         var ds = getLayerManager().getEditDataSet();
         var way = ds.getLastSelectedWay();
         Collection<Command> cmds = new LinkedList<>();
-        cmds.add(new ChangePropertyCommand(way, "area_base", "movable"));
-        cmds.add(new ChangePropertyCommand(way, "area_name", "warning"));
-        cmds.add(new ChangePropertyCommand(way, "front_safety", "off"));
-        cmds.add(new ChangePropertyCommand(way, "front_left_safety", "off"));
-        cmds.add(new ChangePropertyCommand(way, "front_right_safety", "off"));
-        cmds.add(new ChangePropertyCommand(way, "side_left_safety", "off"));
-        cmds.add(new ChangePropertyCommand(way, "side_right_safety", "off"));
-        cmds.add(new ChangePropertyCommand(way, "rear_safety", "off"));
-        cmds.add(new ChangePropertyCommand(way, "rear_left_safety", "off"));
-        cmds.add(new ChangePropertyCommand(way, "rear_right_safety", "off"));
+        TagSchema.getInstance().getTemplate(TagSchema.AreaType.SAFETY)
+                .forEach((k, v) -> cmds.add(new ChangePropertyCommand(way, k, v)));
         UndoRedoHandler.getInstance().add(new SequenceCommand("Safety area", cmds));
     }
 
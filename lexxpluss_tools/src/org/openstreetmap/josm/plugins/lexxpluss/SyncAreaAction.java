@@ -35,13 +35,13 @@ public class SyncAreaAction extends JosmAction {
     public void actionPerformed(ActionEvent e) {
         var ds = getLayerManager().getEditDataSet();
         var way = ds.getLastSelectedWay();
-        var max = ToolsPlugin.getMaxId(ds.getWays(), "sync_id");
+        var max = ToolsPlugin.getMaxId(ds, "sync_id");
         var s = Integer.toString(max + 1);
         Collection<Command> cmds = new LinkedList<>();
         cmds.add(new ChangePropertyCommand(way, "sync_id", s));
-        cmds.add(new ChangePropertyCommand(way, "area_base", "movable"));
+        TagSchema.getInstance().getTemplate(TagSchema.AreaType.SYNC)
+                .forEach((k, v) -> cmds.add(new ChangePropertyCommand(way, k, v)));
         cmds.add(new ChangePropertyCommand(way, "area_name", "sync" + s));
-        cmds.add(new ChangePropertyCommand(way, "area_info", "sync_area"));
         UndoRedoHandler.getInstance().add(new SequenceCommand("Sync area", cmds));
     }
 
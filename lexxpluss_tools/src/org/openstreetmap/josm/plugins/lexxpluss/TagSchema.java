@@ -0,0 +1,595 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.openstreetmap.josm.data.osm.Tagged;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * LexxPluss tag schema.
+ * Loaded once from a versioned resource file and compiled into flat lookup tables.
+ */
+final class TagSchema {
+
+    /**
+     * Way type.
+     */
+    enum WayType {
+        /**
+         * Unknown way type.
+         */
+        UNKNOWN,
+        /**
+         * AGV pose way type.
+         */
+        AGV_POSE,
+        /**
+         * Goal pose way type.
+         */
+        GOAL_POSE,
+        /**
+         * Marker pose way type.
+         */
+        MARKER_POSE,
+        /**
+         * Oneway way type.
+         */
+        ONEWAY,
+        /**
+         * Oneway direction way type.
+         */
+        ONEWAY_DIR
+    };
+
+    /**
+     * Area type.
+     */
+    enum AreaType {
+        /**
+         * Unknown area type.
+         */
+        UNKNOWN,
+        /**
+         * Movable area type.
+         */
+        MOVABLE,
+        /**
+         * Non-stop area type.
+         */
+        NON_STOP,
+        /**
+         * Parking area type.
+         */
+        PARK,
+        /**
+         * Safety area type.
+         */
+        SAFETY,
+        /**
+         * Sync area type.
+         */
+        SYNC,
+        /**
+         * Oneway area type.
+         */
+        ONEWAY
+    };
+
+    /**
+     * Flag for tags allowed on nodes.
+     */
+    static final int NODE = 1;
+
+    /**
+     * Flag for tags allowed on areas.
+     */
+    static final int AREA = 1 << 1;
+
+    /**
+     * Flag for tags allowed on ways that are not areas.
+     */
+    static final int WAY = 1 << 2;
+
+    /**
+     * Flag for tags with integer values.
+     */
+    static final int INTEGER = 1 << 3;
+
+    /**
+     * Flag for tags with floating point values.
+     */
+    static final int DOUBLE = 1 << 4;
+
+    /**
+     * The schema format version this code understands.
+     */
+    static final int SUPPORTED_VERSION = 1;
+
+    /**
+     * The bundled schema resource.
+     */
+    private static final String RESOURCE = "/data/lexxpluss_tag_schema.properties";
+
+    /**
+     * The loaded schema.
+     */
+    private static TagSchema instance = null;
+
+    /**
+     * Compiled information on a single key.
+     */
+    static final class KeyInfo {
+
+        /**
+         * The interned key.
+         */
+        final String key;
+
+        /**
+         * The flags.
+         */
+        int flags = 0;
+
+        /**
+         * The value domain, or {@code null} for any value.
+         */
+        Set<String> values = null;
+
+        /**
+         * The way type implied by the presence of the key.
+         */
+        WayType wayType = null;
+
+        /**
+         * The area type implied by the presence of the key.
+         */
+        AreaType areaType = null;
+
+        /**
+         * The way types implied by values of the key.
+         */
+        ValueClassifier<WayType> wayTypes = null;
+
+        /**
+         * The area types implied by values of the key.
+         */
+        ValueClassifier<AreaType> areaTypes = null;
+
+        /**
+         * Constructs a new {@code KeyInfo}.
+         * @param key the key
+         */
+        KeyInfo(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Tests a flag.
+         * @param flag the flag
+         * @return {@code true} if the flag is set
+         */
+        boolean is(int flag) {
+            return (flags & flag) != 0;
+        }
+    }
+
+    /**
+     * Rule for a way or area type.
+     */
+    static final class TypeRule {
+
+        /**
+         * The label used in messages.
+         */
+        String label = "";
+
+        /**
+         * The maximum number of tags, or -1 for no limit.
+         */
+        int maxTags = -1;
+
+        /**
+         * Whether only the tag number is reported when {@link #maxTags} is exceeded.
+         */
+        boolean maxExclusive = false;
+
+        /**
+         * The required tags.
+         */
+        Set<String> required = Set.of();
+
+        /**
+         * The allowed tags, or {@code null} for any tag.
+         */
+        Set<String> allowed = null;
+
+        /**
+         * The fixed tags set when creating a primitive of this type.
+         */
+        Map<String, String> template = Map.of();
+    }
+
+    /**
+     * Maps values of a key to types, exactly or by prefix.
+     * @param <T> the type
+     */
+    static final class ValueClassifier<T> {
+
+        /**
+         * The types by exact value.
+         */
+        private final Map<String, T> exact = new HashMap<>();
+
+        /**
+         * The value prefixes, in declaration order.
+         */
+        private final List<String> prefixes = new ArrayList<>();
+
+        /**
+         * The types of the value prefixes.
+         */
+        private final List<T> prefixTypes = new ArrayList<>();
+
+        /**
+         * Classifies a value.
+         * @param value the value
+         * @return the type, or {@code null}
+         */
+        T classify(String value) {
+            var type = exact.get(value);
+            if (type != null)
+                return type;
+            for (var i = 0; i < prefixes.size(); ++i) {
+                if (value.startsWith(prefixes.get(i)))
+                    return prefixTypes.get(i);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The schema version.
+     */
+    private final int version;
+
+    /**
+     * The source the schema was loaded from.
+     */
+    private final String source;
+
+    /**
+     * The key information by key.
+     */
+    private final Map<String, KeyInfo> keys = new HashMap<>();
+
+    /**
+     * The way type rules.
+     */
+    private final Map<WayType, TypeRule> wayRules = new EnumMap<>(WayType.class);
+
+    /**
+     * The area type rules.
+     */
+    private final Map<AreaType, TypeRule> areaRules = new EnumMap<>(AreaType.class);
+
+    /**
+     * The key of the default area classification.
+     */
+    private String defaultAreaKey = null;
+
+    /**
+     * The value of the default area classification.
+     */
+    private String defaultAreaValue = null;
+
+    /**
+     * The type of the default area classification.
+     */
+    private AreaType defaultAreaType = AreaType.UNKNOWN;
+
+    /**
+     * Returns the loaded schema, loading it on first use.
+     * @return the schema
+     */
+    static synchronized TagSchema getInstance() {
+        if (instance == null)
+            instance = load();
+        return instance;
+    }
+
+    /**
+     * Reloads the schema, e.g. after the schema path preference was changed.
+     * @return the schema
+     */
+    static synchronized TagSchema reload() {
+        instance = load();
+        Logging.info("Loaded LexxPluss tag schema version " + instance.getVersion() + " from " + instance.getSource());
+        return instance;
+    }
+
+    /**
+     * Loads the schema from the configured file, falling back to the bundled resource.
+     * @return the schema
+     */
+    private static TagSchema load() {
+        var path = ToolsSettings.getSchemaPath();
+        if (!path.isEmpty()) {
+            try (var in = Files.newInputStream(Paths.get(path))) {
+                return new TagSchema(read(in), path);
+            } catch (IOException | IllegalArgumentException e) {
+                Logging.warn("Could not load LexxPluss tag schema " + path + ", using the bundled one: " + e.getMessage());
+            }
+        }
+        try (var in = TagSchema.class.getResourceAsStream(RESOURCE)) {
+            if (in == null)
+                throw new IllegalStateException("Missing resource " + RESOURCE);
+            return new TagSchema(read(in), RESOURCE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load " + RESOURCE, e);
+        }
+    }
+
+    /**
+     * Reads schema properties.
+     * @param in the input stream
+     * @return the properties
+     * @throws IOException if reading fails
+     */
+    private static Properties read(InputStream in) throws IOException {
+        var properties = new Properties();
+        properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return properties;
+    }
+
+    /**
+     * Compiles a schema.
+     * @param properties the schema properties
+     * @param source the source, for messages
+     * @throws IllegalArgumentException if the schema is malformed or of an unsupported version
+     */
+    private TagSchema(Properties properties, String source) {
+        this.source = source;
+        version = Integer.parseInt(properties.getProperty("version", "0").trim());
+        if (version < 1 || version > SUPPORTED_VERSION)
+            throw new IllegalArgumentException("Unsupported schema version " + version);
+        list(properties, "tags.node").forEach(k -> key(k).flags |= NODE);
+        list(properties, "tags.area").forEach(k -> key(k).flags |= AREA);
+        list(properties, "tags.way").forEach(k -> key(k).flags |= WAY);
+        list(properties, "numeric.integer").forEach(k -> key(k).flags |= INTEGER);
+        list(properties, "numeric.double").forEach(k -> key(k).flags |= DOUBLE);
+        for (var name : properties.stringPropertyNames()) {
+            if (name.startsWith("values."))
+                key(name.substring(7)).values = Set.copyOf(list(properties, name));
+            else if (name.startsWith("classify.way.value."))
+                key(name.substring(19)).wayTypes = classifier(list(properties, name), WayType.class);
+            else if (name.startsWith("classify.area.value."))
+                key(name.substring(20)).areaTypes = classifier(list(properties, name), AreaType.class);
+        }
+        pairs(properties, "classify.way.keys").forEach((k, t) -> key(k).wayType = WayType.valueOf(t));
+        pairs(properties, "classify.area.keys").forEach((k, t) -> key(k).areaType = AreaType.valueOf(t));
+        pairs(properties, "classify.area.default").forEach((kv, t) -> {
+            var tag = kv.split("=", 2);
+            defaultAreaKey = tag[0].trim().intern();
+            defaultAreaValue = tag.length > 1 ? tag[1].trim() : "";
+            defaultAreaType = AreaType.valueOf(t);
+        });
+        for (var type : WayType.values())
+            wayRules.put(type, rule(properties, "way." + type.name()));
+        for (var type : AreaType.values())
+            areaRules.put(type, rule(properties, "area." + type.name()));
+    }
+
+    /**
+     * Returns the key information, creating it if needed.
+     * @param key the key
+     * @return the key information
+     */
+    private KeyInfo key(String key) {
+        return keys.computeIfAbsent(key.intern(), KeyInfo::new);
+    }
+
+    /**
+     * Compiles a type rule.
+     * @param properties the schema properties
+     * @param name the type name, e.g. {@code way.AGV_POSE}
+     * @return the rule
+     */
+    private static TypeRule rule(Properties properties, String name) {
+        var rule = new TypeRule();
+        var prefix = "rule." + name + ".";
+        rule.label = properties.getProperty(prefix + "label", "").trim();
+        rule.maxTags = Integer.parseInt(properties.getProperty(prefix + "max", "-1").trim());
+        rule.maxExclusive = Boolean.parseBoolean(properties.getProperty(prefix + "max.exclusive", "false").trim());
+        rule.required = Set.copyOf(list(properties, prefix + "required"));
+        if (properties.containsKey(prefix + "allowed"))
+            rule.allowed = Set.copyOf(list(properties, prefix + "allowed"));
+        var template = new LinkedHashMap<String, String>();
+        for (var tag : list(properties, "template." + name)) {
+            var kv = tag.split("=", 2);
+            template.put(kv[0].trim().intern(), kv.length > 1 ? kv[1].trim() : "");
+        }
+        rule.template = Collections.unmodifiableMap(template);
+        return rule;
+    }
+
+    /**
+     * Compiles a value classifier.
+     * @param <T> the type
+     * @param entries the {@code value:TYPE} entries, a value ending with {@code *} is a prefix
+     * @param typeClass the type class
+     * @return the classifier
+     */
+    private static <T extends Enum<T>> ValueClassifier<T> classifier(List<String> entries, Class<T> typeClass) {
+        var classifier = new ValueClassifier<T>();
+        for (var entry : entries) {
+            var separator = entry.lastIndexOf(':');
+            var value = entry.substring(0, separator).trim();
+            var type = Enum.valueOf(typeClass, entry.substring(separator + 1).trim());
+            if (value.endsWith("*")) {
+                classifier.prefixes.add(value.substring(0, value.length() - 1));
+                classifier.prefixTypes.add(type);
+            } else {
+                classifier.exact.put(value, type);
+            }
+        }
+        return classifier;
+    }
+
+    /**
+     * Returns a comma separated list property.
+     * @param properties the schema properties
+     * @param name the property name
+     * @return the trimmed entries
+     */
+    private static List<String> list(Properties properties, String name) {
+        var result = new ArrayList<String>();
+        var value = properties.getProperty(name);
+        if (value != null) {
+            for (var entry : value.split(",")) {
+                entry = entry.trim();
+                if (!entry.isEmpty())
+                    result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a comma separated list of {@code name:TYPE} pairs.
+     * @param properties the schema properties
+     * @param name the property name
+     * @return the types by name, in declaration order
+     */
+    private static Map<String, String> pairs(Properties properties, String name) {
+        var result = new LinkedHashMap<String, String>();
+        for (var entry : list(properties, name)) {
+            var separator = entry.lastIndexOf(':');
+            result.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the schema version.
+     * @return the version
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the source the schema was loaded from.
+     * @return the source
+     */
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the information on a key.
+     * @param key the key
+     * @return the key information, or {@code null} for keys unknown to the schema
+     */
+    KeyInfo getKey(String key) {
+        return keys.get(key);
+    }
+
+    /**
+     * Returns the rule of a way type.
+     * @param type the way type
+     * @return the rule
+     */
+    TypeRule getRule(WayType type) {
+        return wayRules.get(type);
+    }
+
+    /**
+     * Returns the rule of an area type.
+     * @param type the area type
+     * @return the rule
+     */
+    TypeRule getRule(AreaType type) {
+        return areaRules.get(type);
+    }
+
+    /**
+     * Returns the fixed tags of a way type.
+     * @param type the way type
+     * @return the tags
+     */
+    Map<String, String> getTemplate(WayType type) {
+        return wayRules.get(type).template;
+    }
+
+    /**
+     * Returns the fixed tags of an area type.
+     * @param type the area type
+     * @return the tags
+     */
+    Map<String, String> getTemplate(AreaType type) {
+        return areaRules.get(type).template;
+    }
+
+    /**
+     * Get way type.
+     * @param way the way
+     * @return the way type
+     */
+    WayType getWayType(Tagged way) {
+        for (var k : way.keySet()) {
+            var info = keys.get(k);
+            if (info == null)
+                continue;
+            if (info.wayTypes != null) {
+                var type = info.wayTypes.classify(way.get(k));
+                if (type != null)
+                    return type;
+            } else if (info.wayType != null) {
+                return info.wayType;
+            }
+        }
+        return WayType.UNKNOWN;
+    }
+
+    /**
+     * Get area type.
+     * @param way the way
+     * @return the area type
+     */
+    AreaType getAreaType(Tagged way) {
+        for (var k : way.keySet()) {
+            var info = keys.get(k);
+            if (info == null)
+                continue;
+            if (info.areaTypes != null) {
+                var type = info.areaTypes.classify(way.get(k));
+                if (type != null)
+                    return type;
+            } else if (info.areaType != null) {
+                return info.areaType;
+            }
+        }
+        if (defaultAreaKey != null && defaultAreaValue.equals(way.get(defaultAreaKey)))
+            return defaultAreaType;
+        return AreaType.UNKNOWN;
+    }
+}
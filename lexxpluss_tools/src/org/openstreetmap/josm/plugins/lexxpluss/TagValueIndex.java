@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+
+/**
+ * Index from tag values to the primitives carrying them.
+ */
+class TagValueIndex {
+
+    /**
+     * Consumer of duplicate groups.
+     */
+    @FunctionalInterface
+    interface DuplicateConsumer {
+
+        /**
+         * Accepts a duplicate group.
+         * @param key the key
+         * @param value the value
+         * @param primitives the primitives sharing the value
+         */
+        void accept(String key, String value, Collection<OsmPrimitive> primitives);
+    }
+
+    /**
+     * The primitives by value by key.
+     */
+    private final Map<String, Map<String, Set<OsmPrimitive>>> index = new LinkedHashMap<>();
+
+    /**
+     * Adds the values of the given keys of a primitive.
+     * @param primitive the primitive
+     * @param keys the keys to index
+     */
+    void add(OsmPrimitive primitive, Collection<String> keys) {
+        for (var key : keys) {
+            var value = primitive.get(key);
+            if (value != null)
+                add(primitive, key, value);
+        }
+    }
+
+    /**
+     * Adds a single key value of a primitive.
+     * @param primitive the primitive
+     * @param key the key
+     * @param value the value
+     */
+    void add(OsmPrimitive primitive, String key, String value) {
+        index.computeIfAbsent(key, k -> new LinkedHashMap<>())
+                .computeIfAbsent(value, v -> new LinkedHashSet<>())
+                .add(primitive);
+    }
+
+    /**
+     * Removes a single key value of a primitive.
+     * @param primitive the primitive
+     * @param key the key
+     * @param value the value
+     */
+    void remove(OsmPrimitive primitive, String key, String value) {
+        var values = index.get(key);
+        if (values == null)
+            return;
+        var primitives = values.get(value);
+        if (primitives == null)
+            return;
+        primitives.remove(primitive);
+        if (primitives.isEmpty())
+            values.remove(value);
+    }
+
+    /**
+     * Returns the primitives carrying a key value.
+     * @param key the key
+     * @param value the value
+     * @return the primitives, never {@code null}
+     */
+    Set<OsmPrimitive> get(String key, String value) {
+        var values = index.get(key);
+        if (values == null)
+            return Collections.emptySet();
+        var primitives = values.get(value);
+        return primitives == null ? Collections.emptySet() : Collections.unmodifiableSet(primitives);
+    }
+
+    /**
+     * Calls the consumer once for every value carried by more than one primitive.
+     * @param consumer the consumer
+     */
+    void forEachDuplicate(DuplicateConsumer consumer) {
+        index.forEach((key, values) -> values.forEach((value, primitives) -> {
+            if (primitives.size() > 1)
+                consumer.accept(key, value, Collections.unmodifiableSet(primitives));
+        }));
+    }
+
+    /**
+     * Clears the index.
+     */
+    void clear() {
+        index.clear();
+    }
+}
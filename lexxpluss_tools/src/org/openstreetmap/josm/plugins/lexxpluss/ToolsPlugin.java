@@ -6,10 +6,18 @@
 
 package org.openstreetmap.josm.plugins.lexxpluss;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import javax.swing.JSeparator;
+import org.openstreetmap.josm.command.ChangePropertyCommand;
+import org.openstreetmap.josm.command.Command;
+import org.openstreetmap.josm.command.SequenceCommand;
+import org.openstreetmap.josm.data.UndoRedoHandler;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Way;
@@ -18,6 +26,7 @@ import org.openstreetmap.josm.gui.IconToggleButton;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MainMenu;
 import org.openstreetmap.josm.gui.MapFrame;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.plugins.Plugin;
 import org.openstreetmap.josm.plugins.PluginInformation;
 
@@ -69,7 +78,15 @@ public class ToolsPlugin extends Plugin {
         MainMenu.add(moreMenu, new CSVAMRGoalCaptureAction());
         MainMenu.add(moreMenu, new CSVPGVTapeCaptureAction());
         MainMenu.add(moreMenu, new CoordChangeListenerAction());
+        var liveValidation = new LiveValidationAction();
+        MainMenu.add(moreMenu, liveValidation);
+        MainMenu.add(moreMenu, new CompactIdsAction());
         OsmValidator.addTest(CustomTagTest.class);
+        // the next validator run drops the results of the old schema, see ValidationCache
+        ToolsSettings.addSchemaPathListener(e -> GuiHelper.runInEDT(() -> {
+            TagSchema.reload();
+            liveValidation.schemaChanged();
+        }));
     }
 
     @Override
@@ -83,63 +100,85 @@ public class ToolsPlugin extends Plugin {
 
     /**
      * Returns the maximum value of a key in a collection of OSM primitives.
+     * Values that are not integers are skipped.
      * @param objs the collection of OSM primitives
      * @param key the key
      * @return the maximum value of the key
      */
     static public int getMaxId(Collection<? extends OsmPrimitive> objs, String key) {
         return objs.stream()
-                .map(obj -> obj.get(key))
+                .map(obj -> IdAllocator.parseId(obj.get(key)))
                 .filter(id -> id != null)
-                .map(id -> Integer.parseInt(id))
                 .reduce(-1, Integer::max);
     }
 
     /**
-     * Renumber tags of nodes and ways.
-     * @param objs the collection of nodes and ways
+     * Returns the maximum value of an ID key in a data set.
+     * The LexxPluss ID keys are looked up in the index of the data set, node keys
+     * among the nodes and way keys among the ways. With global IDs enabled the other open
+     * layers and the site maps are included. Other keys are searched in all nodes and ways.
+     * @param ds the data set
+     * @param key the key
+     * @return the maximum value of the key
      */
-    static public void renumber(Collection<? extends OsmPrimitive> objs) {
-        var nodes = objs.stream().filter(o -> o instanceof Node).map(o -> (Node)o).collect(Collectors.toList());
-        var ways = objs.stream().filter(o -> o instanceof Way).map(o -> (Way)o).collect(Collectors.toList());
-        ways.forEach(w -> {
-            w.getNodes().forEach(n -> nodes.remove(n));
-            wayIdRenumber(w);
-        });
-        nodes.forEach(n -> nodeIdRenumber(n));
+    static public int getMaxId(DataSet ds, String key) {
+        if (IdAllocator.isIndexed(key)) {
+            if (ToolsSettings.getGlobalIds())
+                return IdRegistry.getMaxId(ds, key);
+            return IdAllocator.get(ds).getMaxId(key);
+        }
+        return Math.max(getMaxId(ds.getNodes(), key), getMaxId(ds.getWays(), key));
     }
 
     /**
-     * Renumber node tags.
-     * @param node the node
+     * Renumber tags of nodes and ways.
+     * The new IDs are assigned as one undoable command.
+     * @param objs the collection of nodes and ways
      */
-    static public void nodeIdRenumber(Node node) {
-        Arrays.asList("agv_node_id", "intermediate_goal_id")
-                .forEach(key -> {
-                    if (node.hasKey(key)) {
-                        var max = ToolsPlugin.getMaxId(node.getDataSet().getNodes(), key);
-                        node.put(key, Integer.toString(max + 1));
-                    }
-                });
+    static public void renumber(Collection<? extends OsmPrimitive> objs) {
+        var cmd = createRenumberCommand(objs);
+        if (cmd != null)
+            UndoRedoHandler.getInstance().add(cmd);
     }
 
     /**
-     * Renumber way tags.
-     * @param way the way
+     * Creates the command renumbering tags of nodes and ways.
+     * Ways and the nodes of the ways are renumbered, and then the remaining nodes. Each key gets
+     * a contiguous range of IDs above the maximum of {@link #getMaxId(DataSet, String)}, reserved in one pass.
+     * Renumbered space_id and sync_id also rename the area to park&lt;N&gt; and sync&lt;N&gt;.
+     * @param objs the collection of nodes and ways
+     * @return the command, or {@code null} if nothing is renumbered
      */
-    static public void wayIdRenumber(Way way) {
-        Arrays.asList("goal_id", "space_id", "sync_id")
-                .forEach(key -> {
-                    if (way.hasKey(key)) {
-                        var max = ToolsPlugin.getMaxId(way.getDataSet().getWays(), key);
-                        var s = Integer.toString(max + 1);
-                        way.put(key, s);
-                        if (key.equals("space_id"))
-                            way.put("area_name" , "park" + s);
-                        else if (key.equals("sync_id"))
-                            way.put("area_name" , "sync" + s);
-                    }
-                });
-        way.getNodes().forEach(n -> nodeIdRenumber(n));
+    static Command createRenumberCommand(Collection<? extends OsmPrimitive> objs) {
+        var primitives = new LinkedHashSet<OsmPrimitive>();
+        objs.stream().filter(o -> o instanceof Way).forEach(o -> {
+            primitives.add(o);
+            primitives.addAll(((Way)o).getNodes());
+        });
+        objs.stream().filter(o -> o instanceof Node).forEach(primitives::add);
+        var ds = primitives.stream().map(OsmPrimitive::getDataSet).filter(d -> d != null).findFirst().orElse(null);
+        if (ds == null)
+            return null;
+        var next = new HashMap<String, Integer>();
+        var cmds = new ArrayList<Command>();
+        for (var p : primitives) {
+            var keys = p instanceof Node ? IdAllocator.NODE_KEYS : IdAllocator.WAY_KEYS;
+            var tags = new LinkedHashMap<String, String>();
+            for (var key : keys) {
+                if (!p.hasKey(key))
+                    continue;
+                var id = next.computeIfAbsent(key, k -> getMaxId(ds, k) + 1);
+                next.put(key, id + 1);
+                var s = Integer.toString(id);
+                tags.put(key, s);
+                if (key.equals("space_id"))
+                    tags.put("area_name", "park" + s);
+                else if (key.equals("sync_id"))
+                    tags.put("area_name", "sync" + s);
+            }
+            if (!tags.isEmpty())
+                cmds.add(new ChangePropertyCommand(List.of(p), tags));
+        }
+        return cmds.isEmpty() ? null : new SequenceCommand("Renumber", cmds);
     }
 }
@@ -7,6 +7,7 @@
 package org.openstreetmap.josm.plugins.lexxpluss;
 
 import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.spi.preferences.PreferenceChangedListener;
 
 /**
  * Settings for the LexxPluss Tools plugin.
@@ -119,4 +120,84 @@ public class ToolsSettings {
     public static void setOsmPath(String osmPath) {
         Config.getPref().put(prefix + "osmPath", osmPath);
     }
+
+    /**
+     * Get the parallel validation flag.
+     * @return the parallel validation flag
+     */
+    public static boolean getParallelValidation() {
+        return Config.getPref().getBoolean(prefix + "parallelValidation", true);
+    }
+
+    /**
+     * Set the parallel validation flag.
+     * @param parallelValidation the parallel validation flag
+     */
+    public static void setParallelValidation(boolean parallelValidation) {
+        Config.getPref().putBoolean(prefix + "parallelValidation", parallelValidation);
+    }
+
+    /**
+     * Get the tag schema path.
+     * @return the tag schema path, empty for the bundled schema
+     */
+    public static String getSchemaPath() {
+        return Config.getPref().get(prefix + "schemaPath", "");
+    }
+
+    /**
+     * Set the tag schema path.
+     * @param schemaPath the tag schema path, empty for the bundled schema
+     */
+    public static void setSchemaPath(String schemaPath) {
+        Config.getPref().put(prefix + "schemaPath", schemaPath);
+    }
+
+    /**
+     * Add a listener called when the tag schema path changes.
+     * @param listener the listener
+     */
+    public static void addSchemaPathListener(PreferenceChangedListener listener) {
+        Config.getPref().addKeyPreferenceChangeListener(prefix + "schemaPath", listener);
+    }
+
+    /**
+     * Get the global ID allocation flag.
+     * @return {@code true} if IDs are allocated across all open layers and the site map folder
+     */
+    public static boolean getGlobalIds() {
+        return Config.getPref().getBoolean(prefix + "globalIds", false);
+    }
+
+    /**
+     * Set the global ID allocation flag.
+     * @param globalIds {@code true} to allocate IDs across all open layers and the site map folder
+     */
+    public static void setGlobalIds(boolean globalIds) {
+        Config.getPref().putBoolean(prefix + "globalIds", globalIds);
+    }
+
+    /**
+     * Get the site map folder.
+     * @return the folder of the other maps of the site, empty for none
+     */
+    public static String getSiteMapFolder() {
+        return Config.getPref().get(prefix + "siteMapFolder", "");
+    }
+
+    /**
+     * Set the site map folder.
+     * @param siteMapFolder the folder of the other maps of the site, empty for none
+     */
+    public static void setSiteMapFolder(String siteMapFolder) {
+        Config.getPref().put(prefix + "siteMapFolder", siteMapFolder);
+    }
+
+    /**
+     * Get the view independent export flag of the LexxPluss exporter, shared with that plugin.
+     * @return {@code true} if X_image/Y_image are computed as if the view was centered on the PicLayer image
+     */
+    public static boolean getViewIndependentExport() {
+        return Config.getPref().getBoolean("lexxpluss.exporter.view_independent", false);
+    }
 }
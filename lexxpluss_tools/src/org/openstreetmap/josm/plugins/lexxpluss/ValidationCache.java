@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.validation.TestError;
+
+/**
+ * Validation results of a data set kept between validator runs.
+ * Per-primitive results are keyed by the primitive and a fingerprint of everything
+ * the per-primitive checks read, i.e. its tags and its node list or parent ways.
+ * Results of the checks over the whole data set are kept until the data set changes.
+ */
+class ValidationCache implements DataSetListener {
+
+    /**
+     * An error without the test and the ignore state of a {@link TestError}.
+     */
+    static final class Issue {
+
+        /**
+         * The error number.
+         */
+        final int code;
+
+        /**
+         * The error message.
+         */
+        final String message;
+
+        /**
+         * The primitives.
+         */
+        final List<OsmPrimitive> primitives;
+
+        /**
+         * Constructs a new {@code Issue} from an error.
+         * @param error the error
+         */
+        Issue(TestError error) {
+            code = error.getCode();
+            message = error.getMessage();
+            primitives = new ArrayList<>(error.getPrimitives());
+        }
+    }
+
+    /**
+     * The cached results of a primitive.
+     */
+    private static final class Entry {
+
+        /**
+         * The fingerprint of the primitive when it was checked.
+         */
+        final List<Object> fingerprint;
+
+        /**
+         * The errors found.
+         */
+        final List<Issue> issues;
+
+        /**
+         * Constructs a new {@code Entry}.
+         * @param fingerprint the fingerprint
+         * @param issues the errors found
+         */
+        Entry(List<Object> fingerprint, List<Issue> issues) {
+            this.fingerprint = fingerprint;
+            this.issues = issues;
+        }
+    }
+
+    /**
+     * The caches by data set. A cache is kept alive by the data set it listens to.
+     */
+    private static final Map<DataSet, WeakReference<ValidationCache>> caches = new WeakHashMap<>();
+
+    /**
+     * The schema the results were computed with.
+     */
+    private TagSchema schema = null;
+
+    /**
+     * The per-primitive results.
+     */
+    private final Map<OsmPrimitive, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The results of the checks over the whole data set, or {@code null}.
+     */
+    private volatile List<Issue> dataSetIssues = null;
+
+    /**
+     * The number of changes of the data set, bumped by every data set event.
+     */
+    private volatile long generation = 0;
+
+    /**
+     * The generation the data set results were computed at.
+     */
+    private long dataSetGeneration = -1;
+
+    /**
+     * Returns the cache of a data set, creating it if necessary.
+     * @param ds the data set
+     * @param schema the current tag schema, results of another schema are dropped
+     * @return the cache
+     */
+    static synchronized ValidationCache get(DataSet ds, TagSchema schema) {
+        var ref = caches.get(ds);
+        var cache = ref != null ? ref.get() : null;
+        if (cache == null) {
+            cache = new ValidationCache();
+            ds.addDataSetListener(cache);
+            caches.put(ds, new WeakReference<>(cache));
+        }
+        if (cache.schema != schema) {
+            cache.clear();
+            cache.schema = schema;
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the fingerprint of a primitive.
+     * @param primitive the primitive
+     * @return the fingerprint
+     */
+    static List<Object> fingerprint(OsmPrimitive primitive) {
+        var result = new ArrayList<Object>();
+        primitive.visitKeys((p, k, v) -> {
+            result.add(k);
+            result.add(v);
+        });
+        // separates the tags from the topology
+        result.add(null);
+        if (primitive instanceof Node) {
+            for (var way : ((Node)primitive).getParentWays()) {
+                result.add(way);
+                result.add(way.get("line_info"));
+            }
+        } else if (primitive instanceof Way) {
+            for (var node : ((Way)primitive).getNodes()) {
+                result.add(node);
+                result.add(node.hasKey("agv_node_id"));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cached errors of a primitive.
+     * @param primitive the primitive
+     * @param fingerprint the current fingerprint of the primitive
+     * @return the errors, or {@code null} if the primitive changed since it was checked
+     */
+    List<Issue> get(OsmPrimitive primitive, List<Object> fingerprint) {
+        var entry = entries.get(primitive);
+        return entry != null && entry.fingerprint.equals(fingerprint) ? entry.issues : null;
+    }
+
+    /**
+     * Stores the errors of a primitive.
+     * @param primitive the primitive
+     * @param fingerprint the fingerprint of the primitive when it was checked
+     * @param errors the errors found
+     */
+    void put(OsmPrimitive primitive, List<Object> fingerprint, Collection<TestError> errors) {
+        entries.put(primitive, new Entry(fingerprint, toIssues(errors)));
+    }
+
+    /**
+     * Returns the cached errors of the checks over the whole data set.
+     * @return the errors, or {@code null} if the data set changed since they were computed
+     */
+    synchronized List<Issue> getDataSetIssues() {
+        return dataSetGeneration == generation ? dataSetIssues : null;
+    }
+
+    /**
+     * Stores the errors of the checks over the whole data set.
+     * @param errors the errors found
+     * @param atGeneration the generation read before the checks started
+     * @return the stored issues
+     */
+    synchronized List<Issue> putDataSetIssues(Collection<TestError> errors, long atGeneration) {
+        dataSetIssues = toIssues(errors);
+        dataSetGeneration = atGeneration;
+        return dataSetIssues;
+    }
+
+    /**
+     * Returns the number of changes of the data set.
+     * @return the generation
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Drops all results.
+     */
+    private synchronized void clear() {
+        entries.clear();
+        dataSetIssues = null;
+        dataSetGeneration = -1;
+    }
+
+    /**
+     * Converts errors to issues.
+     * @param errors the errors
+     * @return the issues
+     */
+    private static List<Issue> toIssues(Collection<TestError> errors) {
+        var result = new ArrayList<Issue>(errors.size());
+        errors.forEach(e -> result.add(new Issue(e)));
+        return result;
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        ++generation;
+    }
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        ++generation;
+        event.getPrimitives().forEach(entries::remove);
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        ++generation;
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        ++generation;
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        ++generation;
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        ++generation;
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        ++generation;
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        ++generation;
+        var events = event.getEvents();
+        if (events == null)
+            entries.clear();
+        else
+            events.forEach(e -> e.fire(this));
+    }
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timing and counters of the checks of a LexxPluss validator run.
+ * The counters may be updated from several threads. They are reset when the next run starts.
+ */
+public final class ValidationStatistics {
+
+    /**
+     * Timing and counters of one check.
+     */
+    public static final class Check {
+
+        /**
+         * The check name.
+         */
+        private final String name;
+
+        /**
+         * The wall time in nanoseconds.
+         */
+        private final LongAdder nanos = new LongAdder();
+
+        /**
+         * The number of primitives checked.
+         */
+        private final LongAdder primitives = new LongAdder();
+
+        /**
+         * The number of errors emitted.
+         */
+        private final LongAdder errors = new LongAdder();
+
+        /**
+         * The number of bytes allocated.
+         */
+        private final LongAdder bytes = new LongAdder();
+
+        /**
+         * Whether allocations were measured.
+         */
+        private volatile boolean bytesMeasured = false;
+
+        /**
+         * Constructs a new {@code Check}.
+         * @param name the check name
+         */
+        private Check(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records one execution of the check.
+         * @param startNanos the {@link System#nanoTime()} when the check started
+         * @param primitives the number of primitives checked
+         * @param errors the number of errors emitted
+         */
+        void record(long startNanos, long primitives, long errors) {
+            nanos.add(System.nanoTime() - startNanos);
+            this.primitives.add(primitives);
+            this.errors.add(errors);
+        }
+
+        /**
+         * Records the allocations of one execution of the check.
+         * @param startBytes the {@link #allocatedBytes()} when the check started
+         */
+        void recordBytes(long startBytes) {
+            var endBytes = allocatedBytes();
+            if (startBytes >= 0 && endBytes >= startBytes) {
+                bytes.add(endBytes - startBytes);
+                bytesMeasured = true;
+            }
+        }
+
+        /**
+         * Clears the counters.
+         */
+        private void reset() {
+            nanos.reset();
+            primitives.reset();
+            errors.reset();
+            bytes.reset();
+            bytesMeasured = false;
+        }
+
+        /**
+         * Returns the check name.
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the wall time, summed over all threads.
+         * @return the time in nanoseconds
+         */
+        public long getNanos() {
+            return nanos.sum();
+        }
+
+        /**
+         * Returns the number of primitives checked.
+         * @return the number of primitives
+         */
+        public long getPrimitives() {
+            return primitives.sum();
+        }
+
+        /**
+         * Returns the number of errors emitted.
+         * @return the number of errors
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * Returns the number of bytes allocated.
+         * @return the number of bytes, or -1 if the JVM cannot measure allocations
+         */
+        public long getAllocatedBytes() {
+            return bytesMeasured ? bytes.sum() : -1;
+        }
+    }
+
+    /**
+     * The checks in the order of registration.
+     */
+    private final List<Check> checks = new ArrayList<>();
+
+    /**
+     * The number of primitives whose results were taken from the cache.
+     */
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * The number of primitives checked because their results were not cached.
+     */
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * The {@link System#nanoTime()} when the run started.
+     */
+    private long startNanos = 0;
+
+    /**
+     * The wall time of the whole run in nanoseconds.
+     */
+    private long totalNanos = 0;
+
+    /**
+     * Registers a check.
+     * @param name the check name
+     * @return the check
+     */
+    Check add(String name) {
+        var check = new Check(name);
+        checks.add(check);
+        return check;
+    }
+
+    /**
+     * Clears the counters at the start of a run.
+     */
+    void start() {
+        checks.forEach(Check::reset);
+        cacheHits.reset();
+        cacheMisses.reset();
+        totalNanos = 0;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the end of a run.
+     */
+    void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Records a cache lookup.
+     * @param hit {@code true} if the results were cached
+     */
+    void recordCache(boolean hit) {
+        if (hit)
+            cacheHits.increment();
+        else
+            cacheMisses.increment();
+    }
+
+    /**
+     * Returns the checks.
+     * @return the checks in the order they run
+     */
+    public List<Check> getChecks() {
+        return Collections.unmodifiableList(checks);
+    }
+
+    /**
+     * Returns the number of primitives whose results were taken from the cache.
+     * @return the number of cache hits
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Returns the number of primitives checked because their results were not cached.
+     * @return the number of cache misses
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Returns the wall time of the whole run.
+     * @return the time in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Returns a table of the statistics for the log.
+     * @return the summary
+     */
+    public String summary() {
+        var sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "LexxPluss validation: %.1f ms, cache %d hits / %d misses%n",
+                totalNanos / 1e6, getCacheHits(), getCacheMisses()));
+        sb.append(String.format(Locale.ROOT, "  %-24s %10s %10s %8s %12s%n", "check", "ms", "primitives", "errors", "bytes"));
+        for (var check : checks) {
+            sb.append(String.format(Locale.ROOT, "  %-24s %10.1f %10d %8d %12s%n", check.getName(),
+                    check.getNanos() / 1e6, check.getPrimitives(), check.getErrors(),
+                    check.getAllocatedBytes() < 0 ? "-" : Long.toString(check.getAllocatedBytes())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far.
+     * @return the number of bytes, or -1 if the JVM cannot measure allocations
+     */
+    static long allocatedBytes() {
+        var bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            var sunBean = (com.sun.management.ThreadMXBean)bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
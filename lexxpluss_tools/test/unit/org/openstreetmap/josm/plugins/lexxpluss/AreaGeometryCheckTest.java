@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Tests of {@link AreaGeometryCheck}.
+ */
+@BasicPreferences
+@Projection
+class AreaGeometryCheckTest {
+
+    /**
+     * Parking areas overlapping by 0.1 mm along a 2 m side, twice the threshold, overlap.
+     */
+    @Test
+    void testSmallOverlap() {
+        var ds = new DataSet();
+        var a = parkingArea(ds, 0.0, 1);
+        var b = parkingArea(ds, 2.0 - 1e-4, 2);
+        var errors = check(ds);
+        assertEquals(1, errors.size());
+        assertEquals(Set.of(a, b), new HashSet<>(errors.get(0).getPrimitives()));
+    }
+
+    /**
+     * Adjacent parking areas whose shared side differs by 1 micrometer of rounding do not overlap.
+     */
+    @Test
+    void testAdjacent() {
+        var ds = new DataSet();
+        parkingArea(ds, 0.0, 1);
+        parkingArea(ds, 2.0 - 1e-6, 2);
+        assertEquals(0, check(ds).size());
+    }
+
+    /**
+     * Adds a parking area of 2 m by 2 m.
+     * @param ds the data set
+     * @param east the east of the west side in meters
+     * @param spaceId the space_id
+     * @return the area
+     */
+    private static Way parkingArea(DataSet ds, double east, int spaceId) {
+        var nodes = new ArrayList<Node>();
+        for (var corner : new double[][] {{0, 0}, {2, 0}, {2, 2}, {0, 2}}) {
+            var node = new Node(new EastNorth(east + corner[0], corner[1]));
+            ds.addPrimitive(node);
+            nodes.add(node);
+        }
+        nodes.add(nodes.get(0));
+        var way = new Way();
+        way.setNodes(nodes);
+        way.put("area_base", "movable");
+        way.put("area_name", "park" + spaceId);
+        way.put("area_detect", "true");
+        way.put("space_id", Integer.toString(spaceId));
+        ds.addPrimitive(way);
+        return way;
+    }
+
+    /**
+     * Runs the geometric checks.
+     * @param ds the data set
+     * @return the parking area overlaps found
+     */
+    private static List<TestError> check(DataSet ds) {
+        var found = new ArrayList<TestError>();
+        new AreaGeometryCheck(new CustomTagTest(), TagSchema.getInstance()).check(ds, found);
+        return found.stream().filter(e -> e.getCode() == 6007).collect(Collectors.toList());
+    }
+}
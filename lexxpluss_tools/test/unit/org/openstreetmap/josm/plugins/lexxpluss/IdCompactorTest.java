@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Tests of {@link IdCompactor}.
+ */
+@BasicPreferences
+class IdCompactorTest {
+
+    /**
+     * The folder of the site maps.
+     */
+    @TempDir
+    Path folder;
+
+    /**
+     * Restores the settings.
+     */
+    @AfterEach
+    void tearDown() {
+        ToolsSettings.setGlobalIds(false);
+        ToolsSettings.setSiteMapFolder("");
+    }
+
+    /**
+     * The IDs are compacted from 0 in their order.
+     */
+    @Test
+    void testCompact() {
+        var ds = new DataSet();
+        var a = node(ds, "5");
+        var b = node(ds, "9");
+        var compactor = new IdCompactor(ds);
+        compactor.createCommand().executeCommand();
+        assertEquals(List.of("0", "1"), List.of(a.get("agv_node_id"), b.get("agv_node_id")));
+    }
+
+    /**
+     * With global IDs the IDs are compacted above the IDs of the site maps, and the mapping tells the new IDs.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    void testGlobalIds() throws IOException {
+        Files.writeString(folder.resolve("other.osm"), "<?xml version='1.0' encoding='UTF-8'?>\n"
+                + "<osm version='0.6'>\n"
+                + "  <node id='-1' lat='0.0' lon='0.0'>\n"
+                + "    <tag k='agv_node_id' v='7' />\n"
+                + "  </node>\n"
+                + "</osm>\n", StandardCharsets.UTF_8);
+        ToolsSettings.setSiteMapFolder(folder.toString());
+        ToolsSettings.setGlobalIds(true);
+
+        var ds = new DataSet();
+        var a = node(ds, "20");
+        var b = node(ds, "30");
+        var compactor = new IdCompactor(ds);
+        var mapping = folder.resolve("mapping.csv");
+        compactor.writeMapping(mapping.toFile());
+        compactor.createCommand().executeCommand();
+        assertEquals(List.of("8", "9"), List.of(a.get("agv_node_id"), b.get("agv_node_id")));
+        assertEquals(List.of("key,old,new", "agv_node_id,20,8", "agv_node_id,30,9"), Files.readAllLines(mapping));
+    }
+
+    /**
+     * Adds a node with an agv_node_id.
+     * @param ds the data set
+     * @param id the agv_node_id
+     * @return the node
+     */
+    private static Node node(DataSet ds, String id) {
+        var n = new Node(new LatLon(0, 0));
+        n.put("agv_node_id", id);
+        ds.addPrimitive(n);
+        return n;
+    }
+}
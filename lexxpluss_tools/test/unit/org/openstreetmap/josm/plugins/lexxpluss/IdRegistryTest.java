@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Tests of {@link IdRegistry}.
+ */
+@BasicPreferences
+class IdRegistryTest {
+
+    /**
+     * The folder of the site maps.
+     */
+    @TempDir
+    Path folder;
+
+    /**
+     * Restores the settings.
+     */
+    @AfterEach
+    void tearDown() {
+        ToolsSettings.setSiteMapFolder("");
+    }
+
+    /**
+     * OSM files, also compressed, and binary maps are site maps.
+     */
+    @Test
+    void testIsSiteMap() {
+        assertTrue(IdRegistry.isSiteMap("floor1.osm"));
+        assertTrue(IdRegistry.isSiteMap("floor1.OSM.GZ"));
+        assertTrue(IdRegistry.isSiteMap("floor1.osm.bz2"));
+        assertTrue(IdRegistry.isSiteMap("floor1.osm.xz"));
+        assertTrue(IdRegistry.isSiteMap("floor1.lxb"));
+        assertFalse(IdRegistry.isSiteMap("floor1.gz"));
+        assertFalse(IdRegistry.isSiteMap("mapping.csv"));
+    }
+
+    /**
+     * The IDs of a compressed site map are included.
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    void testCompressedSiteMap() throws IOException {
+        var osm = "<?xml version='1.0' encoding='UTF-8'?>\n"
+                + "<osm version='0.6'>\n"
+                + "  <node id='-1' lat='0.0' lon='0.0'>\n"
+                + "    <tag k='agv_node_id' v='7' />\n"
+                + "  </node>\n"
+                + "</osm>\n";
+        try (var out = new GZIPOutputStream(Files.newOutputStream(folder.resolve("floor2.osm.gz")))) {
+            out.write(osm.getBytes(StandardCharsets.UTF_8));
+        }
+        ToolsSettings.setSiteMapFolder(folder.toString());
+        assertEquals(7, IdRegistry.getMaxId(new DataSet(), "agv_node_id"));
+        assertEquals(-1, IdRegistry.getMaxId(new DataSet(), "goal_id"));
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2025, LexxPluss Inc.
+ * All rights reserved.
+ * License: GPL. For details, see LICENSE file.
+ */
+
+package org.openstreetmap.josm.plugins.lexxpluss;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Tests of {@link RouteGraphCheck}.
+ */
+@BasicPreferences
+class RouteGraphCheckTest {
+
+    /**
+     * A bidirectional loop with two goals, entered by a oneway spur, has no dead end.
+     */
+    @Test
+    void testSpurIntoLoop() {
+        var ds = new DataSet();
+        var loop = loop(ds);
+        var spur = node(ds, -1, 0);
+        way(ds, true, spur, loop.get(0));
+        assertTrue(check(ds, 6011).isEmpty());
+    }
+
+    /**
+     * A oneway spur leaving the loop is a dead end, the loop is not.
+     */
+    @Test
+    void testSpurOutOfLoop() {
+        var ds = new DataSet();
+        var loop = loop(ds);
+        var entry = node(ds, -1, 0);
+        way(ds, true, entry, loop.get(0));
+        var exit = node(ds, 2, 2);
+        way(ds, true, loop.get(2), exit);
+        var errors = check(ds, 6011);
+        assertEquals(1, errors.size());
+        assertEquals(List.of(exit), new ArrayList<OsmPrimitive>(errors.get(0).getPrimitives()));
+    }
+
+    /**
+     * Creates a bidirectional loop of four nodes with goals on two of them.
+     * @param ds the data set
+     * @return the nodes of the loop
+     */
+    private static List<Node> loop(DataSet ds) {
+        var a = node(ds, 0, 0);
+        var b = node(ds, 0, 1);
+        var c = node(ds, 1, 1);
+        var d = node(ds, 1, 0);
+        b.put("intermediate_goal_id", "1");
+        d.put("intermediate_goal_id", "2");
+        // two ways, a closed way might be taken as an area
+        way(ds, false, a, b, c, d);
+        way(ds, false, d, a);
+        return List.of(a, b, c, d);
+    }
+
+    /**
+     * Adds a node.
+     * @param ds the data set
+     * @param lat the latitude
+     * @param lon the longitude
+     * @return the node
+     */
+    private static Node node(DataSet ds, double lat, double lon) {
+        var node = new Node(new LatLon(lat * 1e-4, lon * 1e-4));
+        ds.addPrimitive(node);
+        return node;
+    }
+
+    /**
+     * Adds an intermediate goal way.
+     * @param ds the data set
+     * @param oneway {@code true} for a oneway way
+     * @param nodes the nodes
+     */
+    private static void way(DataSet ds, boolean oneway, Node... nodes) {
+        var way = new Way();
+        way.setNodes(List.of(nodes));
+        way.put("line_info", "\"\"");
+        if (oneway)
+            way.put("oneway", "yes");
+        ds.addPrimitive(way);
+    }
+
+    /**
+     * Runs the route graph check.
+     * @param ds the data set
+     * @param code the error code to keep
+     * @return the errors with the code
+     */
+    private static List<TestError> check(DataSet ds, int code) {
+        var found = new ArrayList<TestError>();
+        new RouteGraphCheck(new CustomTagTest()).check(ds, found);
+        return found.stream().filter(e -> e.getCode() == code).collect(Collectors.toList());
+    }
+}